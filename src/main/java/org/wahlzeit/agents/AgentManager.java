@@ -43,6 +43,10 @@ public class AgentManager {
 	 */
 	protected static void initInstance() {
 		getInstance().addAgent(new NotifyUsersAboutPraiseAgent());
+		getInstance().addAgent(new MigrateEntityGroupsAgent());
+		getInstance().addAgent(new MigrateTagIndexAgent());
+		getInstance().addAgent(new CheckpointGlobalsAgent());
+		getInstance().addAgent(new WriteModelSnapshotAgent());
 	}
 
 	/**
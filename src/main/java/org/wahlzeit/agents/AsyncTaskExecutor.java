@@ -5,6 +5,7 @@ import com.google.appengine.api.taskqueue.QueueFactory;
 import com.google.appengine.api.taskqueue.RetryOptions;
 import com.google.appengine.api.taskqueue.TaskOptions;
 import org.wahlzeit.model.Photo;
+import org.wahlzeit.servlets.SessionCleanupServlet;
 
 import java.util.logging.Logger;
 
@@ -30,4 +31,32 @@ public class AsyncTaskExecutor {
 		RetryOptions retryOptions = withTaskRetryLimit(3);
 		queue.add(TaskOptions.Builder.withUrl("/persistPhoto").param(Photo.ID, photoId).retryOptions(retryOptions));
 	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Starts a task in the default queue that runs the agent with the specified name once more.
+	 */
+	public static void startAgentAsync(String agentName) {
+		log.info("Calling async push task to run agent " + agentName);
+		Queue queue = QueueFactory.getDefaultQueue();
+		RetryOptions retryOptions = withTaskRetryLimit(3);
+		queue.add(TaskOptions.Builder.withUrl("/agents/" + agentName).method(TaskOptions.Method.GET).
+				retryOptions(retryOptions));
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Starts a task in the default queue that continues the session cleanup at the specified cursor.
+	 */
+	public static void continueSessionCleanupAsync(String cursor, long expiredBefore) {
+		log.info("Calling async push task to continue session cleanup");
+		Queue queue = QueueFactory.getDefaultQueue();
+		RetryOptions retryOptions = withTaskRetryLimit(3);
+		queue.add(TaskOptions.Builder.withUrl(SessionCleanupServlet.URL).method(TaskOptions.Method.GET).
+				param(SessionCleanupServlet.CLEAR, "").param(SessionCleanupServlet.CURSOR, cursor).
+				param(SessionCleanupServlet.EXPIRED_BEFORE, String.valueOf(expiredBefore)).
+				retryOptions(retryOptions));
+	}
 }
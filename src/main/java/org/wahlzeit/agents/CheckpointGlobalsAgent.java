@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.agents;
+
+import org.wahlzeit.model.GlobalsCheckpointer;
+import org.wahlzeit.services.LogBuilder;
+
+import java.util.logging.Logger;
+
+/**
+ * Agent that saves the globals as a checkpoint. It is started by cron, so the instance it runs on saves its changes
+ * after the checkpoint interval even if no further request finds a checkpoint due (see {@link GlobalsCheckpointer}).
+ *
+ * @review
+ */
+public class CheckpointGlobalsAgent extends Agent {
+
+	public static final String NAME = "checkpointGlobals";
+
+	private static final Logger log = Logger.getLogger(CheckpointGlobalsAgent.class.getName());
+
+	public CheckpointGlobalsAgent() {
+		initialize(NAME);
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void doRun() {
+		GlobalsCheckpointer checkpointer = GlobalsCheckpointer.getInstance();
+		if (checkpointer.getChangesSinceCheckpoint() > 0) {
+			checkpointer.checkpoint();
+		}
+
+		log.info(LogBuilder.createSystemMessage().
+				addParameter("globals checkpoint", checkpointer.asString()).toString());
+	}
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.agents;
+
+import org.wahlzeit.model.EntityGroupMigration;
+import org.wahlzeit.services.LogBuilder;
+
+import java.util.logging.Logger;
+
+/**
+ * Agent that moves entities from the former application root into their own entity groups.
+ * It is started by an administrator via /agents/migrateEntityGroups and can be started repeatedly until
+ * nothing is left to migrate; each run stops in time before the request deadline.
+ *
+ * @review
+ */
+public class MigrateEntityGroupsAgent extends Agent {
+
+	public static final String NAME = "migrateEntityGroups";
+
+	/**
+	 * Requests are cancelled after 60 seconds, so leave enough time for the last batch
+	 */
+	public static final long MAX_RUNNING_TIME = 45 * 1000;
+
+	private static final Logger log = Logger.getLogger(MigrateEntityGroupsAgent.class.getName());
+
+	public MigrateEntityGroupsAgent() {
+		initialize(NAME);
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void doRun() {
+		long deadline = System.currentTimeMillis() + MAX_RUNNING_TIME;
+		EntityGroupMigration migration = new EntityGroupMigration();
+		int migrated = migration.migrate(deadline);
+
+		log.info(LogBuilder.createSystemMessage().
+				addParameter("migrated entities", migrated).
+				addParameter("more to migrate", migration.hasEntitiesToMigrate()).toString());
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.agents;
+
+import org.wahlzeit.model.EntityGroupMigration;
+import org.wahlzeit.model.PhotoManager;
+import org.wahlzeit.model.TagIndexMigration;
+import org.wahlzeit.model.TagStorageMode;
+import org.wahlzeit.services.LogBuilder;
+
+import java.util.logging.Logger;
+
+/**
+ * Agent that moves all Tag entities into the tag index of their photos. It is started once by an administrator via
+ * /agents/migrateTagIndex after switching to {@link TagStorageMode#PHOTO_PROPERTY} and then continues in the
+ * background: whenever it runs out of time, it enqueues itself again until all tags are migrated. It refuses to run
+ * before the entity group migration, see {@link MigrateEntityGroupsAgent}, has completed.
+ *
+ * @review
+ */
+public class MigrateTagIndexAgent extends Agent {
+
+	public static final String NAME = "migrateTagIndex";
+
+	/**
+	 * Requests are cancelled after 60 seconds, so leave enough time for the last batch
+	 */
+	public static final long MAX_RUNNING_TIME = 45 * 1000;
+
+	private static final Logger log = Logger.getLogger(MigrateTagIndexAgent.class.getName());
+
+	public MigrateTagIndexAgent() {
+		initialize(NAME);
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void doRun() {
+		if (PhotoManager.getInstance().getTagStorageMode().usesTagEntities()) {
+			log.warning(LogBuilder.createSystemMessage().
+					addMessage("Tag entities are still in use, set " + TagStorageMode.SYSTEM_PROPERTY + " to " +
+							TagStorageMode.PHOTO_PROPERTY + " before migrating").toString());
+			return;
+		}
+		if (new EntityGroupMigration().hasEntitiesToMigrate()) {
+			// the entity group migration rewrites photos from stale copies, which would drop their new tag index
+			log.warning(LogBuilder.createSystemMessage().
+					addMessage("Entity groups are still being migrated, run " + MigrateEntityGroupsAgent.NAME +
+							" to completion before migrating tags").toString());
+			return;
+		}
+
+		long deadline = System.currentTimeMillis() + MAX_RUNNING_TIME;
+		TagIndexMigration migration = new TagIndexMigration();
+		migration.migrate(deadline);
+
+		if (migration.hasTagsToMigrate()) {
+			AsyncTaskExecutor.startAgentAsync(NAME);
+		} else {
+			log.info(LogBuilder.createSystemMessage().addMessage("All tags migrated.").toString());
+		}
+	}
+
+}
@@ -5,6 +5,7 @@ import org.wahlzeit.model.LanguageConfigs;
 import org.wahlzeit.model.ModelConfig;
 import org.wahlzeit.model.Photo;
 import org.wahlzeit.model.PhotoId;
+import org.wahlzeit.model.PhotoIndex;
 import org.wahlzeit.model.PhotoManager;
 import org.wahlzeit.model.User;
 import org.wahlzeit.model.UserManager;
@@ -16,7 +17,6 @@ import org.wahlzeit.services.mailing.EmailServiceManager;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -38,12 +38,17 @@ public class NotifyUsersAboutPraiseAgent extends Agent {
 	 * Notifies all users that want to get informed if their photos have been praised.
 	 */
 	protected void doRun() {
-		Map<PhotoId, Photo> photoCache = PhotoManager.getInstance().getPhotoCache();
-		Collection<Photo> photos = photoCache.values();
+		PhotoManager photoManager = PhotoManager.getInstance();
+		PhotoIndex photoIndex = photoManager.getPhotoIndex();
 
 		ArrayList<Photo> arrayListOfPhotos;
 		HashMap<String, ArrayList<Photo>> ownerIdPhotosMap = new HashMap<String, ArrayList<Photo>>();
-		for (Photo photo : photos) {
+		for (PhotoId photoId : photoManager.getPhotoIds()) {
+			// the index knows about new praise, so photos without are not paged in
+			if (!photoIndex.hasNewPraise(photoId)) {
+				continue;
+			}
+			Photo photo = photoManager.getPhoto(photoId);
 			if (photo != null && photo.isVisible() && photo.hasNewPraise()) {
 				String ownerId = photo.getOwnerId();
 				if (ownerId != null) {
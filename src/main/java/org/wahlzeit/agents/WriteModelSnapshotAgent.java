@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.agents;
+
+import org.wahlzeit.model.ModelSnapshot;
+import org.wahlzeit.model.ModelSnapshotManager;
+import org.wahlzeit.services.LogBuilder;
+
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * Agent that writes a new {@link ModelSnapshot}, started by cron. The snapshot is built from the Datastore rather
+ * than from the memory of the instance that runs the agent, as other instances may have changed objects: the current
+ * snapshot is brought up to date by replaying the changes since it was taken, and only the first snapshot reads all
+ * users and photos. As the snapshot holds all of them in memory, no snapshot is written if photos or clients are
+ * paged.
+ *
+ * @review
+ */
+public class WriteModelSnapshotAgent extends Agent {
+
+	public static final String NAME = "writeModelSnapshot";
+
+	private static final Logger log = Logger.getLogger(WriteModelSnapshotAgent.class.getName());
+
+	public WriteModelSnapshotAgent() {
+		initialize(NAME);
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void doRun() {
+		ModelSnapshotManager manager = ModelSnapshotManager.getInstance();
+		if (!manager.isSnapshotUsable()) {
+			log.info(LogBuilder.createSystemMessage().
+					addMessage("Model snapshot skipped, photos or clients are paged.").toString());
+			return;
+		}
+
+		ModelSnapshot snapshot = manager.loadSnapshot();
+		if (snapshot != null) {
+			snapshot.replayChanges();
+		} else {
+			snapshot = ModelSnapshot.readAll();
+		}
+
+		try {
+			manager.saveSnapshot(snapshot);
+		} catch (IOException ex) {
+			log.warning(LogBuilder.createSystemMessage().addException("writing model snapshot failed", ex).toString());
+		}
+	}
+
+}
@@ -28,6 +28,7 @@ import org.wahlzeit.services.Language;
 import org.wahlzeit.services.SysConfig;
 import org.wahlzeit.utils.HtmlUtil;
 import org.wahlzeit.webparts.WebPart;
+import org.wahlzeit.webparts.WebPartFragmentCache;
 
 /**
  * A superclass for handling web pages.
@@ -96,19 +97,26 @@ public abstract class AbstractWebPageHandler extends AbstractWebPartHandler impl
 	protected void makeWebPageMenu(UserSession us, WebPart page) {
 		Client client = us.getClient();
 		String menu = "";
+		String menuName = "";
 		ModelConfig config = client.getLanguageConfiguration();
 
 		if (client.hasAdministratorRights()) {
 			menu = config.getAdministratorMenu();
+			menuName = "administratorMenu";
 		} else if (client.hasModeratorRights()) {
 			menu = config.getModeratorMenu();
+			menuName = "moderatorMenu";
 		} else if (client.hasUserRights()) {
 			menu = config.getUserMenu();
+			menuName = "userMenu";
 		} else {
 			menu = config.getGuestMenu();
+			menuName = "guestMenu";
 		}
 
-		page.addString("menu", menu.toString());
+		// the menus of a language do not change, so they are encoded once
+		String key = config.getLanguageCode() + "/" + menuName;
+		page.addWritable("menu", WebPartFragmentCache.getInstance().getTextFragment(key, menu));
 	}
 
 	/**
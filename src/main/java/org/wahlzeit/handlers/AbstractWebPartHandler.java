@@ -33,8 +33,10 @@ import org.wahlzeit.services.SysConfig;
 import org.wahlzeit.utils.HtmlUtil;
 import org.wahlzeit.utils.StringUtil;
 import org.wahlzeit.webparts.WebPart;
+import org.wahlzeit.webparts.WebPartFragmentCache;
 import org.wahlzeit.webparts.WebPartTemplate;
 import org.wahlzeit.webparts.WebPartTemplateService;
+import org.wahlzeit.webparts.Writable;
 
 import java.io.File;
 import java.util.Map;
@@ -75,10 +77,24 @@ public abstract class AbstractWebPartHandler implements WebPartHandler {
 	 */
 	protected final WebPart createWebPart(UserSession us, String name) {
 		WebPartTemplateService wpts = WebPartTemplateService.getInstance();
-		WebPartTemplate tmpl = wpts.getTemplate(us.getClient().getLanguageConfiguration().getLanguageCode(), name);
+		WebPartTemplate tmpl = wpts.getTemplate(getModelConfig(us).getLanguageCode(), name);
 		return new WebPart(tmpl);
 	}
 
+	/**
+	 * @methodtype factory
+	 *
+	 * Returns the part of a template that takes no values; it is rendered once per template and language.
+	 */
+	protected final Writable createStaticWebPart(UserSession us, String name) {
+		WebPartTemplateService wpts = WebPartTemplateService.getInstance();
+		WebPartTemplate tmpl = wpts.getTemplate(getModelConfig(us).getLanguageCode(), name);
+		if (tmpl == null) {
+			return new WebPart(tmpl);
+		}
+		return WebPartFragmentCache.getInstance().getFragment(tmpl);
+	}
+
 	/**
 	 *
 	 */
@@ -114,14 +130,30 @@ public abstract class AbstractWebPartHandler implements WebPartHandler {
 	 *
 	 */
 	protected String getPhotoSummary(UserSession us, Photo photo) {
-		return photo.getSummary(us.getClient().getLanguageConfiguration());
+		return photo.getSummary(getModelConfig(us));
 	}
 
 	/**
 	 *
 	 */
 	protected String getPhotoCaption(UserSession us, Photo photo) {
-		return photo.getCaption(us.getClient().getLanguageConfiguration());
+		return photo.getCaption(getModelConfig(us), us.getRequestContext().getPhotoOwner(photo));
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	protected ModelConfig getModelConfig(UserSession us) {
+		return us.getRequestContext().getModelConfig();
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the photo of the session's photo id, or null if there is none.
+	 */
+	protected Photo getCurrentPhoto(UserSession us) {
+		return us.getRequestContext().getPhoto();
 	}
 
 	/**
@@ -191,7 +223,7 @@ public abstract class AbstractWebPartHandler implements WebPartHandler {
 	 *
 	 */
 	protected String getIllegalAccessErrorPage(UserSession us) {
-		ModelConfig config = us.getClient().getLanguageConfiguration();
+		ModelConfig config = getModelConfig(us);
 		us.setHeading(config.getInformation());
 
 		String msg1 = config.getIllegalAccessError();
@@ -211,7 +243,7 @@ public abstract class AbstractWebPartHandler implements WebPartHandler {
 	 *
 	 */
 	protected String getIllegalArgumentErrorPage(UserSession us) {
-		ModelConfig config = us.getClient().getLanguageConfiguration();
+		ModelConfig config = getModelConfig(us);
 		us.setHeading(config.getInformation());
 
 		String msg1 = config.getIllegalArgumentError();
@@ -236,7 +268,7 @@ public abstract class AbstractWebPartHandler implements WebPartHandler {
 	 *
 	 */
 	protected String getInternalProcessingErrorPage(UserSession us) {
-		ModelConfig config = us.getClient().getLanguageConfiguration();
+		ModelConfig config = getModelConfig(us);
 		us.setHeading(config.getInformation());
 
 		String msg1 = config.getInternalProcessingError();
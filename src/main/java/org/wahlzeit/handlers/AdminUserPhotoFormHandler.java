@@ -80,7 +80,7 @@ public class AdminUserPhotoFormHandler extends AbstractWebFormHandler {
 				addAction("AdminUserPhoto").
 				addParameter("Photo", photo.getId().asString()).toString());
 
-		us.setMessage(us.getClient().getLanguageConfiguration().getPhotoUpdateSucceeded());
+		us.setMessage(getModelConfig(us).getPhotoUpdateSucceeded());
 
 		return PartUtil.SHOW_ADMIN_PAGE_NAME;
 	}
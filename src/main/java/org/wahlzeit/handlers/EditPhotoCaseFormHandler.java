@@ -67,7 +67,7 @@ public class EditPhotoCaseFormHandler extends AbstractWebFormHandler {
 		part.maskAndAddString(Photo.DESCRIPTION, description);
 
 		String tags = photo.getTags().asString();
-		tags = !StringUtil.isNullOrEmptyString(tags) ? tags : us.getClient().getLanguageConfiguration().getNoTags();
+		tags = !StringUtil.isNullOrEmptyString(tags) ? tags : getModelConfig(us).getNoTags();
 		part.maskAndAddString(Photo.TAGS, tags);
 
 		String photoId = photo.getId().asString();
@@ -75,7 +75,7 @@ public class EditPhotoCaseFormHandler extends AbstractWebFormHandler {
 
 		part.addString(PhotoCase.FLAGGER, photoCase.getFlagger());
 		part.addString(PhotoCase.REASON,
-				us.getClient().getLanguageConfiguration().asValueString(photoCase.getReason()));
+				getModelConfig(us).asValueString(photoCase.getReason()));
 		part.addString(PhotoCase.EXPLANATION, photoCase.getExplanation());
 	}
 
@@ -64,12 +64,12 @@ public class FilterPhotosFormHandler extends AbstractWebFormHandler {
 
 		String un = us.getAsString(args, PhotoFilter.USER_NAME);
 		if (StringUtil.isLegalUserName(un)) {
-			filter.setUserName(un);
+			us.setPhotoFilterUserName(un);
 		}
 
 		String tags = us.getAsString(args, PhotoFilter.TAGS);
 		if (StringUtil.isLegalTagsString(tags)) {
-			filter.setTags(new Tags(tags));
+			us.setPhotoFilterTags(new Tags(tags));
 		}
 
 		log.info(LogBuilder.createUserMessage().
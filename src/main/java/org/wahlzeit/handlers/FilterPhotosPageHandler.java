@@ -55,16 +55,14 @@ public class FilterPhotosPageHandler extends AbstractWebPageHandler {
 	 *
 	 */
 	protected String doHandleGet(UserSession us, String link, Map args) {
-		PhotoFilter filter = us.getPhotoFilter();
-
 		String un = us.getAsString(args, PhotoFilter.USER_NAME);
 		if (StringUtil.isLegalUserName(un)) {
-			filter.setUserName(un);
+			us.setPhotoFilterUserName(un);
 		}
 
 		String tags = us.getAsString(args, PhotoFilter.TAGS);
 		if (StringUtil.isLegalTagsString(tags)) {
-			filter.setTags(new Tags(tags));
+			us.setPhotoFilterTags(new Tags(tags));
 		}
 
 		return PartUtil.SHOW_PHOTO_PAGE_NAME;
@@ -74,7 +72,7 @@ public class FilterPhotosPageHandler extends AbstractWebPageHandler {
 	 *
 	 */
 	protected void makeWebPageBody(UserSession us, WebPart page) {
-		ModelConfig config = us.getClient().getLanguageConfiguration();
+		ModelConfig config = getModelConfig(us);
 		page.addString("noteHeading", config.getInformation());
 		String msg1 = config.getContinueWithShowPhoto();
 		page.addString("note", msg1);
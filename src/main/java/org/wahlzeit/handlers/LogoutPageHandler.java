@@ -57,7 +57,7 @@ public class LogoutPageHandler extends AbstractWebPageHandler {
 	 * @methodtype command
 	 */
 	protected void makeWebPageBody(UserSession us, WebPart page) {
-		ModelConfig config = us.getClient().getLanguageConfiguration();
+		ModelConfig config = getModelConfig(us);
 		page.addString("noteHeading", config.getThankYou());
 		String msg1 = config.getLogoutSucceeded();
 		String msg2 = config.getContinueWithTellFriends();
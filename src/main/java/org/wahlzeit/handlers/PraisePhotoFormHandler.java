@@ -25,6 +25,7 @@ import org.wahlzeit.model.Client;
 import org.wahlzeit.model.Photo;
 import org.wahlzeit.model.PhotoId;
 import org.wahlzeit.model.PhotoManager;
+import org.wahlzeit.model.UserManager;
 import org.wahlzeit.model.UserSession;
 import org.wahlzeit.services.LogBuilder;
 import org.wahlzeit.utils.StringUtil;
@@ -83,7 +84,9 @@ public class PraisePhotoFormHandler extends AbstractWebFormHandler {
 				int value = Integer.parseInt(praise);
 				photo.addToPraise(value);
 				client.addPraisedPhotoId(photo.getId());
+				us.addPraisedPhoto(photo);
 				us.addProcessedPhoto(photo);
+				UserManager.getInstance().materializeClient(client);
 				wasPraised = true;
 			}
 		}
@@ -52,7 +52,7 @@ public class ResetSessionPageHandler extends AbstractWebPageHandler {
 	 *
 	 */
 	protected void makeWebPageBody(UserSession us, WebPart page) {
-		ModelConfig config = us.getClient().getLanguageConfiguration();
+		ModelConfig config = getModelConfig(us);
 		page.addString("noteHeading", config.getThankYou());
 		String msg1 = config.getResetSession();
 		String msg2 = config.getContinueWithShowPhoto();
@@ -69,8 +69,8 @@ public class SendEmailFormHandler extends AbstractWebFormHandler {
 	 */
 	protected String doHandleGet(UserSession us, String link, Map args) {
 		if (!(us.getClient() instanceof User)) {
-			us.setHeading(us.getClient().getLanguageConfiguration().getInformation());
-			us.setMessage(us.getClient().getLanguageConfiguration().getNeedToSignupFirst());
+			us.setHeading(getModelConfig(us).getInformation());
+			us.setMessage(getModelConfig(us).getNeedToSignupFirst());
 			return PartUtil.SHOW_NOTE_PAGE_NAME;
 		}
 
@@ -114,7 +114,7 @@ public class SendEmailFormHandler extends AbstractWebFormHandler {
 
 		String emailSubject = us.getAndSaveAsString(args, EMAIL_SUBJECT);
 		String emailBody = us.getAndSaveAsString(args, EMAIL_BODY);
-		ModelConfig config = us.getClient().getLanguageConfiguration();
+		ModelConfig config = getModelConfig(us);
 		if ((emailSubject.length() > 128) || (emailBody.length() > 1024)) {
 			us.setMessage(config.getInputIsTooLong());
 			return PartUtil.SEND_EMAIL_PAGE_NAME;
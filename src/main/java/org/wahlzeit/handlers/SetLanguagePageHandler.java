@@ -21,8 +21,10 @@
 package org.wahlzeit.handlers;
 
 import org.wahlzeit.model.AccessRights;
+import org.wahlzeit.model.Client;
 import org.wahlzeit.model.LanguageConfigs;
 import org.wahlzeit.model.ModelConfig;
+import org.wahlzeit.model.UserManager;
 import org.wahlzeit.model.UserSession;
 import org.wahlzeit.services.Language;
 import org.wahlzeit.utils.HtmlUtil;
@@ -57,7 +59,9 @@ public class SetLanguagePageHandler extends AbstractWebPageHandler {
 			result = LanguageConfigs.get(Language.JAPANESE);
 		}
 
-		us.getClient().setLanguage(result.getLanguage());
+		Client client = us.getClient();
+		client.setLanguage(result.getLanguage());
+		UserManager.getInstance().materializeClient(client);
 
 		return link;
 	}
@@ -66,7 +70,7 @@ public class SetLanguagePageHandler extends AbstractWebPageHandler {
 	 *
 	 */
 	protected void makeWebPageBody(UserSession us, WebPart page) {
-		ModelConfig config = us.getClient().getLanguageConfiguration();
+		ModelConfig config = getModelConfig(us);
 		page.addString("noteHeading", config.getInformation());
 		String msg1 = config.getNewLanguageSet();
 		String msg2 = config.getContinueWithShowPhoto();
@@ -24,6 +24,7 @@ import org.wahlzeit.model.AccessRights;
 import org.wahlzeit.model.Client;
 import org.wahlzeit.model.ModelConfig;
 import org.wahlzeit.model.PhotoSize;
+import org.wahlzeit.model.UserManager;
 import org.wahlzeit.model.UserSession;
 import org.wahlzeit.services.Language;
 import org.wahlzeit.services.LogBuilder;
@@ -78,13 +79,14 @@ public class SetOptionsFormHandler extends AbstractWebFormHandler {
 		String photoSize = us.getAndSaveAsString(args, PHOTO_SIZE);
 		PhotoSize photoValue = PhotoSize.getFromString(photoSize);
 		client.setPhotoSize(photoValue);
+		UserManager.getInstance().materializeClient(client);
 
 		log.info(LogBuilder.createUserMessage().
 				addAction("Set options").
 				addParameter("language", language).
 				addParameter("photo size", photoSize).toString());
 
-		ModelConfig config = us.getClient().getLanguageConfiguration();
+		ModelConfig config = getModelConfig(us);
 		String msg1 = config.getOptionsWereSet();
 		String msg2 = config.getNoteMaximumPhotoSize();
 		String msg3 = config.getContinueWithShowPhoto();
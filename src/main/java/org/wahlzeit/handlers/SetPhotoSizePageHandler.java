@@ -24,6 +24,7 @@ import org.wahlzeit.model.AccessRights;
 import org.wahlzeit.model.Client;
 import org.wahlzeit.model.ModelConfig;
 import org.wahlzeit.model.PhotoSize;
+import org.wahlzeit.model.UserManager;
 import org.wahlzeit.model.UserSession;
 import org.wahlzeit.utils.HtmlUtil;
 import org.wahlzeit.webparts.WebPart;
@@ -59,7 +60,9 @@ public class SetPhotoSizePageHandler extends AbstractWebPageHandler {
 			result = PhotoSize.EXTRA_LARGE;
 		}
 
-		us.getClient().setPhotoSize(result);
+		Client client = us.getClient();
+		client.setPhotoSize(result);
+		UserManager.getInstance().materializeClient(client);
 
 		return link;
 	}
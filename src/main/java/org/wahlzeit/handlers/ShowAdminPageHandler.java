@@ -21,6 +21,7 @@
 package org.wahlzeit.handlers;
 
 import org.wahlzeit.main.ServiceMain;
+import org.wahlzeit.main.StartupReport;
 import org.wahlzeit.model.AccessRights;
 import org.wahlzeit.model.Photo;
 import org.wahlzeit.model.PhotoManager;
@@ -28,6 +29,7 @@ import org.wahlzeit.model.User;
 import org.wahlzeit.model.UserManager;
 import org.wahlzeit.model.UserSession;
 import org.wahlzeit.services.LogBuilder;
+import org.wahlzeit.utils.HtmlUtil;
 import org.wahlzeit.utils.StringUtil;
 import org.wahlzeit.webparts.WebPart;
 import org.wahlzeit.webparts.Writable;
@@ -67,6 +69,25 @@ public class ShowAdminPageHandler extends AbstractWebPageHandler implements WebF
 			page.addStringFromArgs(args, "photoId");
 			page.addWritable("object", makeAdminUserPhoto(us));
 		}
+
+		page.addString("startupReport", makeStartupReport(ServiceMain.getInstance().getStartupReport()));
+	}
+
+	/**
+	 * Lists duration and number of objects of each startup phase in the order in which the phases completed.
+	 */
+	protected String makeStartupReport(StartupReport report) {
+		StringBuilder result = new StringBuilder("<table class=\"form\">");
+		for (StartupReport.Entry entry : report.getEntries()) {
+			result.append("<tr><td align=\"left\">").append(HtmlUtil.maskForWeb(entry.getPhaseName())).
+					append("</td><td align=\"right\">").append(entry.getCount()).
+					append("</td><td align=\"right\">+").append(entry.getStart()).append(" ms").
+					append("</td><td align=\"right\">").append(entry.getDuration()).append(" ms</td></tr>");
+		}
+		result.append("<tr><td align=\"left\">").append(HtmlUtil.asBold("total")).
+				append("</td><td></td><td></td><td align=\"right\">").append(report.getTotalDuration()).
+				append(" ms</td></tr></table>");
+		return result.toString();
 	}
 
 	/**
@@ -148,7 +169,7 @@ public class ShowAdminPageHandler extends AbstractWebPageHandler implements WebF
 		String photoId = us.getAndSaveAsString(args, "photoId");
 		Photo photo = PhotoManager.getInstance().getPhoto(photoId);
 		if (photo == null) {
-			us.setMessage(us.getClient().getLanguageConfiguration().getPhotoIsUnknown());
+			us.setMessage(getModelConfig(us).getPhotoIsUnknown());
 		}
 
 		return PartUtil.SHOW_ADMIN_PAGE_NAME;
@@ -52,7 +52,7 @@ public class ShowNotePageHandler extends AbstractWebPageHandler {
 	 */
 	protected void makeWebPageBody(UserSession us, WebPart page) {
 		String heading = us.getHeading();
-		heading = StringUtil.isNullOrEmptyString(heading) ? us.getClient().getLanguageConfiguration()
+		heading = StringUtil.isNullOrEmptyString(heading) ? getModelConfig(us)
 				.getThankYou() : heading;
 		page.addString("noteHeading", heading);
 
@@ -21,14 +21,19 @@
 package org.wahlzeit.handlers;
 
 import org.wahlzeit.model.AccessRights;
+import org.wahlzeit.model.Photo;
 import org.wahlzeit.model.PhotoCase;
 import org.wahlzeit.model.PhotoCaseManager;
+import org.wahlzeit.model.PhotoId;
+import org.wahlzeit.model.PhotoManager;
 import org.wahlzeit.model.UserSession;
 import org.wahlzeit.utils.HtmlUtil;
 import org.wahlzeit.webparts.WebPart;
 import org.wahlzeit.webparts.Writable;
 import org.wahlzeit.webparts.WritableList;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 
@@ -54,6 +59,7 @@ public class ShowPhotoCasesPageHandler extends AbstractWebPageHandler {
 		PhotoCaseManager pcm = PhotoCaseManager.getInstance();
 		PhotoCase[] flaggedCases = pcm.getOpenPhotoCasesByAscendingAge();
 		if (flaggedCases.length != 0) {
+			attachManagedPhotos(flaggedCases);
 			WritableList openCases = new WritableList();
 			for (int i = 0; i < flaggedCases.length; i++) {
 				openCases.append(makePhotoCaseForm(us, flaggedCases[i]));
@@ -61,7 +67,28 @@ public class ShowPhotoCasesPageHandler extends AbstractWebPageHandler {
 			page.addWritable("openCases", openCases);
 		} else {
 			page.addString("openCases",
-					HtmlUtil.asP(us.getClient().getLanguageConfiguration().getNoFlaggedPhotoCases()));
+					HtmlUtil.asP(getModelConfig(us).getNoFlaggedPhotoCases()));
+		}
+	}
+
+	/**
+	 * Replaces the photos of the cases by the copies of the PhotoManager, so decisions change the photos that are
+	 * shown and saved. Photos that are not in memory are loaded in one batch.
+	 */
+	protected void attachManagedPhotos(PhotoCase[] photoCases) {
+		List<PhotoId> photoIds = new ArrayList<PhotoId>(photoCases.length);
+		for (PhotoCase photoCase : photoCases) {
+			if (photoCase.getPhoto() != null) {
+				photoIds.add(photoCase.getPhoto().getId());
+			}
+		}
+
+		Map<PhotoId, Photo> photos = PhotoManager.getInstance().getPhotos(photoIds);
+		for (PhotoCase photoCase : photoCases) {
+			Photo photo = photoCase.getPhoto() == null ? null : photos.get(photoCase.getPhoto().getId());
+			if (photo != null) {
+				photoCase.setPhoto(photo);
+			}
 		}
 	}
 
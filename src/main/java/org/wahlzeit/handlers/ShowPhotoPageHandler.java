@@ -62,14 +62,16 @@ public class ShowPhotoPageHandler extends AbstractWebPageHandler implements WebF
 		// check if an image has been skipped
 		if (args.containsKey("prior")) {
 			String skippedPhotoIdString = us.getAsString(args, "prior");
-			PhotoId skippedPhotoId = PhotoId.getIdFromString(skippedPhotoIdString);
-			us.getClient().addSkippedPhotoId(skippedPhotoId);
-			us.getPhotoFilter().addSkippedPhotoId(skippedPhotoId);
+			PhotoId skippedPhotoId = PhotoId.getKnownIdFromString(skippedPhotoIdString);
+			if (!skippedPhotoId.isNullId()) {
+				us.getClient().addSkippedPhotoId(skippedPhotoId);
+				us.addSkippedPhotoId(skippedPhotoId);
+			}
 		}
 
 		if (photo == null) {
 			PhotoFilter filter = us.getPhotoFilter();
-			photo = photoManager.getVisiblePhoto(filter);
+			photo = photoManager.getVisiblePhoto(filter, us.getClient());
 			if (photo != null) {
 				link = photo.getId().asString();
 			}
@@ -97,7 +99,7 @@ public class ShowPhotoPageHandler extends AbstractWebPageHandler implements WebF
 	 */
 	protected void makeWebPageBody(UserSession us, WebPart page) {
 		PhotoId photoId = us.getPhotoId();
-		Photo photo = PhotoManager.getInstance().getPhoto(photoId);
+		Photo photo = getCurrentPhoto(us);
 
 		makeLeftSidebar(us, page);
 
@@ -128,14 +130,14 @@ public class ShowPhotoPageHandler extends AbstractWebPageHandler implements WebF
 		if (lastPraisedPhoto != null) {
 			parts.append(makePriorPhotoInfo(us, lastPraisedPhoto));
 		} else {
-			parts.append(createWebPart(us, PartUtil.BLURP_INFO_FILE));
+			parts.append(createStaticWebPart(us, PartUtil.BLURP_INFO_FILE));
 		}
 
 		WebFormHandler handler = getFormHandler(PartUtil.FILTER_PHOTOS_FORM_NAME);
 		Writable filterPhotos = handler.makeWebPart(us);
 		parts.append(filterPhotos);
 
-		parts.append(createWebPart(us, PartUtil.LINKS_INFO_FILE));
+		parts.append(createStaticWebPart(us, PartUtil.LINKS_INFO_FILE));
 
 		page.addWritable("sidebar", parts);
 	}
@@ -147,8 +149,7 @@ public class ShowPhotoPageHandler extends AbstractWebPageHandler implements WebF
 		Client client = us.getClient();
 		PhotoSize pagePhotoSize = client.getPhotoSize();
 
-		PhotoId photoId = us.getPhotoId();
-		Photo photo = PhotoManager.getInstance().getPhoto(photoId);
+		Photo photo = getCurrentPhoto(us);
 
 		if (photo == null) {
 			page.addString("mainWidth", String.valueOf(pagePhotoSize.getMaxPhotoWidth()));
@@ -174,8 +175,7 @@ public class ShowPhotoPageHandler extends AbstractWebPageHandler implements WebF
 	 *
 	 */
 	protected void makePhotoCaption(UserSession us, WebPart page) {
-		PhotoId photoId = us.getPhotoId();
-		Photo photo = PhotoManager.getInstance().getPhoto(photoId);
+		Photo photo = getCurrentPhoto(us);
 
 		WebPart caption = createWebPart(us, PartUtil.CAPTION_INFO_FILE);
 		caption.addString(Photo.CAPTION, getPhotoCaption(us, photo));
@@ -200,8 +200,7 @@ public class ShowPhotoPageHandler extends AbstractWebPageHandler implements WebF
 	 */
 	protected void makeRightSidebar(UserSession us, WebPart page) {
 		String handlerName = PartUtil.NULL_FORM_NAME;
-		PhotoId photoId = us.getPhotoId();
-		Photo photo = PhotoManager.getInstance().getPhoto(photoId);
+		Photo photo = getCurrentPhoto(us);
 		if (photo != null) {
 			handlerName = PartUtil.PRAISE_PHOTO_FORM_NAME;
 		}
@@ -218,7 +217,7 @@ public class ShowPhotoPageHandler extends AbstractWebPageHandler implements WebF
 	protected WebPart makePriorPhotoInfo(UserSession us, Photo lastPraisedPhoto) {
 		WebPart result = createWebPart(us, PartUtil.PHOTO_INFO_FILE);
 
-		result.addString(Photo.PRAISE, lastPraisedPhoto.getPraiseAsString(us.getClient().getLanguageConfiguration()));
+		result.addString(Photo.PRAISE, lastPraisedPhoto.getPraiseAsString(getModelConfig(us)));
 		result.addString(Photo.THUMB, getPhotoThumb(us, lastPraisedPhoto));
 		result.addString(Photo.CAPTION, getPhotoCaption(us, lastPraisedPhoto));
 
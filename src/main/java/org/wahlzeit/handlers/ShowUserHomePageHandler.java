@@ -22,6 +22,7 @@ package org.wahlzeit.handlers;
 
 import org.wahlzeit.model.AccessRights;
 import org.wahlzeit.model.Photo;
+import org.wahlzeit.model.PhotoId;
 import org.wahlzeit.model.PhotoManager;
 import org.wahlzeit.model.User;
 import org.wahlzeit.model.UserSession;
@@ -30,6 +31,10 @@ import org.wahlzeit.webparts.WebPart;
 import org.wahlzeit.webparts.Writable;
 import org.wahlzeit.webparts.WritableList;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 /**
  * A handler class for a specific web page.
  */
@@ -53,10 +58,15 @@ public class ShowUserHomePageHandler extends AbstractWebPageHandler {
 		Photo[] photos = user.getPhotos();
 		boolean wasEmpty = true;
 		if (photos.length != 0) {
-			WritableList list = new WritableList();
+			// load them from the PhotoManager to make sure the same copies are used, all missing ones in one batch
+			List<PhotoId> photoIds = new ArrayList<PhotoId>(photos.length);
 			for (Photo photo : photos) {
-				// load it from the PhotoManager to make sure the same copy is used
-				photo = PhotoManager.getInstance().getPhotoFromId(photo.getId());
+				photoIds.add(photo.getId());
+			}
+			Map<PhotoId, Photo> managedPhotos = PhotoManager.getInstance().getPhotos(photoIds);
+
+			WritableList list = new WritableList();
+			for (Photo photo : managedPhotos.values()) {
 				if (!photo.getStatus().isDeleted()) {
 					part = makeUserPhotoForm(us, photo);
 					list.append(part);
@@ -67,7 +77,7 @@ public class ShowUserHomePageHandler extends AbstractWebPageHandler {
 		}
 
 		if (wasEmpty) {
-			page.addString("photos", HtmlUtil.asP(us.getClient().getLanguageConfiguration().getNoPhotoUploaded()));
+			page.addString("photos", HtmlUtil.asP(getModelConfig(us).getNoPhotoUploaded()));
 		}
 	}
 
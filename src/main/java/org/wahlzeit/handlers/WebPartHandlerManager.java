@@ -28,7 +28,8 @@ import java.util.logging.Logger;
 
 
 /**
- * A manager class for web parts.
+ * A manager class for web parts. Handlers are added while the service starts up; then the manager is frozen and all
+ * lookups go through an immutable {@link WebPartRouter}.
  */
 public class WebPartHandlerManager {
 
@@ -42,6 +43,11 @@ public class WebPartHandlerManager {
 	 */
 	protected Map<String, WebPartHandler> handler = new HashMap<String, WebPartHandler>();
 
+	/**
+	 * Set once the handlers are complete, see {@link #freeze()}
+	 */
+	protected volatile WebPartRouter router = null;
+
 	/**
 	 *
 	 */
@@ -60,6 +66,10 @@ public class WebPartHandlerManager {
 	 *
 	 */
 	public WebPageHandler getWebPageHandlerFor(String name) {
+		if (router != null) {
+			return router.resolve(name).getWebPageHandler();
+		}
+
 		WebPartHandler result = handler.get(name);
 		if (result == null || !(result instanceof WebPageHandler)) {
 			result = getDefaultWebPageHandler();
@@ -86,6 +96,10 @@ public class WebPartHandlerManager {
 	 *
 	 */
 	public WebFormHandler getWebFormHandlerFor(String name) {
+		if (router != null) {
+			return router.resolve(name).getWebFormHandler();
+		}
+
 		WebPartHandler result = handler.get(name);
 		if (result == null || !(result instanceof WebFormHandler)) {
 			result = getDefaultWebPageHandler();
@@ -105,6 +119,10 @@ public class WebPartHandlerManager {
 	 *
 	 */
 	public WebPartHandler addWebPartHandler(String name, WebPartHandler myHandler) {
+		if (router != null) {
+			throw new IllegalStateException("web part handlers are frozen already");
+		}
+
 		handler.put(name, myHandler);
 		log.config(LogBuilder.createSystemMessage().
 				addAction("add WebPartHandler").
@@ -113,6 +131,13 @@ public class WebPartHandlerManager {
 		return myHandler;
 	}
 
+	/**
+	 *
+	 */
+	public int getNoOfWebPartHandlers() {
+		return handler.size();
+	}
+
 	/**
 	 *
 	 */
@@ -120,4 +145,38 @@ public class WebPartHandlerManager {
 		return handler.get("null");
 	}
 
+	/**
+	 * @methodtype command
+	 *
+	 * Compiles the handlers into the router; no handlers may be added afterwards.
+	 */
+	public synchronized void freeze() {
+		if (router == null) {
+			router = new WebPartRouter(handler, PartUtil.DEFAULT_PAGE_NAME, PartUtil.SHOW_PHOTO_PAGE_NAME);
+			log.config(LogBuilder.createSystemMessage().
+					addAction("freeze WebPartHandlers").
+					addParameter("routes", router.getNoOfRoutes()).toString());
+		}
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	public boolean isFrozen() {
+		return router != null;
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the router; there is none before the manager is frozen, which happens when the service has started.
+	 */
+	public WebPartRouter getRouter() {
+		WebPartRouter result = router;
+		if (result == null) {
+			throw new IllegalStateException("web part handlers are not frozen yet");
+		}
+		return result;
+	}
+
 }
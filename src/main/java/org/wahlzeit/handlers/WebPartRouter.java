@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.handlers;
+
+import org.wahlzeit.model.PhotoId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable routing table from the names of web parts to their handlers. The names are compiled into a trie, which is
+ * kept in flat arrays: the edges of each node are stored next to each other, so resolving a name walks the chars of
+ * the request path once and neither creates substrings nor other objects.
+ *
+ * Names that are not known, but have the syntax of a photo id, e.g. "x1ac0", are routed to the page that shows
+ * photos; all other unknown names are routed to the default page, as before.
+ *
+ * @review
+ */
+public class WebPartRouter {
+
+	/**
+	 * Target of a name, with the handlers to use for a get and a post
+	 */
+	public static class Route {
+
+		protected final String name;
+		protected final WebPartHandler handler;
+		protected final WebPageHandler pageHandler;
+		protected final WebFormHandler formHandler;
+		protected final boolean isPhotoRoute;
+
+		/**
+		 * @methodtype constructor
+		 */
+		protected Route(String name, WebPartHandler handler, WebPartHandler defaultHandler, boolean isPhotoRoute) {
+			this.name = name;
+			this.handler = handler;
+			this.pageHandler = (WebPageHandler) asHandler(handler, defaultHandler, WebPageHandler.class);
+			this.formHandler = (WebFormHandler) asHandler(handler, defaultHandler, WebFormHandler.class);
+			this.isPhotoRoute = isPhotoRoute;
+		}
+
+		/**
+		 * @methodtype helper
+		 */
+		protected static WebPartHandler asHandler(WebPartHandler handler, WebPartHandler defaultHandler, Class<?> type) {
+			if (type.isInstance(handler)) {
+				return handler;
+			} else if (type.isInstance(defaultHandler)) {
+				return defaultHandler;
+			}
+			return null;
+		}
+
+		/**
+		 * @methodtype get
+		 *
+		 * Returns the name of the route, or null for photos and unknown names.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @methodtype get
+		 */
+		public WebPartHandler getHandler() {
+			return handler;
+		}
+
+		/**
+		 * @methodtype get
+		 */
+		public WebPageHandler getWebPageHandler() {
+			return pageHandler;
+		}
+
+		/**
+		 * @methodtype get
+		 */
+		public WebFormHandler getWebFormHandler() {
+			return formHandler;
+		}
+
+		/**
+		 * @methodtype boolean-query
+		 */
+		public boolean isPhotoRoute() {
+			return isPhotoRoute;
+		}
+
+		/**
+		 * @methodtype conversion
+		 *
+		 * Returns the link that was resolved to this route. Known names and the ids of known photos return their
+		 * existing strings.
+		 */
+		public String getLink(String path, int start, int end) {
+			if (name != null) {
+				return name;
+			} else if (isPhotoRoute) {
+				String idString = PhotoId.getFromInt(PhotoId.getFromString(path, start, end));
+				int length = end - start;
+				if (idString.length() == length && path.regionMatches(start, idString, 0, length)) {
+					return idString;
+				}
+			}
+			return path.substring(start, end);
+		}
+	}
+
+	/**
+	 * Chars and target nodes of all edges, grouped by their source node; the edges of node i are the ones from
+	 * firstEdges[i] to firstEdges[i + 1]
+	 */
+	protected final char[] edgeChars;
+	protected final int[] edgeTargets;
+	protected final int[] firstEdges;
+
+	/**
+	 * Route of the name that ends at a node, or null
+	 */
+	protected final Route[] routes;
+
+	/**
+	 *
+	 */
+	protected final Route photoRoute;
+	protected final Route defaultRoute;
+
+	/**
+	 * @methodtype constructor
+	 *
+	 * Compiles the handlers by name; photo ids are routed to the handler of the photo page name.
+	 */
+	public WebPartRouter(Map<String, WebPartHandler> handlers, String defaultName, String photoPageName) {
+		WebPartHandler defaultHandler = handlers.get(defaultName);
+		WebPartHandler photoHandler = handlers.get(photoPageName);
+		photoRoute = (photoHandler == null) ? null : new Route(null, photoHandler, defaultHandler, true);
+		defaultRoute = new Route(null, defaultHandler, defaultHandler, false);
+
+		List<TreeMap<Character, Integer>> nodes = new ArrayList<TreeMap<Character, Integer>>();
+		List<Route> nodeRoutes = new ArrayList<Route>();
+		nodes.add(new TreeMap<Character, Integer>());
+		nodeRoutes.add(null);
+		int noEdges = 0;
+		for (Map.Entry<String, WebPartHandler> entry : handlers.entrySet()) {
+			String name = entry.getKey();
+			int node = 0;
+			for (int i = 0; i < name.length(); i++) {
+				Integer next = nodes.get(node).get(name.charAt(i));
+				if (next == null) {
+					next = nodes.size();
+					nodes.get(node).put(name.charAt(i), next);
+					nodes.add(new TreeMap<Character, Integer>());
+					nodeRoutes.add(null);
+					noEdges++;
+				}
+				node = next;
+			}
+			nodeRoutes.set(node, new Route(name, entry.getValue(), defaultHandler, false));
+		}
+
+		edgeChars = new char[noEdges];
+		edgeTargets = new int[noEdges];
+		firstEdges = new int[nodes.size() + 1];
+		routes = nodeRoutes.toArray(new Route[nodeRoutes.size()]);
+		int edge = 0;
+		for (int node = 0; node < nodes.size(); node++) {
+			firstEdges[node] = edge;
+			for (Map.Entry<Character, Integer> entry : nodes.get(node).entrySet()) {
+				edgeChars[edge] = entry.getKey();
+				edgeTargets[edge] = entry.getValue();
+				edge++;
+			}
+		}
+		firstEdges[nodes.size()] = edge;
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the route for the name between start and end of the path; never null.
+	 */
+	public Route resolve(String path, int start, int end) {
+		int node = 0;
+		for (int i = start; i < end && node >= 0; i++) {
+			node = getTarget(node, path.charAt(i));
+		}
+
+		if (node >= 0 && routes[node] != null) {
+			return routes[node];
+		} else if (photoRoute != null && PhotoId.isIdString(path, start, end)) {
+			return photoRoute;
+		}
+		return defaultRoute;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public Route resolve(String name) {
+		return resolve(name, 0, name.length());
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the node the edge with the char leads to, or -1 if there is none.
+	 */
+	protected int getTarget(int node, char c) {
+		for (int edge = firstEdges[node]; edge < firstEdges[node + 1]; edge++) {
+			if (edgeChars[edge] == c) {
+				return edgeTargets[edge];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getNoOfRoutes() {
+		int result = 0;
+		for (Route route : routes) {
+			if (route != null) {
+				result++;
+			}
+		}
+		return result;
+	}
+
+}
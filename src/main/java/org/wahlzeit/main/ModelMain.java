@@ -29,15 +29,36 @@ import org.wahlzeit.services.LogBuilder;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.logging.Logger;
 
 /**
- * A single-threaded Main class with database connection. Can be used by tools that don't want to start a server.
+ * A Main class with database connection. Can be used by tools that don't want to start a server.
  */
 public abstract class ModelMain extends AbstractMain {
 
 	private static final Logger log = Logger.getLogger(ModelMain.class.getName());
 
+	/**
+	 * Phase names, to declare dependencies on them
+	 */
+	public static final String IMAGE_STORAGE_PHASE = "imageStorage";
+	public static final String GLOBALS_PHASE = "globals";
+	public static final String USERS_PHASE = "users";
+	public static final String PHOTO_FACTORY_PHASE = "photoFactory";
+	public static final String PHOTOS_PHASE = "photos";
+	public static final String SNAPSHOT_PHASE = "snapshot";
+
+	/**
+	 *
+	 */
+	protected StartupReport startupReport = new StartupReport();
+
+	/**
+	 * Snapshot of users and photos while starting up, null if there is none
+	 */
+	protected ModelSnapshot modelSnapshot = null;
+
 	/**
 	 *
 	 */
@@ -45,23 +66,88 @@ public abstract class ModelMain extends AbstractMain {
 		super.startUp(rootDir);
 		log.info("AbstractMain.startUp completed");
 
-		log.config(LogBuilder.createSystemMessage().addAction("load image storage").toString());
-		//GcsAdapter.Builder gcsAdapterBuilder = new GcsAdapter.Builder();
-		ImageStorage.setInstance(new DatastoreAdapter());
-
-		log.config(LogBuilder.createSystemMessage().addAction("load globals").toString());
-		GlobalsManager.getInstance().loadGlobals();
+		StartupPlan plan = new StartupPlan();
+		addStartupPhases(plan);
+		try {
+			startupReport = plan.run();
+		} finally {
+			modelSnapshot = null;
+		}
+	}
 
-		log.config(LogBuilder.createSystemMessage().addAction("load user").toString());
-		UserManager.getInstance().init();
+	/**
+	 * @methodtype command
+	 *
+	 * Adds the phases of the startup; subclasses add their own phases after these.
+	 */
+	protected void addStartupPhases(StartupPlan plan) {
+		plan.addPhase(new StartupPhase(IMAGE_STORAGE_PHASE) {
+			protected int run() {
+				//GcsAdapter.Builder gcsAdapterBuilder = new GcsAdapter.Builder();
+				ImageStorage.setInstance(new DatastoreAdapter());
+				return 1;
+			}
+		});
 
-		log.config(LogBuilder.createSystemMessage().addAction("init PhotoFactory").toString());
-		WatchPhotoFactory.initialize();
+		plan.addPhase(new StartupPhase(GLOBALS_PHASE) {
+			protected int run() {
+				GlobalsManager.getInstance().loadGlobals();
+				return 1;
+			}
+		});
+
+		plan.addPhase(new StartupPhase(SNAPSHOT_PHASE) {
+			protected int run() {
+				ModelSnapshotManager snapshotManager = ModelSnapshotManager.getInstance();
+				if (!snapshotManager.isSnapshotUsable()) {
+					log.info("model snapshot skipped, photos or clients are paged");
+					return 0;
+				}
+				modelSnapshot = snapshotManager.loadSnapshot();
+				if (modelSnapshot == null) {
+					return 0;
+				}
+				return modelSnapshot.replayChanges();
+			}
+		});
+
+		plan.addPhase(new StartupPhase(USERS_PHASE, GLOBALS_PHASE, SNAPSHOT_PHASE) {
+			protected int run() {
+				UserManager userManager = UserManager.getInstance();
+				if (modelSnapshot != null) {
+					userManager.addLoadedUsers(modelSnapshot.getUsers());
+				} else {
+					userManager.init();
+				}
+				return userManager.getNoOfClients();
+			}
+		});
 
-		log.config(LogBuilder.createSystemMessage().addAction("load Photos").toString());
-		PhotoManager.getInstance().init();
+		plan.addPhase(new StartupPhase(PHOTO_FACTORY_PHASE) {
+			protected int run() {
+				WatchPhotoFactory.initialize();
+				return 1;
+			}
+		});
+
+		// photos are loaded independently of their owners, who are looked up only when photos are saved
+		plan.addPhase(new StartupPhase(PHOTOS_PHASE, IMAGE_STORAGE_PHASE, GLOBALS_PHASE, PHOTO_FACTORY_PHASE,
+				SNAPSHOT_PHASE) {
+			protected int run() {
+				if (modelSnapshot != null) {
+					return PhotoManager.getInstance().loadPhotos(new ArrayList<Photo>(modelSnapshot.getPhotos()));
+				}
+				return PhotoManager.getInstance().loadPhotos();
+			}
+		});
 	}
 
+	/**
+	 * @methodtype get
+	 */
+	public StartupReport getStartupReport() {
+		return startupReport;
+	}
 
 	/**
 	 *
@@ -40,6 +40,13 @@ public class ServiceMain extends ModelMain {
 
 	private static final Logger log = Logger.getLogger(ServiceMain.class.getName());
 
+	/**
+	 * Phase names, to declare dependencies on them
+	 */
+	public static final String TEMPLATES_PHASE = "templates";
+	public static final String LANGUAGE_MODELS_PHASE = "languageModels";
+	public static final String HANDLERS_PHASE = "handlers";
+
 	/**
 	 *
 	 */
@@ -94,18 +101,39 @@ public class ServiceMain extends ModelMain {
 		log.config(LogBuilder.createSystemMessage().addAction("Start up ModelMain").toString());
 		super.startUp(rootDir);
 
-		log.config(LogBuilder.createSystemMessage().addAction("Configure WebPartTemplateService").toString());
-		configureWebPartTemplateService();
-
-		log.config(LogBuilder.createSystemMessage().addAction("Configure WebPartHandler").toString());
-		configureWebPartHandlers();
-
-		log.config(LogBuilder.createSystemMessage().addAction("Configure LanguageModels").toString());
-		configureLanguageModels();
-
 		log.config(LogBuilder.createSystemMessage().addMessage("StartUp complete.").toString());
 	}
 
+	/**
+	 * @methodtype command
+	 */
+	@Override
+	protected void addStartupPhases(StartupPlan plan) {
+		super.addStartupPhases(plan);
+
+		plan.addPhase(new StartupPhase(TEMPLATES_PHASE) {
+			protected int run() {
+				configureWebPartTemplateService();
+				return 1;
+			}
+		});
+
+		plan.addPhase(new StartupPhase(LANGUAGE_MODELS_PHASE) {
+			protected int run() {
+				configureLanguageModels();
+				return LanguageConfigs.size();
+			}
+		});
+
+		plan.addPhase(new StartupPhase(HANDLERS_PHASE, TEMPLATES_PHASE, LANGUAGE_MODELS_PHASE) {
+			protected int run() {
+				configureWebPartHandlers();
+				WebPartHandlerManager.getInstance().freeze();
+				return WebPartHandlerManager.getInstance().getNoOfWebPartHandlers();
+			}
+		});
+	}
+
 	/**
 	 *
 	 */
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.main;
+
+import org.wahlzeit.handlers.PartUtil;
+import org.wahlzeit.handlers.WebPageHandler;
+import org.wahlzeit.handlers.WebPartHandlerManager;
+import org.wahlzeit.model.Client;
+import org.wahlzeit.model.LanguageConfigs;
+import org.wahlzeit.model.ModelConfig;
+import org.wahlzeit.model.PhotoId;
+import org.wahlzeit.model.PhotoManager;
+import org.wahlzeit.model.RequestContext;
+import org.wahlzeit.model.UserManager;
+import org.wahlzeit.model.UserSession;
+import org.wahlzeit.services.LogBuilder;
+import org.wahlzeit.services.SessionManager;
+import org.wahlzeit.webparts.WebPart;
+import org.wahlzeit.webparts.WebPartTemplateService;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Prepares a started instance for its first requests, so they are not slowed down by loading templates and photos or
+ * by code that has not been run yet. It preloads all templates of all languages, the most praised photos with their
+ * tags and images, and renders the common pages a few times for a guest of each language. The phases run as a
+ * {@link StartupPlan}, so the templates and photos are loaded in parallel.
+ *
+ * @review
+ */
+public class ServiceWarmup {
+
+	private static final Logger log = Logger.getLogger(ServiceWarmup.class.getName());
+
+	/**
+	 * Phase names, to declare dependencies on them
+	 */
+	public static final String TEMPLATES_PHASE = "warmupTemplates";
+	public static final String TOP_PHOTOS_PHASE = "warmupTopPhotos";
+	public static final String RENDERS_PHASE = "warmupRenders";
+
+	/**
+	 * Number of most praised photos that are loaded
+	 */
+	public static final int NO_TOP_PHOTOS = 20;
+
+	/**
+	 * Number of times each page is rendered, enough to run the render code before the first request does
+	 */
+	public static final int NO_RENDER_ROUNDS = 3;
+
+	/**
+	 * Pages every guest is likely to see first
+	 */
+	protected static final String[] WARMUP_PAGE_NAMES = {
+			PartUtil.SHOW_PHOTO_PAGE_NAME,
+			PartUtil.FILTER_PHOTOS_PAGE_NAME,
+			PartUtil.ABOUT_PAGE_NAME,
+			PartUtil.CONTACT_PAGE_NAME,
+			PartUtil.IMPRINT_PAGE_NAME,
+			PartUtil.TERMS_PAGE_NAME,
+			PartUtil.SET_OPTIONS_PAGE_NAME,
+			PartUtil.TELL_FRIEND_PAGE_NAME
+	};
+
+	/**
+	 * Prefix of the ids of the in-memory sessions used for rendering
+	 */
+	protected static final String SESSION_ID_PREFIX = "warmup-";
+
+	/**
+	 * @methodtype command
+	 *
+	 * Runs all phases of the warmup and returns how long each one took.
+	 */
+	public StartupReport run() throws Exception {
+		StartupPlan plan = new StartupPlan();
+		addWarmupPhases(plan);
+		StartupReport result = plan.run();
+
+		log.info(LogBuilder.createSystemMessage().
+				addAction("warm up").
+				addParameter("phases", result.asString()).toString());
+		return result;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void addWarmupPhases(StartupPlan plan) {
+		plan.addPhase(new StartupPhase(TEMPLATES_PHASE) {
+			protected int run() {
+				return loadTemplates();
+			}
+		});
+
+		plan.addPhase(new StartupPhase(TOP_PHOTOS_PHASE) {
+			protected int run() {
+				return loadTopPhotos();
+			}
+		});
+
+		plan.addPhase(new StartupPhase(RENDERS_PHASE, TEMPLATES_PHASE, TOP_PHOTOS_PHASE) {
+			protected int run() {
+				return renderPages();
+			}
+		});
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected int loadTemplates() {
+		int result = 0;
+		for (ModelConfig config : LanguageConfigs.getAll()) {
+			result += WebPartTemplateService.getInstance().loadAllTemplates(config.getLanguageCode());
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Loads the most praised photos, incl. their tags and images, into the photo cache.
+	 */
+	protected int loadTopPhotos() {
+		PhotoManager photoManager = PhotoManager.getInstance();
+		List<PhotoId> photoIds = photoManager.getPhotoIndex().getTopPhotoIds(NO_TOP_PHOTOS);
+		return photoManager.getPhotos(photoIds).size();
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Renders the warmup pages for a guest of each language and returns the number of rendered pages.
+	 */
+	protected int renderPages() {
+		int result = 0;
+		for (ModelConfig config : LanguageConfigs.getAll()) {
+			WarmupHttpSession httpSession = new WarmupHttpSession(SESSION_ID_PREFIX + config.getLanguageCode());
+			UserSession us = new UserSession(httpSession.getId(), "", httpSession, config.getLanguageCode());
+			Client guest = us.getClient();
+			SessionManager.setThreadLocalSession(us);
+			try {
+				for (int round = 0; round < NO_RENDER_ROUNDS; round++) {
+					for (String pageName : WARMUP_PAGE_NAMES) {
+						if (renderPage(us, pageName)) {
+							result++;
+						}
+					}
+				}
+			} finally {
+				SessionManager.dropThreadLocalSession();
+				UserManager.getInstance().deleteClient(guest);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Handles a get of the page like the MainServlet does, follows one redirect, e.g. from the index page to a photo,
+	 * and renders the resulting page. Returns false if the page could not be rendered.
+	 */
+	protected boolean renderPage(UserSession us, String link) {
+		try {
+			for (int hop = 0; hop < 2; hop++) {
+				us.setRequestContext(new RequestContext(us));
+				WebPageHandler handler = WebPartHandlerManager.getWebPageHandler(link);
+				String newLink = handler.handleGet(us, link, new HashMap<String, String>());
+				if (newLink.equals(link)) {
+					WebPart webPart = handler.makeWebPart(us);
+					webPart.writeOn(new ByteArrayOutputStream());
+					us.clearSavedArgs();
+					return true;
+				}
+				link = newLink;
+			}
+		} catch (Exception ex) {
+			log.warning(LogBuilder.createSystemMessage().
+					addParameter("page", link).
+					addException("warming up page failed", ex).toString());
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.main;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One step of the application startup, e.g. loading all users. A phase names the phases it depends on; it is only
+ * run after all of them have completed, but in parallel to all phases it does not depend on.
+ *
+ * @review
+ */
+public abstract class StartupPhase {
+
+	/**
+	 *
+	 */
+	protected final String name;
+
+	/**
+	 *
+	 */
+	protected final List<String> dependencies;
+
+	/**
+	 * @methodtype constructor
+	 */
+	public StartupPhase(String name, String... dependencies) {
+		if (name == null || name.isEmpty()) {
+			throw new IllegalArgumentException("startup phase needs a name");
+		}
+		this.name = name;
+		this.dependencies = Collections.unmodifiableList(Arrays.asList(dependencies));
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public List<String> getDependencies() {
+		return dependencies;
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Performs the phase and returns the number of objects it has loaded or configured.
+	 */
+	protected abstract int run() throws Exception;
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.main;
+
+import org.wahlzeit.services.DatastoreTask;
+import org.wahlzeit.services.LogBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+/**
+ * Dependency graph of the phases of the application startup. Running the plan runs each phase as a task on a
+ * fork-join pool that first waits for the phases it depends on, so independent phases run in parallel. Phases can
+ * only depend on phases that were added before them, which keeps the graph free of cycles.
+ *
+ * The number of threads is configured by the system property {@link #SYSTEM_PROPERTY}.
+ *
+ * @review
+ */
+public class StartupPlan {
+
+	/**
+	 *
+	 */
+	public static final String SYSTEM_PROPERTY = "org.wahlzeit.startupParallelism";
+
+	/**
+	 * Most phases wait for the datastore, so use more threads than there are processors
+	 */
+	public static final int DEFAULT_PARALLELISM = 4;
+
+	private static final Logger log = Logger.getLogger(StartupPlan.class.getName());
+
+	/**
+	 * In the order in which they were added
+	 */
+	protected final Map<String, StartupPhase> phases = new LinkedHashMap<String, StartupPhase>();
+
+	/**
+	 *
+	 */
+	protected final StartupReport report = new StartupReport();
+
+	/**
+	 * @methodtype set
+	 */
+	public void addPhase(StartupPhase phase) {
+		if (phases.containsKey(phase.getName())) {
+			throw new IllegalArgumentException("startup phase " + phase.getName() + " has already been added");
+		}
+		for (String dependency : phase.getDependencies()) {
+			if (!phases.containsKey(dependency)) {
+				throw new IllegalArgumentException("startup phase " + phase.getName() + " depends on unknown phase " +
+						dependency);
+			}
+		}
+		phases.put(phase.getName(), phase);
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public StartupReport getReport() {
+		return report;
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Runs all phases and returns once all of them have completed. If a phase fails, the phases that depend on it are
+	 * not run and its exception is thrown.
+	 */
+	public StartupReport run() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(getParallelism());
+		long startTime = System.currentTimeMillis();
+		try {
+			Map<String, PhaseTask> tasks = new LinkedHashMap<String, PhaseTask>();
+			for (StartupPhase phase : phases.values()) {
+				List<PhaseTask> dependencies = new ArrayList<PhaseTask>();
+				for (String dependency : phase.getDependencies()) {
+					dependencies.add(tasks.get(dependency));
+				}
+				PhaseTask task = new PhaseTask(phase, dependencies, startTime);
+				tasks.put(phase.getName(), task);
+				pool.execute(task);
+			}
+
+			for (PhaseTask task : tasks.values()) {
+				task.join();
+			}
+		} catch (PhaseFailedException ex) {
+			throw ex.getCause();
+		} finally {
+			pool.shutdown();
+		}
+
+		report.setTotalDuration(System.currentTimeMillis() - startTime);
+		log.info(LogBuilder.createSystemMessage().addMessage(report.asString()).toString());
+		return report;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	protected int getParallelism() {
+		String value = System.getProperty(SYSTEM_PROPERTY);
+		try {
+			int result = value == null ? DEFAULT_PARALLELISM : Integer.parseInt(value.trim());
+			return result > 0 ? result : DEFAULT_PARALLELISM;
+		} catch (NumberFormatException ex) {
+			log.warning(LogBuilder.createSystemMessage().
+					addParameter("invalid startup parallelism", value).toString());
+			return DEFAULT_PARALLELISM;
+		}
+	}
+
+	/**
+	 * Runs one phase after the phases it depends on and records the result in the report.
+	 */
+	protected class PhaseTask extends DatastoreTask<Void> {
+
+		private static final long serialVersionUID = 42L; // any one does; class never serialized
+
+		protected final StartupPhase phase;
+		protected final List<PhaseTask> dependencies;
+		protected final long startupTime;
+
+		/**
+		 * @methodtype constructor
+		 */
+		protected PhaseTask(StartupPhase phase, List<PhaseTask> dependencies, long startupTime) {
+			this.phase = phase;
+			this.dependencies = dependencies;
+			this.startupTime = startupTime;
+		}
+
+		/**
+		 * @methodtype command
+		 */
+		@Override
+		protected Void doCompute() {
+			for (PhaseTask dependency : dependencies) {
+				dependency.join();
+			}
+
+			log.config(LogBuilder.createSystemMessage().addAction("start up " + phase.getName()).toString());
+			long startTime = System.currentTimeMillis();
+			int count;
+			try {
+				count = phase.run();
+			} catch (PhaseFailedException ex) {
+				throw ex;
+			} catch (Exception ex) {
+				throw new PhaseFailedException(ex);
+			}
+			long duration = System.currentTimeMillis() - startTime;
+
+			report.addEntry(new StartupReport.Entry(phase.getName(), startTime - startupTime, duration, count));
+			log.info(LogBuilder.createSystemMessage().
+					addParameter("startup phase", phase.getName()).
+					addParameter("objects", count).
+					addParameter("duration (ms)", duration).toString());
+			return null;
+		}
+	}
+
+	/**
+	 * Carries the exception of a failed phase through the join of the tasks that depend on it.
+	 */
+	protected static class PhaseFailedException extends RuntimeException {
+
+		/**
+		 * @methodtype constructor
+		 */
+		protected PhaseFailedException(Exception cause) {
+			super(cause);
+		}
+
+		/**
+		 * @methodtype get
+		 */
+		@Override
+		public synchronized Exception getCause() {
+			return (Exception) super.getCause();
+		}
+	}
+
+}
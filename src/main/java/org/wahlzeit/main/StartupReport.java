@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Duration and number of objects of each phase of the last startup, for the log and the admin page.
+ *
+ * @review
+ */
+public class StartupReport {
+
+	/**
+	 * Result of one phase; times are in milliseconds, the start relative to the start of the whole startup
+	 */
+	public static class Entry {
+
+		protected final String phaseName;
+		protected final long start;
+		protected final long duration;
+		protected final int count;
+
+		/**
+		 * @methodtype constructor
+		 */
+		public Entry(String phaseName, long start, long duration, int count) {
+			this.phaseName = phaseName;
+			this.start = start;
+			this.duration = duration;
+			this.count = count;
+		}
+
+		public String getPhaseName() {
+			return phaseName;
+		}
+
+		public long getStart() {
+			return start;
+		}
+
+		public long getDuration() {
+			return duration;
+		}
+
+		public int getCount() {
+			return count;
+		}
+	}
+
+	/**
+	 * In the order in which the phases completed
+	 */
+	protected final List<Entry> entries = new ArrayList<Entry>();
+
+	/**
+	 *
+	 */
+	protected long totalDuration = 0;
+
+	/**
+	 * @methodtype set
+	 */
+	public synchronized void addEntry(Entry entry) {
+		entries.add(entry);
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public synchronized List<Entry> getEntries() {
+		return new ArrayList<Entry>(entries);
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public synchronized Entry getEntry(String phaseName) {
+		for (Entry entry : entries) {
+			if (entry.getPhaseName().equals(phaseName)) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public synchronized long getTotalDuration() {
+		return totalDuration;
+	}
+
+	/**
+	 * @methodtype set
+	 */
+	public synchronized void setTotalDuration(long totalDuration) {
+		this.totalDuration = totalDuration;
+	}
+
+	/**
+	 * @methodtype conversion
+	 */
+	public synchronized String asString() {
+		StringBuilder result = new StringBuilder("startup took " + totalDuration + " ms");
+		for (Entry entry : entries) {
+			result.append(", ").append(entry.getPhaseName()).append(": ").append(entry.getCount()).
+					append(" objects in ").append(entry.getDuration()).append(" ms");
+		}
+		return result.toString();
+	}
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.main;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpSession;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory HttpSession for the synthetic requests of the {@link ServiceWarmup}, so warming up does not create
+ * sessions that are saved and have to be cleaned up later.
+ *
+ * @review
+ */
+public class WarmupHttpSession implements HttpSession {
+
+	protected final String id;
+	protected final long creationTime = System.currentTimeMillis();
+	protected final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+	protected int maxInactiveInterval = 0;
+
+	/**
+	 * @methodtype constructor
+	 */
+	public WarmupHttpSession(String id) {
+		this.id = id;
+	}
+
+	public long getCreationTime() {
+		return creationTime;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public long getLastAccessedTime() {
+		return creationTime;
+	}
+
+	public ServletContext getServletContext() {
+		return null;
+	}
+
+	public void setMaxInactiveInterval(int interval) {
+		maxInactiveInterval = interval;
+	}
+
+	public int getMaxInactiveInterval() {
+		return maxInactiveInterval;
+	}
+
+	@Deprecated
+	@SuppressWarnings("deprecation")
+	public javax.servlet.http.HttpSessionContext getSessionContext() {
+		return null;
+	}
+
+	public Object getAttribute(String name) {
+		return attributes.get(name);
+	}
+
+	@Deprecated
+	public Object getValue(String name) {
+		return getAttribute(name);
+	}
+
+	public Enumeration getAttributeNames() {
+		return Collections.enumeration(attributes.keySet());
+	}
+
+	@Deprecated
+	public String[] getValueNames() {
+		return attributes.keySet().toArray(new String[0]);
+	}
+
+	public void setAttribute(String name, Object value) {
+		if (value == null) {
+			removeAttribute(name);
+		} else {
+			attributes.put(name, value);
+		}
+	}
+
+	@Deprecated
+	public void putValue(String name, Object value) {
+		setAttribute(name, value);
+	}
+
+	public void removeAttribute(String name) {
+		attributes.remove(name);
+	}
+
+	@Deprecated
+	public void removeValue(String name) {
+		removeAttribute(name);
+	}
+
+	public void invalidate() {
+		attributes.clear();
+	}
+
+	public boolean isNew() {
+		return true;
+	}
+
+}
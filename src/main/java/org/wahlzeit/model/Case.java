@@ -31,27 +31,27 @@ public abstract class Case extends DataObject {
 	/**
 	 * 0 is never returned, first value is 1
 	 */
-	protected static CaseId lastCaseId = CaseId.NULL_ID;
+	protected static final IdAllocator idAllocator = new IdAllocator(Globals.Counter.CASE, 10);
 
 	/**
 	 * @methodtype get
 	 */
-	public static synchronized CaseId getLastCaseId() {
-		return lastCaseId;
+	public static IdAllocator getIdAllocator() {
+		return idAllocator;
 	}
 
 	/**
-	 * @methodtype set
+	 * @methodtype get
 	 */
-	public static synchronized void setLastCaseId(CaseId newId) {
-		lastCaseId = newId;
+	public static CaseId getLastCaseId() {
+		return new CaseId((int) idAllocator.getLastId());
 	}
 
 	/**
 	 * @methodtype idiom
 	 */
-	public static synchronized CaseId getNextCaseId() {
-		return lastCaseId = lastCaseId.getNextId();
+	public static CaseId getNextCaseId() {
+		return new CaseId((int) idAllocator.getNextId());
 	}
 
 }
@@ -21,17 +21,20 @@
 package org.wahlzeit.model;
 
 import com.google.appengine.api.datastore.Key;
+import com.googlecode.objectify.annotation.AlsoLoad;
 import com.googlecode.objectify.annotation.Entity;
 import com.googlecode.objectify.annotation.Id;
 import com.googlecode.objectify.annotation.Ignore;
+import com.googlecode.objectify.annotation.Index;
+import com.googlecode.objectify.annotation.OnLoad;
+import com.googlecode.objectify.annotation.OnSave;
 import com.googlecode.objectify.annotation.Parent;
 import org.wahlzeit.services.EmailAddress;
 import org.wahlzeit.services.Language;
-import org.wahlzeit.services.ObjectManager;
 import org.wahlzeit.services.Persistent;
+import org.wahlzeit.utils.IntBitmap;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -44,14 +47,18 @@ public abstract class Client implements Serializable, Persistent {
 	public static final String ID = "id";
 	public static final String NICK_NAME = "nickName";
 	public static final String LANGUAGE = "language";
+	public static final String MODIFIED_ON = "modifiedOn";
 
 	@Id
 	protected String id;
 
 	protected String nickName;
 
+	/**
+	 * Clients are root entities; only clients saved before the EntityGroupMigration still have a parent.
+	 */
 	@Parent
-	protected Key parent = ObjectManager.applicationRootKey;
+	protected Key parent = EntityGroups.getClientParent();
 
 	/**
 	 *
@@ -72,9 +79,29 @@ public abstract class Client implements Serializable, Persistent {
 
 	protected PhotoSize photoSize = PhotoSize.MEDIUM;
 
-	protected List<PhotoId> praisedPhotoIds = new ArrayList<PhotoId>();
+	/**
+	 * Ids of the praised and skipped photos; they are saved as byte arrays, see {@link IntBitmap#toBytes()}
+	 */
+	@Ignore
+	protected IntBitmap praisedPhotoIds = new IntBitmap();
+
+	@Ignore
+	protected IntBitmap skippedPhotoIds = new IntBitmap();
+
+	protected byte[] praisedPhotoIdBytes;
+
+	protected byte[] skippedPhotoIdBytes;
 
-	protected List<PhotoId> skippedPhotoIds = new ArrayList<PhotoId>();
+	/**
+	 * Id of the photo that was praised last, 0 if there is none
+	 */
+	protected int lastPraisedPhotoId = 0;
+
+	/**
+	 * Time of the last save, to replay the clients that changed after a ModelSnapshot was taken
+	 */
+	@Index
+	protected long modifiedOn = 0;
 
 
 	/**
@@ -97,7 +124,8 @@ public abstract class Client implements Serializable, Persistent {
 		// use some of the existing properties for the new user
 		if (previousClient != null) {
 			this.setLanguage(previousClient.getLanguage());
-			this.setPraisedPhotoIds(previousClient.getPraisedPhotoIds());
+			this.setPraisedPhotoIds(previousClient.getPraisedPhotoIds().copy());
+			this.lastPraisedPhotoId = previousClient.lastPraisedPhotoId;
 			this.setPhotoSize(previousClient.getPhotoSize());
 		}
 
@@ -139,7 +167,7 @@ public abstract class Client implements Serializable, Persistent {
 	 * @methodtype set
 	 */
 	public void setNickName(String nickName) throws IllegalArgumentException {
-		UserManager.getInstance().changeNickname(this.nickName, nickName);
+		UserManager.getInstance().changeNickname(this, nickName);
 		this.nickName = nickName;
 		incWriteCount();
 	}
@@ -207,6 +235,24 @@ public abstract class Client implements Serializable, Persistent {
 		writeCount = 0;
 	}
 
+	/**
+	 * @methodtype boolean-query
+	 */
+	boolean isInOwnEntityGroup() {
+		return parent == null;
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Moves the client out of a former parent, so it becomes a root entity. The entity needs to be saved afterwards
+	 * and the entity with the former key deleted.
+	 */
+	void moveToOwnEntityGroup() {
+		parent = EntityGroups.getClientParent();
+		incWriteCount();
+	}
+
 	/**
 	 *
 	 */
@@ -227,6 +273,64 @@ public abstract class Client implements Serializable, Persistent {
 		incWriteCount();
 	}
 
+	/**
+	 * @methodtype get
+	 */
+	public long getModifiedOn() {
+		return modifiedOn;
+	}
+
+	/**
+	 * @methodtype set
+	 */
+	@OnSave
+	protected void updateModifiedOn() {
+		modifiedOn = System.currentTimeMillis();
+	}
+
+	/**
+	 * @methodtype conversion
+	 */
+	@OnSave
+	protected void writePhotoIdBytes() {
+		praisedPhotoIdBytes = praisedPhotoIds.toBytes();
+		skippedPhotoIdBytes = skippedPhotoIds.toBytes();
+	}
+
+	/**
+	 * @methodtype conversion
+	 *
+	 * Clients saved before the photo ids were kept as bitmaps have been converted by the import methods already.
+	 */
+	@OnLoad
+	protected void readPhotoIdBytes() {
+		if (praisedPhotoIdBytes != null) {
+			praisedPhotoIds = IntBitmap.fromBytes(praisedPhotoIdBytes);
+		}
+		if (skippedPhotoIdBytes != null) {
+			skippedPhotoIds = IntBitmap.fromBytes(skippedPhotoIdBytes);
+		}
+	}
+
+	/**
+	 * @methodtype conversion
+	 */
+	protected void importPraisedPhotoIds(@AlsoLoad("praisedPhotoIds") List<PhotoId> photoIds) {
+		for (PhotoId photoId : photoIds) {
+			praisedPhotoIds.add(photoId.asInt());
+			lastPraisedPhotoId = photoId.asInt();
+		}
+	}
+
+	/**
+	 * @methodtype conversion
+	 */
+	protected void importSkippedPhotoIds(@AlsoLoad("skippedPhotoIds") List<PhotoId> photoIds) {
+		for (PhotoId photoId : photoIds) {
+			skippedPhotoIds.add(photoId.asInt());
+		}
+	}
+
 	/**
 	 * @methodtype get
 	 */
@@ -274,37 +378,54 @@ public abstract class Client implements Serializable, Persistent {
 	/**
 	 * @methodtype get
 	 */
-	public List<PhotoId> getPraisedPhotoIds() {
+	public IntBitmap getPraisedPhotoIds() {
 		return praisedPhotoIds;
 	}
 
 	/**
 	 * @methodtype set
 	 */
-	public void setPraisedPhotoIds(List<PhotoId> praisedPhotoIds) {
+	public void setPraisedPhotoIds(IntBitmap praisedPhotoIds) {
 		this.praisedPhotoIds = praisedPhotoIds;
 	}
 
+	/**
+	 * @methodtype boolean-query
+	 */
+	public boolean hasPraisedPhotoId(PhotoId photoId) {
+		return praisedPhotoIds.contains(photoId.asInt());
+	}
+
 	/**
 	 * @methodtype set
 	 */
 	public void addPraisedPhotoId(PhotoId ratedPhotoId) {
-		praisedPhotoIds.add(ratedPhotoId);
+		praisedPhotoIds.add(ratedPhotoId.asInt());
+		lastPraisedPhotoId = ratedPhotoId.asInt();
 		removeSkippedPhotoId(ratedPhotoId);
 	}
 
 	/**
 	 * @methodtype get
+	 *
+	 * Returns the photo that was praised last, or null if no praised photo is visible. If the last praised photo is
+	 * no longer visible, falls back to the visible praised photo with the highest id, as the praise order of the
+	 * others is not kept.
 	 */
 	public Photo getLastPraisedPhoto() {
-		int indexOfLastPraisedPhoto = praisedPhotoIds.size() - 1;
-		Photo result = null;
-		while (indexOfLastPraisedPhoto >= 0 && result == null) {
-			PhotoId lastPraisedPhotoId = praisedPhotoIds.get(indexOfLastPraisedPhoto);
-			result = PhotoManager.getInstance().getPhoto(lastPraisedPhotoId);
-			if (!result.isVisible()) {
-				result = null;
-				indexOfLastPraisedPhoto--;
+		if (lastPraisedPhotoId == 0) {
+			return null;
+		}
+
+		Photo result = getVisiblePhoto(lastPraisedPhotoId);
+		if (result != null) {
+			return result;
+		}
+
+		int[] photoIds = praisedPhotoIds.toArray();
+		for (int i = photoIds.length - 1; i >= 0 && result == null; i--) {
+			if (photoIds[i] != lastPraisedPhotoId) {
+				result = getVisiblePhoto(photoIds[i]);
 			}
 		}
 		return result;
@@ -312,15 +433,24 @@ public abstract class Client implements Serializable, Persistent {
 
 	/**
 	 * @methodtype get
+	 * @methodproperty primitive
 	 */
-	public List<PhotoId> getSkippedPhotoIds() {
+	protected Photo getVisiblePhoto(int photoId) {
+		Photo result = PhotoManager.getInstance().getPhoto(PhotoId.getIdFromInt(photoId));
+		return (result != null && result.isVisible()) ? result : null;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public IntBitmap getSkippedPhotoIds() {
 		return skippedPhotoIds;
 	}
 
 	/**
 	 * @methodtype get
 	 */
-	public void setSkippedPhotoIds(List<PhotoId> skippedPhotoIds) {
+	public void setSkippedPhotoIds(IntBitmap skippedPhotoIds) {
 		this.skippedPhotoIds = skippedPhotoIds;
 	}
 
@@ -328,15 +458,13 @@ public abstract class Client implements Serializable, Persistent {
 	 * @methodtype set
 	 */
 	public void removeSkippedPhotoId(PhotoId skippedPhotoIdToRemove) {
-		skippedPhotoIds.remove(skippedPhotoIdToRemove);
+		skippedPhotoIds.remove(skippedPhotoIdToRemove.asInt());
 	}
 
 	/**
 	 * @methodtype set
 	 */
 	public void addSkippedPhotoId(PhotoId skippedPhotoId) {
-		if (!skippedPhotoIds.contains(skippedPhotoId)) {
-			skippedPhotoIds.add(skippedPhotoId);
-		}
+		skippedPhotoIds.add(skippedPhotoId.asInt());
 	}
 }
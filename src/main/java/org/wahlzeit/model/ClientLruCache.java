@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import org.wahlzeit.services.LogBuilder;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Bounded cache of the clients that have no live session, which evicts the least recently used ones. Evicted clients
+ * are returned to the caller, which has to save them if they have unsaved changes; they are loaded again from the
+ * Datastore when they are needed.
+ *
+ * The cache is only used if the system property {@link #SYSTEM_PROPERTY} is set to a positive number of clients;
+ * otherwise all users stay in memory.
+ *
+ * @review
+ */
+public class ClientLruCache {
+
+	/**
+	 *
+	 */
+	public static final String SYSTEM_PROPERTY = "org.wahlzeit.clientCacheSize";
+
+	private static final Logger log = Logger.getLogger(ClientLruCache.class.getName());
+
+	/**
+	 *
+	 */
+	protected final int maxSize;
+
+	/**
+	 * In access order, so the eldest entry is the least recently used one
+	 */
+	protected final LinkedHashMap<String, Client> clients = new LinkedHashMap<String, Client>(16, 0.75f, true);
+
+	/**
+	 * @methodtype factory
+	 *
+	 * Returns a cache with the configured size, or null if all users should stay in memory.
+	 */
+	public static ClientLruCache createIfConfigured() {
+		String value = System.getProperty(SYSTEM_PROPERTY);
+		if (value == null || value.trim().isEmpty()) {
+			return null;
+		}
+
+		try {
+			int maxSize = Integer.parseInt(value.trim());
+			return maxSize > 0 ? new ClientLruCache(maxSize) : null;
+		} catch (NumberFormatException ex) {
+			log.warning(LogBuilder.createSystemMessage().
+					addParameter("invalid client cache size", value).
+					addMessage("keeping all users in memory").toString());
+			return null;
+		}
+	}
+
+	/**
+	 * @methodtype constructor
+	 */
+	public ClientLruCache(int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("max size must be positive");
+		}
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public synchronized Client get(String id) {
+		return clients.get(id);
+	}
+
+	/**
+	 * @methodtype set
+	 *
+	 * Adds the client and returns the clients that had to be evicted for it.
+	 */
+	public synchronized List<Client> put(Client client) {
+		clients.put(client.getId(), client);
+
+		List<Client> result = new ArrayList<Client>();
+		Iterator<Map.Entry<String, Client>> i = clients.entrySet().iterator();
+		while (clients.size() > maxSize && i.hasNext()) {
+			Map.Entry<String, Client> eldest = i.next();
+			i.remove();
+			result.add(eldest.getValue());
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype set
+	 */
+	public synchronized Client remove(String id) {
+		return clients.remove(id);
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns a copy of the cached clients.
+	 */
+	public synchronized List<Client> values() {
+		return new ArrayList<Client>(clients.values());
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns a copy of the cached clients by id.
+	 */
+	public synchronized Map<String, Client> asMap() {
+		return new LinkedHashMap<String, Client>(clients);
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public synchronized int size() {
+		return clients.size();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+}
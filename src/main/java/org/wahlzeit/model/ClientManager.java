@@ -1,12 +1,20 @@
 package org.wahlzeit.model;
 
+import org.wahlzeit.services.EmailAddress;
 import org.wahlzeit.services.LogBuilder;
 import org.wahlzeit.services.ObjectManager;
+import org.wahlzeit.services.OfyService;
+import org.wahlzeit.services.Persistent;
+import org.wahlzeit.utils.TimerWheel;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 /**
@@ -18,20 +26,93 @@ public abstract class ClientManager extends ObjectManager {
 
 	private static final Logger log = Logger.getLogger(ClientManager.class.getName());
 
+	/**
+	 * Minutes after which an unused session is expired in memory; keep in sync with the session timeout in web.xml
+	 */
+	public static final String SESSION_TIMEOUT_PROPERTY = "org.wahlzeit.sessionTimeout";
+	public static final int DEFAULT_SESSION_TIMEOUT = 180;
+
+	/**
+	 * Resolution of the session expiry
+	 */
+	protected static final long SESSION_TICK_DURATION = 60 * 1000;
+
 	/**
 	 *
 	 */
-	protected static Long lastClientId = 0L;
+	protected static final IdAllocator clientIdAllocator = new IdAllocator(Globals.Counter.CLIENT);
 
 	/**
-	 * Maps IDs to user
+	 * Maps IDs to user; if there is an inactive client cache, only clients with a live session are kept here
 	 */
-	protected Map<String, Client> idClientMap = new HashMap<String, Client>();
+	protected Map<String, Client> idClientMap = new ConcurrentHashMap<String, Client>();
 
-	protected HashMap<String, Client> httpSessionIdToClientMap = new HashMap<String, Client>();
+	/**
+	 * Guards moving clients between idClientMap and the inactive client cache, so a client is always found in one of
+	 * them and only one copy of a loaded client is kept
+	 */
+	protected final Object residencyLock = new Object();
 
-	protected List<String> listOfUsedNicknames = new ArrayList<String>();
+	/**
+	 * Clients without a live session, loaded on demand; null if all clients stay in idClientMap
+	 */
+	protected ClientLruCache inactiveClientCache = ClientLruCache.createIfConfigured();
 
+	protected Map<String, Client> httpSessionIdToClientMap = new ConcurrentHashMap<String, Client>();
+
+	/**
+	 * Number of mapped sessions of each client id, so ending a session does not have to look at all other sessions;
+	 * guarded by itself
+	 */
+	protected final Map<String, Integer> liveSessionCounts = new HashMap<String, Integer>();
+
+	/**
+	 * Last access of each mapped session, to expire the mappings of abandoned sessions
+	 */
+	protected TimerWheel<String> sessionTimerWheel =
+			new TimerWheel<String>(getSessionTimeout() * 60 * 1000L, SESSION_TICK_DURATION);
+
+	/**
+	 * Secondary indexes from nickname and email address to the client id; they cover all clients, incl. the ones that
+	 * are not in memory
+	 */
+	protected ConcurrentMap<String, String> nicknameIndex = new ConcurrentHashMap<String, String>();
+
+	protected ConcurrentMap<String, String> emailAddressIndex = new ConcurrentHashMap<String, String>();
+
+
+	/**
+	 * @methodtype get
+	 */
+	public int getNoOfClients() {
+		return idClientMap.size() + (inactiveClientCache == null ? 0 : inactiveClientCache.size());
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public ClientLruCache getInactiveClientCache() {
+		return inactiveClientCache;
+	}
+
+	/**
+	 * @methodtype set
+	 *
+	 * Switches to the given cache for clients without a live session, or keeps all clients in memory if it is null.
+	 */
+	public void setInactiveClientCache(ClientLruCache newCache) {
+		synchronized (residencyLock) {
+			if (inactiveClientCache != null) {
+				idClientMap.putAll(inactiveClientCache.asMap());
+			}
+			inactiveClientCache = newCache;
+		}
+		if (newCache != null) {
+			for (Client client : new ArrayList<Client>(idClientMap.values())) {
+				makeInactive(client);
+			}
+		}
+	}
 
 	// add methods -----------------------------------------------------------------------------------------------------
 
@@ -42,7 +123,7 @@ public abstract class ClientManager extends ObjectManager {
 	public void addClient(Client client) throws IllegalArgumentException {
 		assertIsNonNullArgument(client);
 		assertIsUnknownClientAsIllegalArgument(client);
-		assertNicknameIsNotUsed(client.getNickName());
+		reserveNickname(client.getNickName(), client.getId());
 
 		doAddClient(client);
 	}
@@ -51,28 +132,81 @@ public abstract class ClientManager extends ObjectManager {
 	 * @methodtype assertion
 	 */
 	protected void assertIsUnknownClientAsIllegalArgument(Client client) {
-		if (hasClientById(client.getId())) {
+		if (getClientInMemory(client.getId()) != null) {
 			throw new IllegalArgumentException(client.getId() + "is already known");
 		}
 	}
 
 	/**
-	 * @methodtype assertion
+	 * @methodtype command
+	 *
+	 * Claims the nickname for the client in one atomic step, so two clients cannot take the same nickname
+	 * concurrently.
 	 */
-	protected void assertNicknameIsNotUsed(String nickName) {
-		if (listOfUsedNicknames.contains(nickName)) {
+	protected void reserveNickname(String nickName, String clientId) throws IllegalArgumentException {
+		assertIsNonNullArgument(nickName, "nickname");
+		String owner = nicknameIndex.putIfAbsent(nickName, clientId);
+		if (owner != null && !owner.equals(clientId)) {
 			throw new IllegalArgumentException("Nickname " + nickName + " is already used.");
 		}
 	}
 
+	/**
+	 * @methodtype command
+	 */
+	protected void addToIndexes(Client client) {
+		if (client.getNickName() != null) {
+			nicknameIndex.putIfAbsent(client.getNickName(), client.getId());
+		}
+		String emailAddress = getEmailAddressKey(client.getEmailAddress());
+		if (emailAddress != null) {
+			emailAddressIndex.putIfAbsent(emailAddress, client.getId());
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void removeFromIndexes(Client client) {
+		if (client.getNickName() != null) {
+			nicknameIndex.remove(client.getNickName(), client.getId());
+		}
+		String emailAddress = getEmailAddressKey(client.getEmailAddress());
+		if (emailAddress != null) {
+			emailAddressIndex.remove(emailAddress, client.getId());
+		}
+	}
+
+	/**
+	 * @methodtype conversion
+	 *
+	 * Email addresses loaded from the Datastore are not the shared instances, so the index uses their value.
+	 */
+	protected static String getEmailAddressKey(EmailAddress emailAddress) {
+		if (emailAddress == null || emailAddress.asString() == null || emailAddress.asString().isEmpty()) {
+			return null;
+		}
+		return emailAddress.asString();
+	}
+
 	/**
 	 * @methodtype set
 	 * @methodproperty primitive
 	 */
 	protected void doAddClient(Client client) {
-		idClientMap.put(client.getId(), client);
+		List<Client> evictedClients = null;
+		synchronized (residencyLock) {
+			if (inactiveClientCache == null) {
+				idClientMap.put(client.getId(), client);
+			} else {
+				evictedClients = inactiveClientCache.put(client);
+			}
+		}
+		if (evictedClients != null) {
+			saveEvictedClients(evictedClients);
+		}
 		writeObject(client);
-		listOfUsedNicknames.add(client.getNickName());
+		addToIndexes(client);
 		log.config(LogBuilder.createSystemMessage().addParameter("Added new user", client.getId()).toString());
 	}
 
@@ -104,7 +238,110 @@ public abstract class ClientManager extends ObjectManager {
 	 * @methodproperty primitive
 	 */
 	protected Client doGetClientById(String name) {
-		return idClientMap.get(name);
+		Client result = getClientInMemory(name);
+		if (result == null && inactiveClientCache != null) {
+			result = loadClient(name);
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the client if it is in memory, without loading it.
+	 */
+	protected Client getClientInMemory(String id) {
+		Client result = idClientMap.get(id);
+		if (result == null && inactiveClientCache != null) {
+			synchronized (residencyLock) {
+				result = doGetClientInMemory(id);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype get
+	 * @methodproperty primitive
+	 *
+	 * Must be called with the residency lock held.
+	 */
+	protected Client doGetClientInMemory(String id) {
+		Client result = idClientMap.get(id);
+		if (result == null && inactiveClientCache != null) {
+			result = inactiveClientCache.get(id);
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Loads a client that is not in memory from the Datastore and keeps it in the inactive client cache. If another
+	 * request loaded the client in the meantime, its copy is returned, so there is only one copy per id.
+	 */
+	protected Client loadClient(String id) {
+		Client loadedClient = readObject(Client.class, id);
+		if (loadedClient == null) {
+			return null;
+		}
+
+		List<Client> evictedClients;
+		synchronized (residencyLock) {
+			Client result = doGetClientInMemory(id);
+			if (result != null) {
+				return result;
+			}
+			loadedClient.resetWriteCount();
+			evictedClients = inactiveClientCache.put(loadedClient);
+		}
+
+		saveEvictedClients(evictedClients);
+		log.config(LogBuilder.createSystemMessage().
+				addParameter("loaded client on demand", id).toString());
+		return loadedClient;
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Keeps the client in memory as long as it has a live session.
+	 */
+	protected void makeResident(Client client) {
+		synchronized (residencyLock) {
+			if (inactiveClientCache != null) {
+				inactiveClientCache.remove(client.getId());
+			}
+			idClientMap.put(client.getId(), client);
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Moves a client whose last session ended to the inactive client cache, from which it may be evicted. A client
+	 * that got a new session in the meantime stays resident.
+	 */
+	protected void makeInactive(Client client) {
+		List<Client> evictedClients = null;
+		synchronized (residencyLock) {
+			if (inactiveClientCache != null && !hasLiveSession(client) &&
+					idClientMap.remove(client.getId()) != null) {
+				evictedClients = inactiveClientCache.put(client);
+			}
+		}
+		if (evictedClients != null) {
+			saveEvictedClients(evictedClients);
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void saveEvictedClients(List<Client> evictedClients) {
+		for (Client client : evictedClients) {
+			writeObject(client);
+		}
 	}
 
 	/**
@@ -124,14 +361,89 @@ public abstract class ClientManager extends ObjectManager {
 	 * @methodtype set
 	 */
 	public void doAddHttpSessionIdToClientMapping(String httpSessionId, Client client) {
-		httpSessionIdToClientMap.put(httpSessionId, client);
+		Client previousClient = httpSessionIdToClientMap.put(httpSessionId, client);
+		sessionTimerWheel.touch(httpSessionId, System.currentTimeMillis());
 		client.setHttpSessionId(httpSessionId);
+		if (previousClient != client) {
+			addLiveSession(client);
+		}
+		makeResident(client);
+		if (previousClient != null && previousClient != client && removeLiveSession(previousClient)) {
+			makeInactive(previousClient);
+		}
 		log.config(LogBuilder.createSystemMessage().
 				addParameter("client name", client.getNickName()).
 				addParameter("httpSessionId", httpSessionId).toString());
 	}
 
 
+	/**
+	 * @methodtype command
+	 *
+	 * Records a request of the session, so its mapping does not expire; O(1).
+	 */
+	public void touchHttpSession(String httpSessionId) {
+		assertIsNonNullArgument(httpSessionId);
+		if (httpSessionIdToClientMap.containsKey(httpSessionId)) {
+			sessionTimerWheel.touch(httpSessionId, System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Removes the mappings of sessions that have not been used for the session timeout and deletes their transient
+	 * guests. Returns the number of expired sessions; does nothing if no tick has passed since the last call.
+	 */
+	public int expireHttpSessions() {
+		return expireHttpSessions(System.currentTimeMillis());
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected int expireHttpSessions(long now) {
+		List<String> expiredIds = sessionTimerWheel.advance(now);
+		for (String httpSessionId : expiredIds) {
+			Client client = httpSessionIdToClientMap.get(httpSessionId);
+			if (client == null) {
+				continue;
+			}
+
+			removeHttpSessionIdToClientMapping(httpSessionId);
+			if (isTransient(client) && !hasLiveSession(client)) {
+				doDeleteClient(client);
+			}
+		}
+
+		if (!expiredIds.isEmpty()) {
+			log.config(LogBuilder.createSystemMessage().
+					addAction("expire sessions").
+					addParameter("number of expired sessions", expiredIds.size()).toString());
+		}
+		return expiredIds.size();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	protected static int getSessionTimeout() {
+		String value = System.getProperty(SESSION_TIMEOUT_PROPERTY);
+		if (value == null || value.trim().isEmpty()) {
+			return DEFAULT_SESSION_TIMEOUT;
+		}
+
+		try {
+			int result = Integer.parseInt(value.trim());
+			return result > 0 ? result : DEFAULT_SESSION_TIMEOUT;
+		} catch (NumberFormatException ex) {
+			log.warning(LogBuilder.createSystemMessage().
+					addParameter("invalid session timeout", value).toString());
+			return DEFAULT_SESSION_TIMEOUT;
+		}
+	}
+
+
 	// has client method -----------------------------------------------------------------------------------------------
 
 	/**
@@ -141,6 +453,36 @@ public abstract class ClientManager extends ObjectManager {
 		updateObject(client);
 	}
 
+	/**
+	 * @methodtype command
+	 *
+	 * Saves the client after it did something worth keeping; a transient guest is saved for the first time.
+	 */
+	public void materializeClient(Client client) {
+		assertIsNonNullArgument(client);
+		if (client instanceof Guest) {
+			((Guest) client).materialize();
+		}
+		saveClient(client);
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	protected boolean isTransient(Object object) {
+		return object instanceof Guest && !((Guest) object).isMaterialized();
+	}
+
+	/**
+	 * Transient guests are not written; they keep their changes until they are materialized.
+	 */
+	@Override
+	protected void writeObject(Persistent object) {
+		if (!isTransient(object)) {
+			super.writeObject(object);
+		}
+	}
+
 
 	// save methods ----------------------------------------------------------------------------------------------------
 
@@ -158,6 +500,9 @@ public abstract class ClientManager extends ObjectManager {
 	 */
 	public void saveClients() {
 		updateObjects(idClientMap.values());
+		if (inactiveClientCache != null) {
+			updateObjects(inactiveClientCache.values());
+		}
 	}
 
 
@@ -166,22 +511,22 @@ public abstract class ClientManager extends ObjectManager {
 	/**
 	 * @methodtype get
 	 */
-	public Long getLastClientId() {
-		return lastClientId;
+	public IdAllocator getClientIdAllocator() {
+		return clientIdAllocator;
 	}
 
 	/**
-	 * @methodtype set
+	 * @methodtype get
 	 */
-	public synchronized void setLastClientId(Long newId) {
-		lastClientId = newId;
+	public Long getLastClientId() {
+		return clientIdAllocator.getLastId();
 	}
 
 	/**
 	 * @methodtype get
 	 */
-	public synchronized Long getNextClientId() {
-		return ++lastClientId;
+	public Long getNextClientId() {
+		return clientIdAllocator.getNextId();
 	}
 
 
@@ -192,7 +537,12 @@ public abstract class ClientManager extends ObjectManager {
 	 */
 	public void removeClient(Client client) {
 		saveClient(client);
-		idClientMap.remove(client.getId());
+		synchronized (residencyLock) {
+			idClientMap.remove(client.getId());
+			if (inactiveClientCache != null) {
+				inactiveClientCache.remove(client.getId());
+			}
+		}
 	}
 
 	/**
@@ -201,7 +551,7 @@ public abstract class ClientManager extends ObjectManager {
 	 */
 	public void deleteClient(Client client) {
 		assertIsNonNullArgument(client);
-		assert idClientMap.containsValue(client);
+		assert getClientInMemory(client.getId()) == client;
 
 		removeHttpSessionIdToClientMapping(client.getHttpSessionId());
 		doDeleteClient(client);
@@ -211,12 +561,59 @@ public abstract class ClientManager extends ObjectManager {
 
 	/**
 	 * @methodtype set
+	 *
+	 * Ends the session of the client; a client without live sessions may then be evicted from memory.
 	 */
-	private void removeHttpSessionIdToClientMapping(String httpSessionId) {
+	public void removeHttpSessionIdToClientMapping(String httpSessionId) {
+		if (httpSessionId == null) {
+			return;
+		}
+		sessionTimerWheel.remove(httpSessionId);
 		Client client = httpSessionIdToClientMap.get(httpSessionId);
+		if (client == null) {
+			return;
+		}
 		client.removeHttpSessionId();
 
-		httpSessionIdToClientMap.remove(httpSessionId);
+		if (httpSessionIdToClientMap.remove(httpSessionId) != null && removeLiveSession(client)) {
+			makeInactive(client);
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void addLiveSession(Client client) {
+		synchronized (liveSessionCounts) {
+			Integer count = liveSessionCounts.get(client.getId());
+			liveSessionCounts.put(client.getId(), (count == null) ? 1 : count + 1);
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Counts down the sessions of the client and returns true if it has no live session left.
+	 */
+	protected boolean removeLiveSession(Client client) {
+		synchronized (liveSessionCounts) {
+			Integer count = liveSessionCounts.get(client.getId());
+			if (count == null || count <= 1) {
+				liveSessionCounts.remove(client.getId());
+				return true;
+			}
+			liveSessionCounts.put(client.getId(), count - 1);
+			return false;
+		}
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	protected boolean hasLiveSession(Client client) {
+		synchronized (liveSessionCounts) {
+			return liveSessionCounts.containsKey(client.getId());
+		}
 	}
 
 	/**
@@ -224,8 +621,51 @@ public abstract class ClientManager extends ObjectManager {
 	 * @methodproperty primtive
 	 */
 	protected void doDeleteClient(Client client) {
-		idClientMap.remove(client.getId());
-		deleteObject(client);
+		forgetClient(client);
+		if (!isTransient(client)) {
+			deleteObject(client);
+			ModelSnapshotManager.getInstance().recordDeletions(Collections.singletonList(client));
+		}
+	}
+
+	/**
+	 * @methodtype set
+	 *
+	 * Deletes the clients and their session mappings, with one Datastore call for all saved clients.
+	 */
+	public void deleteClients(Collection<? extends Client> clients) {
+		List<Client> savedClients = new ArrayList<Client>();
+		for (Client client : clients) {
+			removeHttpSessionIdToClientMapping(client.getHttpSessionId());
+			forgetClient(client);
+			if (!isTransient(client)) {
+				savedClients.add(client);
+			}
+		}
+
+		if (!savedClients.isEmpty()) {
+			OfyService.ofy().delete().entities(savedClients).now();
+			ModelSnapshotManager.getInstance().recordDeletions(savedClients);
+		}
+	}
+
+	/**
+	 * @methodtype set
+	 * @methodproperty primitive
+	 *
+	 * Removes the client from memory, but not from the Datastore.
+	 */
+	protected void forgetClient(Client client) {
+		synchronized (residencyLock) {
+			idClientMap.remove(client.getId());
+			if (inactiveClientCache != null) {
+				inactiveClientCache.remove(client.getId());
+			}
+		}
+		synchronized (liveSessionCounts) {
+			liveSessionCounts.remove(client.getId());
+		}
+		removeFromIndexes(client);
 	}
 
 	/**
@@ -242,10 +682,34 @@ public abstract class ClientManager extends ObjectManager {
 	/**
 	 * @methodtype set
 	 */
-	public void changeNickname(String oldNickName, String newNickName) throws IllegalArgumentException {
-		assertNicknameIsNotUsed(newNickName);
+	public void changeNickname(Client client, String newNickName) throws IllegalArgumentException {
+		reserveNickname(newNickName, client.getId());
 
-		listOfUsedNicknames.remove(oldNickName);
-		listOfUsedNicknames.add(newNickName);
+		String oldNickName = client.getNickName();
+		if (oldNickName != null && !oldNickName.equals(newNickName)) {
+			nicknameIndex.remove(oldNickName, client.getId());
+		}
+	}
+
+	// index methods ---------------------------------------------------------------------------------------------------
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the id of the client with the nickname, or null if there is none; does not read from the Datastore.
+	 */
+	public String getClientIdByNickname(String nickName) {
+		assertIsNonNullArgument(nickName, "nickname");
+		return nicknameIndex.get(nickName);
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the id of the client with the email address, or null if there is none; does not read from the Datastore.
+	 */
+	public String getClientIdByEmailAddress(EmailAddress emailAddress) {
+		String key = getEmailAddressKey(emailAddress);
+		return key == null ? null : emailAddressIndex.get(key);
 	}
 }
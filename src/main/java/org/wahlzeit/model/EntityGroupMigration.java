@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import com.googlecode.objectify.Key;
+import org.wahlzeit.services.LogBuilder;
+import org.wahlzeit.services.ObjectManager;
+import org.wahlzeit.services.OfyService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Moves all entities that were saved under the former application root key into the entity groups defined by
+ * {@link EntityGroups}. Since the parent is part of the key, every entity is saved with its new key and the entity
+ * with the old key is deleted afterwards. The migration works in batches and can be stopped and restarted at any
+ * time: migrated entities no longer match the ancestor query, so every run simply continues with the remaining ones.
+ *
+ * In-memory copies of this instance are moved as well; other running instances should be restarted afterwards.
+ *
+ * @review
+ */
+public class EntityGroupMigration extends ObjectManager {
+
+	private static final Logger log = Logger.getLogger(EntityGroupMigration.class.getName());
+
+	/**
+	 *
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 100;
+
+	/**
+	 *
+	 */
+	protected final int batchSize;
+
+	/**
+	 *
+	 */
+	public EntityGroupMigration() {
+		this(DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * @methodtype constructor
+	 */
+	public EntityGroupMigration(int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("batch size must be positive");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Migrates photos, tags and clients batch by batch until nothing is left or the deadline (in milliseconds since
+	 * the epoch) has passed. Returns the number of migrated entities.
+	 */
+	public int migrate(long deadline) {
+		int result = 0;
+		result += migrateAll(Photo.class, deadline);
+		result += migrateAll(Tag.class, deadline);
+		result += migrateAll(Client.class, deadline);
+
+		log.info(LogBuilder.createSystemMessage().
+				addAction("migrate entity groups").
+				addParameter("number of migrated entities", result).
+				addParameter("completed", !hasEntitiesToMigrate()).toString());
+		return result;
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	public boolean hasEntitiesToMigrate() {
+		return hasEntitiesToMigrate(Photo.class) || hasEntitiesToMigrate(Tag.class) ||
+				hasEntitiesToMigrate(Client.class);
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	protected <E> boolean hasEntitiesToMigrate(Class<E> type) {
+		return OfyService.ofy().load().type(type).ancestor(applicationRootKey).keys().first().now() != null;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected <E> int migrateAll(Class<E> type, long deadline) {
+		int result = 0;
+		int migrated;
+		do {
+			migrated = migrateBatch(type);
+			result += migrated;
+		} while (migrated == batchSize && System.currentTimeMillis() < deadline);
+
+		return result;
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Migrates the next batch of entities of the given type. Returns the number of migrated entities.
+	 */
+	protected <E> int migrateBatch(Class<E> type) {
+		List<E> batch = OfyService.ofy().load().type(type).ancestor(applicationRootKey).limit(batchSize).list();
+		if (batch.isEmpty()) {
+			return 0;
+		}
+
+		List<Key<E>> oldKeys = new ArrayList<Key<E>>(batch.size());
+		for (E entity : batch) {
+			oldKeys.add(Key.create(entity));
+			moveToNewEntityGroup(entity);
+		}
+
+		// save first, so an interrupted batch is simply migrated again
+		OfyService.ofy().save().entities(batch).now();
+		OfyService.ofy().delete().keys(oldKeys).now();
+
+		log.config(LogBuilder.createSystemMessage().
+				addParameter("Datastore: migrated entities of type", type.getName()).
+				addParameter("number", batch.size()).toString());
+		return batch.size();
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void moveToNewEntityGroup(Object entity) {
+		if (entity instanceof Photo) {
+			Photo photo = (Photo) entity;
+			photo.moveToOwnEntityGroup();
+			Photo cachedPhoto = PhotoManager.getInstance().doGetPhotoFromId(photo.getId());
+			if (cachedPhoto != null && !cachedPhoto.isInOwnEntityGroup()) {
+				cachedPhoto.moveToOwnEntityGroup();
+			}
+		} else if (entity instanceof Tag) {
+			Tag tag = (Tag) entity;
+			tag.moveToPhotoEntityGroup();
+			// the photo has to read its Tag entities again, now including the migrated one
+			PhotoId photoId = PhotoId.getKnownIdFromString(tag.getPhotoId());
+			Photo cachedPhoto = PhotoManager.getInstance().doGetPhotoFromId(photoId);
+			if (cachedPhoto != null) {
+				cachedPhoto.setPersistedTags(null);
+			}
+		} else if (entity instanceof Client) {
+			Client client = (Client) entity;
+			client.moveToOwnEntityGroup();
+			Client cachedClient = UserManager.getInstance().doGetClientById(client.getId());
+			if (cachedClient != null && !cachedClient.isInOwnEntityGroup()) {
+				cachedClient.moveToOwnEntityGroup();
+			}
+		} else {
+			throw new IllegalArgumentException("no entity group defined for " + entity);
+		}
+	}
+
+}
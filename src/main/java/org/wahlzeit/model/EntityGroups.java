@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+
+/**
+ * Keying scheme for entities in the Datastore. Each entity group allows only about one transactional write per
+ * second, so instead of putting everything under one application root, every photo forms its own entity group
+ * together with its tags. Clients, photo cases and globals are root entities of their own.
+ */
+public class EntityGroups {
+
+	/**
+	 * Kind of Photo entities, also used for all subclasses of Photo
+	 */
+	public static final String PHOTO_KIND = "Photo";
+
+	/**
+	 *
+	 */
+	private EntityGroups() {
+		// do nothing
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the key of the photo with the given id, which is also the root of its entity group.
+	 */
+	public static Key getPhotoKey(PhotoId photoId) {
+		assertIsNonNullArgument(photoId);
+		return getPhotoKey(photoId.asInt());
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public static Key getPhotoKey(String photoIdAsString) {
+		assertIsNonNullArgument(photoIdAsString);
+		return getPhotoKey(PhotoId.getFromString(photoIdAsString));
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public static Key getPhotoKey(int photoIdAsInt) {
+		assertIsValidPhotoId(photoIdAsInt);
+		return KeyFactory.createKey(PHOTO_KIND, photoIdAsInt);
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Tags are stored in the entity group of the photo they belong to.
+	 */
+	public static Key getTagParent(String photoIdAsString) {
+		return getPhotoKey(photoIdAsString);
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Clients are root entities, so there is no parent key.
+	 */
+	public static Key getClientParent() {
+		return null;
+	}
+
+	/**
+	 * @methodtype assertion
+	 */
+	protected static void assertIsNonNullArgument(Object arg) {
+		if (arg == null) {
+			throw new IllegalArgumentException("photo id should not be null");
+		}
+	}
+
+	/**
+	 * @methodtype assertion
+	 */
+	protected static void assertIsValidPhotoId(int photoIdAsInt) {
+		if (photoIdAsInt <= 0) {
+			throw new IllegalArgumentException("invalid photo id: " + photoIdAsInt);
+		}
+	}
+
+}
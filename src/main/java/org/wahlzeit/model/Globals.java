@@ -7,12 +7,65 @@ import org.wahlzeit.services.DataObject;
 /**
  * Class that combines all global wahlzeit variables
  * that need to be stored to the datastore when the system is restarted.
+ * The last ids are the highest ids leased by any instance, see {@link IdAllocator}.
  * 
  * @review
  */
 @Entity
 public class Globals extends DataObject {
 
+	/**
+	 * The id counters kept in the globals
+	 */
+	public enum Counter {
+		PHOTO {
+			public long getLastId(Globals globals) {
+				return globals.getLastPhotoId();
+			}
+
+			public void setLastId(Globals globals, long lastId) {
+				globals.setLastPhotoId((int) lastId);
+			}
+		},
+		CLIENT {
+			public long getLastId(Globals globals) {
+				return globals.getLastUserId() == null ? 0 : globals.getLastUserId();
+			}
+
+			public void setLastId(Globals globals, long lastId) {
+				globals.setLastUserId(lastId);
+			}
+		},
+		CASE {
+			public long getLastId(Globals globals) {
+				return globals.getLastCaseId();
+			}
+
+			public void setLastId(Globals globals, long lastId) {
+				globals.setLastCaseId((int) lastId);
+			}
+		},
+		SESSION {
+			public long getLastId(Globals globals) {
+				return globals.getLastSessionId();
+			}
+
+			public void setLastId(Globals globals, long lastId) {
+				globals.setLastSessionId((int) lastId);
+			}
+		};
+
+		/**
+		 * @methodtype get
+		 */
+		public abstract long getLastId(Globals globals);
+
+		/**
+		 * @methodtype set
+		 */
+		public abstract void setLastId(Globals globals, long lastId);
+	}
+
 	public static final String ID = "id";
 	public static final Long DEAULT_ID = 1L;
 
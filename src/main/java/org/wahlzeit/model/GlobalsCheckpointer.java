@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import org.wahlzeit.servlets.AbstractServlet;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides when the globals are saved. Ids are persisted when they are leased (see {@link IdAllocator}), so a crash
+ * never hands out an id twice and saving the globals is only a checkpoint. Instead of saving them with every upload,
+ * a checkpoint is due after a number of changes or once the last one is older than the checkpoint interval. As the
+ * counters are only known to the instance that made the changes, it writes the checkpoint itself, when a request finds
+ * it due or when cron starts the CheckpointGlobalsAgent on it.
+ *
+ * @review
+ */
+public class GlobalsCheckpointer {
+
+	/**
+	 *
+	 */
+	public static final int DEFAULT_CHANGES_PER_CHECKPOINT = 50;
+
+	/**
+	 *
+	 */
+	public static final long DEFAULT_CHECKPOINT_INTERVAL = 10 * 60 * 1000;
+
+	/**
+	 *
+	 */
+	protected static final GlobalsCheckpointer instance = new GlobalsCheckpointer();
+
+	/**
+	 *
+	 */
+	protected int changesPerCheckpoint = DEFAULT_CHANGES_PER_CHECKPOINT;
+
+	/**
+	 *
+	 */
+	protected long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+
+	/**
+	 * Number of changes, e.g. added photos, since the last checkpoint
+	 */
+	protected final AtomicInteger changesSinceCheckpoint = new AtomicInteger(0);
+
+	/**
+	 *
+	 */
+	protected volatile long lastCheckpointTime = System.currentTimeMillis();
+
+	/**
+	 *
+	 */
+	protected volatile long lastCheckpointDuration = 0;
+
+	/**
+	 * Set while a checkpoint is being written, so concurrent requests do not write it again
+	 */
+	protected final AtomicBoolean isCheckpointPending = new AtomicBoolean(false);
+
+	/**
+	 * @methodtype get
+	 */
+	public static GlobalsCheckpointer getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void recordChange() {
+		changesSinceCheckpoint.incrementAndGet();
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	public boolean isCheckpointDue() {
+		return changesSinceCheckpoint.get() >= changesPerCheckpoint ||
+				(changesSinceCheckpoint.get() > 0 && getMillisSinceCheckpoint() >= checkpointInterval);
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Writes a checkpoint if one is due and no other request is writing it already. Returns true if it was written.
+	 */
+	public boolean checkpointIfDue() {
+		if (!isCheckpointDue() || !isCheckpointPending.compareAndSet(false, true)) {
+			return false;
+		}
+		doCheckpoint();
+		return true;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void checkpoint() {
+		isCheckpointPending.set(true);
+		doCheckpoint();
+	}
+
+	/**
+	 * @methodtype command
+	 * @methodproperty primitive
+	 */
+	protected void doCheckpoint() {
+		long startTime = System.currentTimeMillis();
+		int changes = changesSinceCheckpoint.get();
+		try {
+			GlobalsManager.getInstance().saveGlobals();
+			changesSinceCheckpoint.addAndGet(-changes);
+			lastCheckpointTime = System.currentTimeMillis();
+			lastCheckpointDuration = lastCheckpointTime - startTime;
+		} finally {
+			isCheckpointPending.set(false);
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getChangesSinceCheckpoint() {
+		return changesSinceCheckpoint.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getMillisSinceCheckpoint() {
+		return System.currentTimeMillis() - lastCheckpointTime;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getLastCheckpointDuration() {
+		return lastCheckpointDuration;
+	}
+
+	/**
+	 * @methodtype set
+	 */
+	public void setChangesPerCheckpoint(int newChangesPerCheckpoint) {
+		if (newChangesPerCheckpoint <= 0) {
+			throw new IllegalArgumentException("changes per checkpoint must be positive");
+		}
+		changesPerCheckpoint = newChangesPerCheckpoint;
+	}
+
+	/**
+	 * @methodtype set
+	 */
+	public void setCheckpointInterval(long newCheckpointInterval) {
+		checkpointInterval = newCheckpointInterval;
+	}
+
+	/**
+	 * @methodtype conversion
+	 *
+	 * Describes how far the saved globals lag behind and how many leased ids are left for each counter.
+	 */
+	public String asString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("changes since checkpoint: ").append(getChangesSinceCheckpoint());
+		builder.append(", seconds since checkpoint: ").append(getMillisSinceCheckpoint() / 1000);
+		builder.append(", last checkpoint took ms: ").append(getLastCheckpointDuration());
+		appendRemainingIds(builder, PhotoId.getIdAllocator());
+		appendRemainingIds(builder, UserManager.getInstance().getClientIdAllocator());
+		appendRemainingIds(builder, Case.getIdAllocator());
+		appendRemainingIds(builder, AbstractServlet.getSessionIdAllocator());
+		return builder.toString();
+	}
+
+	/**
+	 * @methodtype helper
+	 */
+	protected void appendRemainingIds(StringBuilder builder, IdAllocator allocator) {
+		builder.append(", leased ").append(allocator.getCounter().name().toLowerCase()).append(" ids left: ");
+		builder.append(allocator.getRemainingIds());
+	}
+
+}
@@ -27,6 +27,7 @@ public class GlobalsManager extends ObjectManager {
 
 	/**
 	 * @methodtype command Loads all global variables and stores them in their corresponding classes.
+	 * Ids are not continued from here but leased by the {@link IdAllocator}s on demand.
 	 */
 	public void loadGlobals() {
 		initGlobals();
@@ -38,10 +39,60 @@ public class GlobalsManager extends ObjectManager {
 		});
 		log.info(globals.asString());
 
-		UserManager.getInstance().setLastClientId(globals.getLastUserId());
+		// all photo ids up to the last leased one may belong to existing photos
 		PhotoId.setCurrentIdFromInt(globals.getLastPhotoId());
-		Case.setLastCaseId(new CaseId(globals.getLastCaseId()));
-		AbstractServlet.setLastSessionId(globals.getLastSessionId());
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Reserves blockSize ids of the counter for the calling instance and returns the first one. The block starts at
+	 * minFirstId at the earliest. Runs in its own transaction, so concurrent instances never get overlapping blocks.
+	 */
+	public long leaseIds(final Globals.Counter counter, final int blockSize, final long minFirstId) {
+		return ObjectifyService.run(new Work<Long>() {
+			@Override
+			public Long run() {
+				return ofy().transact(new Work<Long>() {
+					@Override
+					public Long run() {
+						Globals globals = loadOrCreateGlobals();
+						long firstId = Math.max(counter.getLastId(globals) + 1, minFirstId);
+						counter.setLastId(globals, firstId + blockSize - 1);
+						ofy().save().entity(globals).now();
+						globals.resetWriteCount();
+						return firstId;
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Reads the last id of the counter that has been leased by any instance.
+	 */
+	public long getLastId(final Globals.Counter counter) {
+		return ObjectifyService.run(new Work<Long>() {
+			@Override
+			public Long run() {
+				Globals globals = ofy().load().type(Globals.class).id(Globals.DEAULT_ID).now();
+				return globals == null ? 0L : counter.getLastId(globals);
+			}
+		});
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	protected Globals loadOrCreateGlobals() {
+		Globals globals = ofy().load().type(Globals.class).id(Globals.DEAULT_ID).now();
+		if (globals == null) {
+			globals = new Globals();
+			globals.setLastUserId(0L);
+		}
+		return globals;
 	}
 
 	/**
@@ -92,21 +143,37 @@ public class GlobalsManager extends ObjectManager {
 
 	/**
 	 * @methodtype command Saves all global variables.
+	 * The ids are already saved when they are leased, so this only makes sure that the stored counters are not behind
+	 * the ids handed out by this instance. The counters are never decreased, as other instances may have leased more.
 	 */
 	public synchronized void saveGlobals() {
-		final Globals globals = new Globals();
-		globals.setLastUserId(UserManager.getInstance().getLastClientId());
-		globals.setLastPhotoId(PhotoId.getCurrentIdAsInt());
-		globals.setLastCaseId(Case.getLastCaseId().asInt());
-		globals.setLastSessionId(AbstractServlet.getLastSessionId());
-		log.info(globals.asString());
+		final IdAllocator[] allocators = new IdAllocator[]{
+				PhotoId.getIdAllocator(),
+				UserManager.getInstance().getClientIdAllocator(),
+				Case.getIdAllocator(),
+				AbstractServlet.getSessionIdAllocator()
+		};
 
-		ObjectifyService.run(new Work<Void>() {
+		Globals globals = ObjectifyService.run(new Work<Globals>() {
 			@Override
-			public Void run() {
-				writeObject(globals);
-				return null;
+			public Globals run() {
+				return ofy().transact(new Work<Globals>() {
+					@Override
+					public Globals run() {
+						Globals globals = loadOrCreateGlobals();
+						globals.resetWriteCount();
+						for (IdAllocator allocator : allocators) {
+							Globals.Counter counter = allocator.getCounter();
+							if (counter.getLastId(globals) < allocator.getLastId()) {
+								counter.setLastId(globals, allocator.getLastId());
+							}
+						}
+						writeObject(globals);
+						return globals;
+					}
+				});
 			}
 		});
+		log.info(globals.asString());
 	}
 }
@@ -20,11 +20,14 @@
 
 package org.wahlzeit.model;
 
+import com.googlecode.objectify.annotation.Ignore;
+import com.googlecode.objectify.annotation.OnLoad;
 import com.googlecode.objectify.annotation.Subclass;
 import org.wahlzeit.services.EmailAddress;
 
 /**
- * A Guest is a client that is not logged in.
+ * A Guest is a client that is not logged in. Most guests only look at a few photos, so a guest stays in memory and is
+ * not saved until it does something worth keeping, e.g. praising or flagging a photo or setting options.
  */
 @Subclass(index = true)
 public class Guest extends Client {
@@ -34,6 +37,12 @@ public class Guest extends Client {
 	 */
 	public static final String GUEST_PREFIX = "guest#";
 
+	/**
+	 * Whether the guest may be saved; guests loaded from the Datastore have been saved before
+	 */
+	@Ignore
+	protected boolean isMaterialized = false;
+
 	/**
 	 *
 	 */
@@ -50,4 +59,31 @@ public class Guest extends Client {
 		String userId = GUEST_PREFIX + UserManager.getInstance().getNextClientId();
 		initialize(userId, userId, EmailAddress.EMPTY, AccessRights.GUEST, previousClient);
 	}
+
+	/**
+	 * @methodtype set
+	 */
+	@OnLoad
+	protected void setMaterializedOnLoad() {
+		isMaterialized = true;
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	public boolean isMaterialized() {
+		return isMaterialized;
+	}
+
+	/**
+	 * @methodtype set
+	 *
+	 * Allows the guest to be saved from now on.
+	 */
+	public void materialize() {
+		if (!isMaterialized) {
+			isMaterialized = true;
+			incWriteCount();
+		}
+	}
 }
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import org.wahlzeit.services.LogBuilder;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+/**
+ * Hands out unique ids for one of the counters in {@link Globals}. Several instances of the application may run at
+ * the same time, so ids are not counted locally: an allocator leases a block of ids from the Globals entity in a
+ * transaction (see {@link GlobalsManager#leaseIds(Globals.Counter, int, long)}) and then hands them out without any
+ * lock until the block is used up. Ids of a block that are not handed out before the instance stops are lost, which
+ * only leaves a gap.
+ *
+ * @review
+ */
+public class IdAllocator {
+
+	private static final Logger log = Logger.getLogger(IdAllocator.class.getName());
+
+	/**
+	 *
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 100;
+
+	/**
+	 *
+	 */
+	protected final Globals.Counter counter;
+
+	/**
+	 *
+	 */
+	protected final int blockSize;
+
+	/**
+	 * Ids that may still be handed out; empty until the first id is requested
+	 */
+	protected final AtomicReference<IdBlock> currentBlock = new AtomicReference<IdBlock>(IdBlock.EMPTY);
+
+	/**
+	 * Highest id handed out by this allocator, 0 if none
+	 */
+	protected final AtomicLong lastId = new AtomicLong(0);
+
+	/**
+	 *
+	 */
+	public IdAllocator(Globals.Counter counter) {
+		this(counter, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * @methodtype constructor
+	 */
+	public IdAllocator(Globals.Counter counter, int blockSize) {
+		if (counter == null) {
+			throw new IllegalArgumentException("counter should not be null");
+		}
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("block size must be positive");
+		}
+		this.counter = counter;
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the next unique id, 0 is never returned.
+	 */
+	public long getNextId() {
+		while (true) {
+			IdBlock block = currentBlock.get();
+			long result = block.nextId();
+			if (result != IdBlock.NO_ID) {
+				updateLastId(result);
+				return result;
+			}
+			leaseNextBlock(block);
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getLastId() {
+		return lastId.get();
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns how many ids of the current block are left before the next one has to be leased.
+	 */
+	public long getRemainingIds() {
+		return currentBlock.get().getRemainingIds();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public Globals.Counter getCounter() {
+		return counter;
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Only the thread that finds the block used up first leases a new one, all others wait for it.
+	 */
+	protected synchronized void leaseNextBlock(IdBlock usedUpBlock) {
+		if (currentBlock.get() != usedUpBlock) {
+			return;
+		}
+
+		// never go back behind ids this instance handed out already, even if the Globals entity was reset
+		long minFirstId = Math.max(usedUpBlock.getLastIdOfBlock(), lastId.get()) + 1;
+		long firstId = GlobalsManager.getInstance().leaseIds(counter, blockSize, minFirstId);
+		currentBlock.set(new IdBlock(firstId, firstId + blockSize - 1));
+
+		log.config(LogBuilder.createSystemMessage().
+				addAction("lease ids").
+				addParameter("counter", counter).
+				addParameter("first id", firstId).
+				addParameter("block size", blockSize).toString());
+	}
+
+	/**
+	 * @methodtype set
+	 */
+	protected void updateLastId(long id) {
+		long last = lastId.get();
+		while (id > last && !lastId.compareAndSet(last, id)) {
+			last = lastId.get();
+		}
+	}
+
+	/**
+	 * A leased block of ids, handed out by incrementing an atomic counter.
+	 */
+	protected static class IdBlock {
+
+		/**
+		 *
+		 */
+		protected static final long NO_ID = 0;
+
+		/**
+		 *
+		 */
+		protected static final IdBlock EMPTY = new IdBlock(1, 0);
+
+		/**
+		 *
+		 */
+		protected final AtomicLong nextId;
+
+		/**
+		 *
+		 */
+		protected final long lastIdOfBlock;
+
+		/**
+		 *
+		 */
+		protected IdBlock(long firstId, long lastIdOfBlock) {
+			this.nextId = new AtomicLong(firstId);
+			this.lastIdOfBlock = lastIdOfBlock;
+		}
+
+		/**
+		 * @methodtype get
+		 */
+		protected long nextId() {
+			if (nextId.get() > lastIdOfBlock) {
+				return NO_ID;
+			}
+			long result = nextId.getAndIncrement();
+			return result <= lastIdOfBlock ? result : NO_ID;
+		}
+
+		/**
+		 * @methodtype get
+		 */
+		protected long getRemainingIds() {
+			return Math.max(0, lastIdOfBlock - nextId.get() + 1);
+		}
+
+		/**
+		 * @methodtype get
+		 */
+		protected long getLastIdOfBlock() {
+			return lastIdOfBlock;
+		}
+	}
+
+}
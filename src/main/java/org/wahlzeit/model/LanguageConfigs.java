@@ -22,6 +22,7 @@ package org.wahlzeit.model;
 
 import org.wahlzeit.services.Language;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -51,4 +52,18 @@ public class LanguageConfigs {
 		configurations.put(language, config);
 	}
 
+	/**
+	 *
+	 */
+	public static Collection<ModelConfig> getAll() {
+		return configurations.values();
+	}
+
+	/**
+	 *
+	 */
+	public static int size() {
+		return configurations.size();
+	}
+
 }
@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import com.google.appengine.api.datastore.EntityTranslator;
+import org.wahlzeit.services.LogBuilder;
+import org.wahlzeit.services.OfyService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Snapshot of all users and photos, incl. the tag index of the photos, to restart without querying all of them. Each
+ * object is kept in the form in which Objectify saves it, so the snapshot stays readable when fields are added, and
+ * the whole snapshot is compressed into one byte array with a version header.
+ *
+ * A snapshot contains all changes made before {@link #getTakenOn()}. Changes made later are replayed with a query on
+ * the modification time of users and photos; objects that were deleted since are dropped by their
+ * {@link ModelTombstone}s, which are queried on the deletion time in the same way.
+ *
+ * @review
+ */
+public class ModelSnapshot {
+
+	/**
+	 * "WZMS", marks the byte array as a model snapshot
+	 */
+	public static final int MAGIC = 0x575a4d53;
+
+	/**
+	 * Snapshots of other versions are ignored
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Queries on the modification time are eventually consistent, so changes are replayed from a while before the
+	 * snapshot was taken; replaying a change twice has no effect
+	 */
+	public static final long REPLAY_MARGIN = 5 * 60 * 1000;
+
+	/**
+	 * Number of objects read per Datastore round trip
+	 */
+	protected static final int CHUNK_SIZE = 200;
+
+	private static final Logger log = Logger.getLogger(ModelSnapshot.class.getName());
+
+	/**
+	 *
+	 */
+	protected long takenOn;
+
+	/**
+	 *
+	 */
+	protected final Map<String, User> users = new LinkedHashMap<String, User>();
+
+	/**
+	 *
+	 */
+	protected final Map<PhotoId, Photo> photos = new LinkedHashMap<PhotoId, Photo>();
+
+	/**
+	 * @methodtype constructor
+	 */
+	protected ModelSnapshot(long takenOn) {
+		this.takenOn = takenOn;
+	}
+
+	/**
+	 * @methodtype factory
+	 *
+	 * Reads all users and photos from the Datastore.
+	 */
+	public static ModelSnapshot readAll() {
+		ModelSnapshot result = new ModelSnapshot(System.currentTimeMillis());
+		for (User user : OfyService.ofy().load().type(User.class).chunk(CHUNK_SIZE).iterable()) {
+			result.users.put(user.getId(), user);
+		}
+		for (Photo photo : OfyService.ofy().load().type(Photo.class).chunk(CHUNK_SIZE).iterable()) {
+			photo.resetWriteCount();
+			result.photos.put(photo.getId(), photo);
+		}
+
+		log.info(LogBuilder.createSystemMessage().
+				addAction("read model snapshot").
+				addParameter("users", result.users.size()).
+				addParameter("photos", result.photos.size()).toString());
+		return result;
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Brings the snapshot up to date: loads the users and photos changed since it was taken and drops those that have
+	 * been deleted. Returns the number of replayed objects.
+	 */
+	public int replayChanges() {
+		long replayStart = System.currentTimeMillis();
+		long since = takenOn - REPLAY_MARGIN;
+		int result = 0;
+
+		// query clients, so the query needs no composite index with the User discriminator
+		for (Client client : OfyService.ofy().load().type(Client.class).
+				filter(Client.MODIFIED_ON + " >", since).chunk(CHUNK_SIZE).iterable()) {
+			if (client instanceof User) {
+				users.put(client.getId(), (User) client);
+				result++;
+			}
+		}
+		for (Photo photo : OfyService.ofy().load().type(Photo.class).
+				filter(Photo.MODIFIED_ON + " >", since).chunk(CHUNK_SIZE).iterable()) {
+			photo.resetWriteCount();
+			photos.put(photo.getId(), photo);
+			result++;
+		}
+
+		int noDeleted = dropDeleted(since);
+		takenOn = replayStart;
+
+		log.info(LogBuilder.createSystemMessage().
+				addAction("replay changes since model snapshot").
+				addParameter("replayed objects", result).
+				addParameter("deleted objects", noDeleted).toString());
+		return result;
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Removes the users and photos that have been deleted since the given time, as recorded by their tombstones.
+	 * Objects that were saved again after their deletion are kept.
+	 */
+	protected int dropDeleted(long since) {
+		int result = 0;
+		for (ModelTombstone tombstone : OfyService.ofy().load().type(ModelTombstone.class).
+				filter(ModelTombstone.DELETED_ON + " >", since).chunk(CHUNK_SIZE).iterable()) {
+			if (ModelTombstone.USER_KIND.equals(tombstone.getKind())) {
+				User user = users.get(tombstone.getObjectId());
+				if (user != null && user.getModifiedOn() <= tombstone.getDeletedOn()) {
+					users.remove(tombstone.getObjectId());
+					result++;
+				}
+			} else if (ModelTombstone.PHOTO_KIND.equals(tombstone.getKind())) {
+				PhotoId photoId = PhotoId.getIdFromString(tombstone.getObjectId());
+				Photo photo = photos.get(photoId);
+				if (photo != null && photo.getModifiedOn() <= tombstone.getDeletedOn()) {
+					photos.remove(photoId);
+					result++;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getTakenOn() {
+		return takenOn;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public Collection<User> getUsers() {
+		return users.values();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public Collection<Photo> getPhotos() {
+		return photos.values();
+	}
+
+	/**
+	 * @methodtype conversion
+	 */
+	public byte[] asBytes() throws IOException {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(result);
+		header.writeInt(MAGIC);
+		header.writeInt(VERSION);
+		header.writeLong(takenOn);
+		header.flush();
+
+		DataOutputStream body = new DataOutputStream(new DeflaterOutputStream(result));
+		writeObjects(body, users.values());
+		writeObjects(body, photos.values());
+		body.close();
+		return result.toByteArray();
+	}
+
+	/**
+	 * @methodtype helper
+	 */
+	protected void writeObjects(DataOutputStream out, Collection<?> objects) throws IOException {
+		out.writeInt(objects.size());
+		for (Object object : objects) {
+			byte[] entity = EntityTranslator.convertToPb(OfyService.ofy().save().toEntity(object)).toByteArray();
+			out.writeInt(entity.length);
+			out.write(entity);
+		}
+	}
+
+	/**
+	 * @methodtype factory
+	 *
+	 * Decodes a snapshot; throws an IOException if the bytes are no snapshot of the current version.
+	 */
+	public static ModelSnapshot fromBytes(byte[] bytes) throws IOException {
+		DataInputStream header = new DataInputStream(new ByteArrayInputStream(bytes));
+		if (bytes.length < 16 || header.readInt() != MAGIC) {
+			throw new IOException("bytes are no model snapshot");
+		}
+		int version = header.readInt();
+		if (version != VERSION) {
+			throw new IOException("model snapshot has version " + version + " instead of " + VERSION);
+		}
+
+		ModelSnapshot result = new ModelSnapshot(header.readLong());
+		DataInputStream body = new DataInputStream(
+				new InflaterInputStream(new ByteArrayInputStream(bytes, 16, bytes.length - 16)));
+		for (User user : ModelSnapshot.<User>readObjects(body)) {
+			result.users.put(user.getId(), user);
+		}
+		for (Photo photo : ModelSnapshot.<Photo>readObjects(body)) {
+			photo.resetWriteCount();
+			result.photos.put(photo.getId(), photo);
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype helper
+	 */
+	protected static <E> Collection<E> readObjects(DataInputStream in) throws IOException {
+		int noObjects = in.readInt();
+		Collection<E> result = new ArrayList<E>(noObjects);
+		for (int i = 0; i < noObjects; i++) {
+			byte[] entity = new byte[in.readInt()];
+			in.readFully(entity);
+			E object = OfyService.ofy().load().fromEntity(EntityTranslator.createFromPbBytes(entity));
+			result.add(object);
+		}
+		return result;
+	}
+
+}
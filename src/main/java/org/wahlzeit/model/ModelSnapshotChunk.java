@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+
+/**
+ * Part of a stored {@link ModelSnapshot}. Entities are limited to 1 MB, so larger snapshots are split into chunks;
+ * the {@link ModelSnapshotInfo} tells which chunks belong to the current snapshot.
+ *
+ * @review
+ */
+@Entity
+public class ModelSnapshotChunk {
+
+	/**
+	 * Leaves room for the key and the other properties of the entity
+	 */
+	public static final int MAX_SIZE = 1000 * 1000;
+
+	@Id
+	private String id;
+
+	private byte[] data;
+
+	/**
+	 * Used by Objectify
+	 */
+	ModelSnapshotChunk() {
+	}
+
+	/**
+	 * @methodtype constructor
+	 */
+	public ModelSnapshotChunk(long takenOn, int index, byte[] data) {
+		this.id = getId(takenOn, index);
+		this.data = data;
+	}
+
+	/**
+	 * @methodtype conversion
+	 */
+	public static String getId(long takenOn, int index) {
+		return takenOn + "-" + index;
+	}
+
+	public byte[] getData() {
+		return data;
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+
+/**
+ * Points to the chunks of the current {@link ModelSnapshot}. It is replaced after all chunks of a new snapshot have
+ * been saved, so readers never see a partly written snapshot.
+ *
+ * @review
+ */
+@Entity
+public class ModelSnapshotInfo {
+
+	public static final Long DEFAULT_ID = 1L;
+
+	@Id
+	private Long id = DEFAULT_ID;
+
+	private int version;
+	private long takenOn;
+	private int noChunks;
+	private int size;
+
+	/**
+	 * Used by Objectify
+	 */
+	ModelSnapshotInfo() {
+	}
+
+	/**
+	 * @methodtype constructor
+	 */
+	public ModelSnapshotInfo(long takenOn, int noChunks, int size) {
+		this.version = ModelSnapshot.VERSION;
+		this.takenOn = takenOn;
+		this.noChunks = noChunks;
+		this.size = size;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public long getTakenOn() {
+		return takenOn;
+	}
+
+	public int getNoChunks() {
+		return noChunks;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public String asString() {
+		return "model snapshot version " + version + " taken on " + takenOn + " with " + size + " bytes in " +
+				noChunks + " chunks";
+	}
+}
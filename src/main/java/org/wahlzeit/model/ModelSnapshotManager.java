@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.VoidWork;
+import org.wahlzeit.services.LogBuilder;
+import org.wahlzeit.services.ObjectManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static org.wahlzeit.services.OfyService.ofy;
+
+/**
+ * Stores the current {@link ModelSnapshot} in the Datastore, as chunks of bytes and an info entity that points to
+ * them. The file system of App Engine is read-only, so the snapshot cannot be kept in the backup directory.
+ *
+ * @review
+ */
+public class ModelSnapshotManager extends ObjectManager {
+
+	private static final Logger log = Logger.getLogger(ModelSnapshotManager.class.getName());
+
+	/**
+	 *
+	 */
+	protected static final ModelSnapshotManager instance = new ModelSnapshotManager();
+
+	/**
+	 * @methodtype get
+	 */
+	public static ModelSnapshotManager getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 *
+	 * A snapshot holds all users and photos in memory, so it is only used if they are all kept in memory anyway, i.e.
+	 * if neither photos are paged nor inactive clients are cached.
+	 */
+	public boolean isSnapshotUsable() {
+		return !PhotoManager.getInstance().isPagingPhotos() &&
+				UserManager.getInstance().getInactiveClientCache() == null;
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Saves the chunks of the snapshot, then points the info entity to them and deletes the chunks of the former
+	 * snapshot and the tombstones that the new snapshot no longer replays.
+	 */
+	public void saveSnapshot(ModelSnapshot snapshot) throws IOException {
+		byte[] bytes = snapshot.asBytes();
+		long takenOn = snapshot.getTakenOn();
+
+		List<ModelSnapshotChunk> chunks = new ArrayList<ModelSnapshotChunk>();
+		for (int start = 0; start < bytes.length; start += ModelSnapshotChunk.MAX_SIZE) {
+			byte[] data = Arrays.copyOfRange(bytes, start, Math.min(start + ModelSnapshotChunk.MAX_SIZE, bytes.length));
+			chunks.add(new ModelSnapshotChunk(takenOn, chunks.size(), data));
+		}
+		ofy().save().entities(chunks).now();
+
+		final ModelSnapshotInfo info = new ModelSnapshotInfo(takenOn, chunks.size(), bytes.length);
+		final ModelSnapshotInfo[] formerInfo = new ModelSnapshotInfo[1];
+		ofy().transact(new VoidWork() {
+			@Override
+			public void vrun() {
+				formerInfo[0] = readInfo();
+				ofy().save().entity(info).now();
+			}
+		});
+
+		if (formerInfo[0] != null && formerInfo[0].getTakenOn() != takenOn) {
+			ofy().delete().keys(getChunkKeys(formerInfo[0])).now();
+		}
+		deleteTombstones(takenOn - ModelSnapshot.REPLAY_MARGIN);
+
+		log.info(LogBuilder.createSystemMessage().
+				addAction("save model snapshot").
+				addParameter("snapshot", info.asString()).toString());
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Records the deletion of the users and photos among the objects, so snapshots taken before drop them.
+	 */
+	public void recordDeletions(Collection<?> objects) {
+		long deletedOn = System.currentTimeMillis();
+		List<ModelTombstone> tombstones = new ArrayList<ModelTombstone>();
+		for (Object object : objects) {
+			ModelTombstone tombstone = ModelTombstone.createFor(object, deletedOn);
+			if (tombstone != null) {
+				tombstones.add(tombstone);
+			}
+		}
+		if (!tombstones.isEmpty()) {
+			ofy().save().entities(tombstones).now();
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void deleteTombstones(long before) {
+		List<Key<ModelTombstone>> keys = ofy().load().type(ModelTombstone.class).
+				filter(ModelTombstone.DELETED_ON + " <=", before).keys().list();
+		if (!keys.isEmpty()) {
+			ofy().delete().keys(keys).now();
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the current snapshot, or null if there is none that can be read.
+	 */
+	public ModelSnapshot loadSnapshot() {
+		ModelSnapshotInfo info = readInfo();
+		if (info == null) {
+			return null;
+		} else if (info.getVersion() != ModelSnapshot.VERSION) {
+			log.warning(LogBuilder.createSystemMessage().
+					addParameter("ignoring model snapshot", info.asString()).toString());
+			return null;
+		}
+
+		List<Key<ModelSnapshotChunk>> keys = getChunkKeys(info);
+		Map<Key<ModelSnapshotChunk>, ModelSnapshotChunk> chunks = ofy().load().keys(keys);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(info.getSize());
+		for (Key<ModelSnapshotChunk> key : keys) {
+			ModelSnapshotChunk chunk = chunks.get(key);
+			if (chunk == null) {
+				log.warning(LogBuilder.createSystemMessage().
+						addParameter("missing chunk of model snapshot", key.getName()).toString());
+				return null;
+			}
+			bytes.write(chunk.getData(), 0, chunk.getData().length);
+		}
+
+		try {
+			ModelSnapshot result = ModelSnapshot.fromBytes(bytes.toByteArray());
+			log.info(LogBuilder.createSystemMessage().
+					addAction("load model snapshot").
+					addParameter("snapshot", info.asString()).toString());
+			return result;
+		} catch (IOException ex) {
+			log.warning(LogBuilder.createSystemMessage().
+					addException("reading model snapshot failed", ex).toString());
+			return null;
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	protected ModelSnapshotInfo readInfo() {
+		return ofy().load().type(ModelSnapshotInfo.class).id(ModelSnapshotInfo.DEFAULT_ID).now();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	protected List<Key<ModelSnapshotChunk>> getChunkKeys(ModelSnapshotInfo info) {
+		List<Key<ModelSnapshotChunk>> result = new ArrayList<Key<ModelSnapshotChunk>>();
+		for (int i = 0; i < info.getNoChunks(); i++) {
+			result.add(Key.create(ModelSnapshotChunk.class, ModelSnapshotChunk.getId(info.getTakenOn(), i)));
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+import com.googlecode.objectify.annotation.Index;
+
+/**
+ * Records that a user or photo has been deleted, so a {@link ModelSnapshot} drops it when replaying the changes made
+ * after it was taken. Tombstones that are older than the current snapshot are removed when a new one is saved.
+ *
+ * @review
+ */
+@Entity
+public class ModelTombstone {
+
+	/**
+	 * Name of the property that holds the deletion time, for queries
+	 */
+	public static final String DELETED_ON = "deletedOn";
+
+	public static final String USER_KIND = "User";
+	public static final String PHOTO_KIND = "Photo";
+
+	@Id
+	private Long id;
+
+	private String kind;
+	private String objectId;
+
+	@Index
+	private long deletedOn;
+
+	/**
+	 * Used by Objectify
+	 */
+	ModelTombstone() {
+	}
+
+	/**
+	 * @methodtype constructor
+	 */
+	public ModelTombstone(String kind, String objectId, long deletedOn) {
+		this.kind = kind;
+		this.objectId = objectId;
+		this.deletedOn = deletedOn;
+	}
+
+	/**
+	 * @methodtype factory
+	 *
+	 * Returns the tombstone of a deleted user or photo, or null for other objects, which are not part of snapshots.
+	 */
+	public static ModelTombstone createFor(Object object, long deletedOn) {
+		if (object instanceof User) {
+			return new ModelTombstone(USER_KIND, ((User) object).getId(), deletedOn);
+		} else if (object instanceof Photo) {
+			return new ModelTombstone(PHOTO_KIND, ((Photo) object).getId().asString(), deletedOn);
+		}
+		return null;
+	}
+
+	public String getKind() {
+		return kind;
+	}
+
+	public String getObjectId() {
+		return objectId;
+	}
+
+	public long getDeletedOn() {
+		return deletedOn;
+	}
+}
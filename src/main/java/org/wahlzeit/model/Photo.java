@@ -26,13 +26,20 @@ import com.google.appengine.api.images.Image;
 import com.googlecode.objectify.annotation.Entity;
 import com.googlecode.objectify.annotation.Id;
 import com.googlecode.objectify.annotation.Ignore;
+import com.googlecode.objectify.annotation.Index;
+import com.googlecode.objectify.annotation.OnSave;
 import com.googlecode.objectify.annotation.Parent;
 import org.wahlzeit.services.DataObject;
 import org.wahlzeit.services.EmailAddress;
 import org.wahlzeit.services.Language;
-import org.wahlzeit.services.ObjectManager;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * A photo represents a user-provided (uploaded) photo.
@@ -53,11 +60,13 @@ public class Photo extends DataObject {
     public static final String KEYWORDS = "keywords";
 
     public static final String TAGS = "tags";
+    public static final String TAG_INDEX = "tagIndex";
     public static final String OWNER_ID = "ownerId";
 
     public static final String STATUS = "status";
     public static final String IS_INVISIBLE = "isInvisible";
     public static final String UPLOADED_ON = "uploadedOn";
+    public static final String MODIFIED_ON = "modifiedOn";
 
     /**
      *
@@ -100,6 +109,20 @@ public class Photo extends DataObject {
      */
     protected Tags tags = Tags.EMPTY_TAGS;
 
+    /**
+     * All tags collected by the PhotoTagCollector, e.g. "un:name" and "tg:tag", as one indexed multi-valued property.
+     * Only maintained if tags are stored with the photo, see TagStorageMode.
+     */
+    @Index
+    protected List<String> tagIndex = new ArrayList<String>();
+
+    /**
+     * Keys of the Tag entities of the photo by their text, as of the last tag write, so unchanged tags are neither
+     * read nor written again; null if not known yet. Only used if tags are stored as Tag entities, see TagStorageMode.
+     */
+    @Ignore
+    transient protected volatile Map<String, com.googlecode.objectify.Key<Tag>> persistedTags = null;
+
     /**
      *
      */
@@ -117,6 +140,12 @@ public class Photo extends DataObject {
      */
     protected long creationTime = System.currentTimeMillis();
 
+    /**
+     * Time of the last save, to replay the photos that changed after a ModelSnapshot was taken
+     */
+    @Index
+    protected long modifiedOn = 0;
+
     /**
      * The default type is jpg
      */
@@ -128,19 +157,19 @@ public class Photo extends DataObject {
     public Location location = new Location("");
 
     /**
-     *
+     * The Datastore id equals the photo id, so each photo is the root of its own entity group.
+     * Photos that were saved under the former application root are moved by the EntityGroupMigration.
      */
     //TODO: change it to a single long
     @Id
     Long idLong;
     @Parent
-    Key parent = ObjectManager.applicationRootKey;
+    Key parent = null;
 
     /**
-     *
+     * Used by Objectify when a photo is loaded, so no new id is handed out; use the factory for new photos
      */
     public Photo() {
-        id = PhotoId.getNextId();
         incWriteCount();
     }
 
@@ -149,10 +178,27 @@ public class Photo extends DataObject {
      */
     public Photo(PhotoId myId) {
         id = myId;
+        idLong = (long) id.asInt();
+        // the id has just been handed out, so there are no Tag entities yet
+        persistedTags = Collections.emptyMap();
 
         incWriteCount();
     }
 
+    /**
+     * @methodtype get
+     */
+    public Map<String, com.googlecode.objectify.Key<Tag>> getPersistedTags() {
+        return persistedTags;
+    }
+
+    /**
+     * @methodtype set
+     */
+    public void setPersistedTags(Map<String, com.googlecode.objectify.Key<Tag>> newPersistedTags) {
+        persistedTags = newPersistedTags;
+    }
+
     /**
      * @methodtype get
      */
@@ -207,8 +253,16 @@ public class Photo extends DataObject {
      * @methodtype get
      */
     public String getCaption(ModelConfig cfg) {
-        String ownerName = UserManager.getInstance().getUserById(ownerId).getNickName();
-        return cfg.asPhotoCaption(ownerName);
+        return getCaption(cfg, UserManager.getInstance().getUserById(ownerId));
+    }
+
+    /**
+     * @methodtype get
+     *
+     * For callers that have looked up the owner already.
+     */
+    public String getCaption(ModelConfig cfg, User owner) {
+        return cfg.asPhotoCaption(owner.getNickName());
     }
 
     /**
@@ -393,6 +447,37 @@ public class Photo extends DataObject {
         incWriteCount();
     }
 
+    /**
+     * @methodtype get
+     */
+    public List<String> getTagIndex() {
+        return Collections.unmodifiableList(tagIndex);
+    }
+
+    /**
+     * @methodtype set
+     *
+     * Replaces the tag index; the photo only becomes dirty if the index actually changed.
+     */
+    public void setTagIndex(Collection<String> newTagIndex) {
+        List<String> sortedTagIndex = new ArrayList<String>(new TreeSet<String>(newTagIndex));
+        if (!sortedTagIndex.equals(tagIndex)) {
+            tagIndex = sortedTagIndex;
+            incWriteCount();
+        }
+    }
+
+    /**
+     * @methodtype command
+     */
+    public void addToTagIndex(String tag) {
+        if (!tagIndex.contains(tag)) {
+            Set<String> newTagIndex = new TreeSet<String>(tagIndex);
+            newTagIndex.add(tag);
+            setTagIndex(newTagIndex);
+        }
+    }
+
     /**
      * @methodtype get
      */
@@ -400,6 +485,21 @@ public class Photo extends DataObject {
         return creationTime;
     }
 
+    /**
+     * @methodtype get
+     */
+    public long getModifiedOn() {
+        return modifiedOn;
+    }
+
+    /**
+     * @methodtype set
+     */
+    @OnSave
+    protected void updateModifiedOn() {
+        modifiedOn = System.currentTimeMillis();
+    }
+
 
     public String getEnding() {
         return ending;
@@ -437,4 +537,23 @@ public class Photo extends DataObject {
     public void setLocation(Location location) {
         this.location = location;
     }
+
+    /**
+     * @methodtype boolean-query
+     */
+    boolean isInOwnEntityGroup() {
+        return parent == null && idLong != null && idLong == id.asInt();
+    }
+
+    /**
+     * @methodtype command
+     *
+     * Moves the photo out of a former parent into its own entity group. The entity needs to be saved afterwards and
+     * the entity with the former key deleted.
+     */
+    void moveToOwnEntityGroup() {
+        parent = null;
+        idLong = (long) id.asInt();
+        incWriteCount();
+    }
 }
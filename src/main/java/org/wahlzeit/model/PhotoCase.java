@@ -84,6 +84,17 @@ public class PhotoCase extends Case {
 		return photo;
 	}
 
+	/**
+	 * Replaces the photo by the copy managed by the PhotoManager. The case itself does not change, so it does not
+	 * become dirty.
+	 */
+	public void setPhoto(Photo myPhoto) {
+		if (myPhoto == null || photo == null || !myPhoto.getId().equals(photo.getId())) {
+			throw new IllegalArgumentException("photo case can only be given another copy of its photo");
+		}
+		photo = myPhoto;
+	}
+
 	/**
 	 *
 	 */
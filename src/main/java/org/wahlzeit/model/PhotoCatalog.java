@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Concurrent in-memory catalog of photos, keyed by {@link PhotoId#asInt()}. Photo ids are handed out densely, so the
+ * photos are kept in segments of an array instead of a hash map. Reads never lock: they only follow volatile
+ * references. Writes lock one of a few stripes, so concurrent writes of different photos rarely wait for each other.
+ * Iterating is weakly consistent: it never fails because of concurrent changes, and it sees all photos that were in
+ * the catalog when it started and have not been removed since.
+ *
+ * @review
+ */
+public class PhotoCatalog {
+
+	/**
+	 *
+	 */
+	protected static final int SEGMENT_SHIFT = 10;
+	protected static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+	protected static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+	/**
+	 * Number of write locks, a power of two
+	 */
+	protected static final int NO_STRIPES = 16;
+
+	/**
+	 * Directory of the segments, replaced by a larger copy if a photo id exceeds it
+	 */
+	protected volatile AtomicReferenceArray<AtomicReferenceArray<Photo>> segments =
+			new AtomicReferenceArray<AtomicReferenceArray<Photo>>(4);
+
+	/**
+	 * Guards replacing the directory and adding segments to it
+	 */
+	protected final Object directoryLock = new Object();
+
+	/**
+	 *
+	 */
+	protected final Object[] stripes = new Object[NO_STRIPES];
+
+	/**
+	 *
+	 */
+	protected final AtomicInteger size = new AtomicInteger(0);
+
+	/**
+	 *
+	 */
+	protected final Map<PhotoId, Photo> mapView = new MapView();
+
+	/**
+	 *
+	 */
+	public PhotoCatalog() {
+		for (int i = 0; i < NO_STRIPES; i++) {
+			stripes[i] = new Object();
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public Photo get(PhotoId id) {
+		return id == null ? null : get(id.asInt());
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public Photo get(int id) {
+		if (id <= 0) {
+			return null;
+		}
+
+		AtomicReferenceArray<AtomicReferenceArray<Photo>> directory = segments;
+		int segmentIndex = id >>> SEGMENT_SHIFT;
+		if (segmentIndex >= directory.length()) {
+			return null;
+		}
+
+		AtomicReferenceArray<Photo> segment = directory.get(segmentIndex);
+		return segment == null ? null : segment.get(id & SEGMENT_MASK);
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	public boolean contains(PhotoId id) {
+		return get(id) != null;
+	}
+
+	/**
+	 * @methodtype set
+	 *
+	 * Adds the photo or replaces the one with the same id, returns the replaced photo, if any.
+	 */
+	public Photo put(Photo photo) {
+		if (photo == null) {
+			throw new IllegalArgumentException("photo should not be null");
+		}
+		int id = photo.getId().asInt();
+		if (id <= 0) {
+			throw new IllegalArgumentException("photo has no valid id: " + id);
+		}
+
+		AtomicReferenceArray<Photo> segment = getOrCreateSegment(id);
+		synchronized (getStripe(id)) {
+			Photo result = segment.getAndSet(id & SEGMENT_MASK, photo);
+			if (result == null) {
+				size.incrementAndGet();
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * @methodtype set
+	 */
+	public Photo remove(PhotoId id) {
+		int intId = id.asInt();
+		AtomicReferenceArray<AtomicReferenceArray<Photo>> directory = segments;
+		int segmentIndex = intId >>> SEGMENT_SHIFT;
+		if (intId <= 0 || segmentIndex >= directory.length() || directory.get(segmentIndex) == null) {
+			return null;
+		}
+
+		AtomicReferenceArray<Photo> segment = directory.get(segmentIndex);
+		synchronized (getStripe(intId)) {
+			Photo result = segment.getAndSet(intId & SEGMENT_MASK, null);
+			if (result != null) {
+				size.decrementAndGet();
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns a read-only, weakly consistent view of all photos, ordered by id.
+	 */
+	public Collection<Photo> values() {
+		return new AbstractCollection<Photo>() {
+			@Override
+			public Iterator<Photo> iterator() {
+				return new PhotoIterator();
+			}
+
+			@Override
+			public int size() {
+				return PhotoCatalog.this.size();
+			}
+		};
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns a read-only map view of the catalog, for clients that expect a map.
+	 */
+	public Map<PhotoId, Photo> asMap() {
+		return mapView;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	protected Object getStripe(int id) {
+		return stripes[id & (NO_STRIPES - 1)];
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	protected AtomicReferenceArray<Photo> getOrCreateSegment(int id) {
+		int segmentIndex = id >>> SEGMENT_SHIFT;
+		AtomicReferenceArray<AtomicReferenceArray<Photo>> directory = segments;
+		if (segmentIndex < directory.length() && directory.get(segmentIndex) != null) {
+			return directory.get(segmentIndex);
+		}
+
+		synchronized (directoryLock) {
+			directory = segments;
+			if (segmentIndex >= directory.length()) {
+				int newLength = Math.max(segmentIndex + 1, 2 * directory.length());
+				AtomicReferenceArray<AtomicReferenceArray<Photo>> newDirectory =
+						new AtomicReferenceArray<AtomicReferenceArray<Photo>>(newLength);
+				for (int i = 0; i < directory.length(); i++) {
+					newDirectory.set(i, directory.get(i));
+				}
+				segments = directory = newDirectory;
+			}
+
+			AtomicReferenceArray<Photo> result = directory.get(segmentIndex);
+			if (result == null) {
+				result = new AtomicReferenceArray<Photo>(SEGMENT_SIZE);
+				directory.set(segmentIndex, result);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Walks the segments in the order of the ids and skips empty slots.
+	 */
+	protected class PhotoIterator implements Iterator<Photo> {
+
+		protected final AtomicReferenceArray<AtomicReferenceArray<Photo>> directory = segments;
+		protected int nextId = 1;
+		protected Photo next = findNext();
+
+		/**
+		 * @methodtype helper
+		 */
+		protected Photo findNext() {
+			int maxId = directory.length() << SEGMENT_SHIFT;
+			while (nextId > 0 && nextId < maxId) {
+				AtomicReferenceArray<Photo> segment = directory.get(nextId >>> SEGMENT_SHIFT);
+				if (segment == null) {
+					nextId = ((nextId >>> SEGMENT_SHIFT) + 1) << SEGMENT_SHIFT;
+					continue;
+				}
+
+				Photo result = segment.get(nextId & SEGMENT_MASK);
+				nextId++;
+				if (result != null) {
+					return result;
+				}
+			}
+			return null;
+		}
+
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		public Photo next() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			Photo result = next;
+			next = findNext();
+			return result;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException("the photo catalog is read-only");
+		}
+	}
+
+	/**
+	 * Read-only map of the catalog; lookups go directly to the segments.
+	 */
+	protected class MapView extends AbstractMap<PhotoId, Photo> {
+
+		@Override
+		public Photo get(Object key) {
+			return key instanceof PhotoId ? PhotoCatalog.this.get((PhotoId) key) : null;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) != null;
+		}
+
+		@Override
+		public int size() {
+			return PhotoCatalog.this.size();
+		}
+
+		@Override
+		public Collection<Photo> values() {
+			return PhotoCatalog.this.values();
+		}
+
+		@Override
+		public Set<Entry<PhotoId, Photo>> entrySet() {
+			return new AbstractSet<Entry<PhotoId, Photo>>() {
+				@Override
+				public Iterator<Entry<PhotoId, Photo>> iterator() {
+					final Iterator<Photo> photos = new PhotoIterator();
+					return new Iterator<Entry<PhotoId, Photo>>() {
+						public boolean hasNext() {
+							return photos.hasNext();
+						}
+
+						public Entry<PhotoId, Photo> next() {
+							Photo photo = photos.next();
+							return new SimpleImmutableEntry<PhotoId, Photo>(photo.getId(), photo);
+						}
+
+						public void remove() {
+							throw new UnsupportedOperationException("the photo catalog is read-only");
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return PhotoCatalog.this.size();
+				}
+			};
+		}
+	}
+
+}
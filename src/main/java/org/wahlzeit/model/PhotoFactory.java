@@ -20,9 +20,16 @@
 
 package org.wahlzeit.model;
 
+import com.googlecode.objectify.Key;
 import org.wahlzeit.services.LogBuilder;
+import org.wahlzeit.services.OfyService;
 import org.wahlzeit.utils.PatternInstance;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -81,7 +88,7 @@ public class PhotoFactory {
 	 * @methodtype factory
 	 */
 	public Photo createPhoto() {
-		return new Photo();
+		return new Photo(PhotoId.getNextId());
 	}
 
 	/**
@@ -92,22 +99,55 @@ public class PhotoFactory {
 	}
 
 	/**
-	 * Loads a photo. The Java object is loaded from the Google Datastore, the Images in all sizes are loaded from the
-	 * Google Cloud storage.
+	 * Loads a photo. The Java object is loaded from the Google Datastore by its key (see {@link EntityGroups}), the
+	 * Images in all sizes are loaded from the image storage. Returns null if there is no such photo.
 	 */
 	public Photo loadPhoto(PhotoId id) {
-	   /* Photo result =
-                OfyService.ofy().load().type(Photo.class).ancestor(KeyFactory.createKey("Application", "Wahlzeit")).filter(Photo.ID, id).first().now();
-        for (PhotoSize size : PhotoSize.values()) {
-            GcsFilename gcsFilename = new GcsFilename("picturebucket", filename);
+		if (id == null || id.isNullId()) {
+			return null;
+		}
 
+		log.config(LogBuilder.createSystemMessage().addParameter("Datastore: load photo", id.asString()).toString());
+		Photo result = OfyService.ofy().load().key(Key.<Photo>create(EntityGroups.getPhotoKey(id))).now();
+		if (result != null) {
+			// just loaded, so there is nothing to save
+			result.resetWriteCount();
+			PhotoManager.getInstance().loadScaledImages(result);
+		}
+		return result;
+	}
+
+	/**
+	 * Loads several photos with one multi-get from the Google Datastore, then their Images. Photos that do not exist
+	 * are missing in the result, which is ordered like the given ids.
+	 */
+	public Map<PhotoId, Photo> loadPhotos(Collection<PhotoId> ids) {
+		List<Key<Photo>> keys = new ArrayList<Key<Photo>>(ids.size());
+		for (PhotoId id : ids) {
+			if (id != null && !id.isNullId()) {
+				keys.add(Key.<Photo>create(EntityGroups.getPhotoKey(id)));
+			}
+		}
 
+		Map<PhotoId, Photo> result = new LinkedHashMap<PhotoId, Photo>();
+		if (keys.isEmpty()) {
+			return result;
+		}
 
-        }*/
-		return null;
+		log.config(LogBuilder.createSystemMessage().
+				addParameter("Datastore: load photos", keys.size()).toString());
+		Map<Key<Photo>, Photo> loadedPhotos = OfyService.ofy().load().keys(keys);
+		for (Key<Photo> key : keys) {
+			Photo photo = loadedPhotos.get(key);
+			if (photo != null) {
+				photo.resetWriteCount();
+				PhotoManager.getInstance().loadScaledImages(photo);
+				result.put(photo.getId(), photo);
+			}
+		}
+		return result;
 	}
 
-
 	/**
 	 *
 	 */
@@ -21,8 +21,13 @@
 package org.wahlzeit.model;
 
 import org.wahlzeit.services.LogBuilder;
+import org.wahlzeit.utils.IntBitmap;
 import org.wahlzeit.utils.StringUtil;
+import org.wahlzeit.utils.VarIntCodec;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -34,9 +39,15 @@ import java.util.logging.Logger;
 /**
  * A class to specify a photo filter.
  * A photo filter captures selection ("filtering") criteria for photos.
+ *
+ * A photo filter is kept in the http session, so it is serialized compactly: the processed and skipped photos are
+ * kept as {@link IntBitmap}s and written as sets of ints, see {@link VarIntCodec}, and the displayable photos are not
+ * written at all, as they are generated again for each photo to show.
  */
 public class PhotoFilter implements Serializable {
 
+	private static final long serialVersionUID = 2L;
+
 	private static Logger log = Logger.getLogger(PhotoFilter.class.getName());
 
 	/**
@@ -48,20 +59,20 @@ public class PhotoFilter implements Serializable {
 	/**
 	 *
 	 */
-	protected String userName = "";
-	protected Tags tags = Tags.EMPTY_TAGS;
+	protected transient String userName = "";
+	protected transient Tags tags = Tags.EMPTY_TAGS;
 
 	/**
 	 *
 	 */
-	protected List<PhotoId> displayablePhotoIds;
-	protected List<PhotoId> processedPhotoIds = new LinkedList<PhotoId>();
-	protected List<PhotoId> skippedPhotoIds = new LinkedList<PhotoId>();
+	protected transient List<PhotoId> displayablePhotoIds;
+	protected transient IntBitmap processedPhotoIds = new IntBitmap();
+	protected transient IntBitmap skippedPhotoIds = new IntBitmap();
 
 	/**
 	 *
 	 */
-	protected Random randomNumber = new Random(System.currentTimeMillis());
+	protected transient Random randomNumber = new Random(System.currentTimeMillis());
 
 	/**
 	 *
@@ -140,7 +151,16 @@ public class PhotoFilter implements Serializable {
 	 * @methodtype command
 	 */
 	public void generateDisplayablePhotoIds() {
-		displayablePhotoIds = getFilteredPhotoIds();
+		generateDisplayablePhotoIds(null);
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Also leaves out the photos the client has praised or skipped in former sessions, as long as there are others.
+	 */
+	public void generateDisplayablePhotoIds(Client client) {
+		displayablePhotoIds = getFilteredPhotoIds(client);
 	}
 
 	/**
@@ -180,7 +200,7 @@ public class PhotoFilter implements Serializable {
 	/**
 	 *
 	 */
-	public List<PhotoId> getProcessedPhotoIds() {
+	public IntBitmap getProcessedPhotoIds() {
 		return processedPhotoIds;
 	}
 
@@ -188,37 +208,29 @@ public class PhotoFilter implements Serializable {
 	 *
 	 */
 	public boolean isProcessedPhotoId(PhotoId photoId) {
-		log.info("photoId: " + photoId.asString());
-		for (PhotoId id : processedPhotoIds) {
-			log.info("Processed id: " + id.asString());
-		}
-		return processedPhotoIds.contains(photoId);
+		return processedPhotoIds.contains(photoId.asInt());
 	}
 
 	/**
-	 *
+	 * The displayable photos are not updated, as they are generated again for the next photo to show.
 	 */
 	public void addProcessedPhoto(Photo photo) {
-		PhotoId photoId = photo.getId();
+		int photoId = photo.getId().asInt();
 		processedPhotoIds.add(photoId);
 		skippedPhotoIds.remove(photoId);
-		if (displayablePhotoIds != null) {
-			displayablePhotoIds.remove(photoId);
-		}
 	}
 
-
 	/**
 	 * @methodtype get
 	 */
-	public List<PhotoId> getSkippedPhotoIds() {
+	public IntBitmap getSkippedPhotoIds() {
 		return skippedPhotoIds;
 	}
 
 	/**
 	 * @methodtype set
 	 */
-	public void setSkippedPhotoIds(List<PhotoId> skippedPhotoIds) {
+	public void setSkippedPhotoIds(IntBitmap skippedPhotoIds) {
 		this.skippedPhotoIds = skippedPhotoIds;
 	}
 
@@ -226,49 +238,75 @@ public class PhotoFilter implements Serializable {
 	 * @methodtype set
 	 */
 	public void addSkippedPhotoId(PhotoId skippedPhotoId) {
-		if (!skippedPhotoIds.contains(skippedPhotoId)) {
-			skippedPhotoIds.add(skippedPhotoId);
-		}
+		skippedPhotoIds.add(skippedPhotoId.asInt());
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 *
+	 * Tells whether the photo has been praised in this session or, if there is a client, ever. Processed photos are
+	 * not displayed again.
+	 */
+	protected boolean isProcessed(int photoId, Client client) {
+		return processedPhotoIds.contains(photoId) ||
+				(client != null && client.getPraisedPhotoIds().contains(photoId));
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 *
+	 * Tells whether the photo has been skipped in this session or, if there is a client, ever. Skipped photos are
+	 * only displayed again if there are no others.
+	 */
+	protected boolean isSkipped(int photoId, Client client) {
+		return skippedPhotoIds.contains(photoId) ||
+				(client != null && client.getSkippedPhotoIds().contains(photoId));
 	}
 
 	/**
 	 *
 	 */
 	protected List<PhotoId> getFilteredPhotoIds() {
+		return getFilteredPhotoIds(null);
+	}
+
+	/**
+	 *
+	 */
+	protected List<PhotoId> getFilteredPhotoIds(Client client) {
 		// get all tags that match the filter conditions
-		List<PhotoId> result = new LinkedList<PhotoId>();
+		List<PhotoId> result = new ArrayList<PhotoId>();
 		int noFilterConditions = getFilterConditions().size();
 		log.config(LogBuilder.createSystemMessage().
 				addParameter("Number of filter conditions", String.valueOf(noFilterConditions)).toString());
 
 		Collection<PhotoId> candidates;
 		if (noFilterConditions == 0) {
-			candidates = PhotoManager.getInstance().getPhotoCache().keySet();
+			candidates = PhotoManager.getInstance().getPhotoIds();
 		} else {
-			List<Tag> tags = new LinkedList<Tag>();
+			// get the list of all photo ids that correspond to the tags
 			candidates = new LinkedList<PhotoId>();
 			for (String condition : getFilterConditions()) {
-				PhotoManager.getInstance().addTagsThatMatchCondition(tags, condition);
-			}
-			// get the list of all photo ids that correspond to the tags
-			for (Tag tag : tags) {
-				candidates.add(PhotoId.getIdFromString(tag.getPhotoId()));
+				PhotoManager.getInstance().addPhotoIdsThatMatchCondition(candidates, condition);
 			}
 		}
 
-		int newPhotos = 0;
+		List<PhotoId> skippedCandidates = new ArrayList<PhotoId>();
 		for (PhotoId candidateId : candidates) {
-			Photo photoCandidate = PhotoManager.getInstance().getPhoto(candidateId);
-			if (!processedPhotoIds.contains(candidateId) && !skippedPhotoIds.contains(candidateId) &&
-					photoCandidate.isVisible()) {
+			int id = candidateId.asInt();
+			if (isProcessed(id, client) || !PhotoManager.getInstance().isVisible(candidateId)) {
+				continue;
+			}
+			if (isSkipped(id, client)) {
+				skippedCandidates.add(candidateId);
+			} else {
 				result.add(candidateId);
-				++newPhotos;
 			}
 		}
-		int skippedPhotos = skippedPhotoIds.size();
-		if (newPhotos == 0 && skippedPhotos > 0) {
-			result.addAll(skippedPhotoIds);
-			newPhotos = skippedPhotos;
+		int newPhotos = result.size();
+		if (newPhotos == 0) {
+			result.addAll(skippedCandidates);
+			newPhotos = skippedCandidates.size();
 		}
 
 		log.config(LogBuilder.createSystemMessage().addParameter("Number of photos to show", newPhotos)
@@ -276,4 +314,49 @@ public class PhotoFilter implements Serializable {
 
 		return result;
 	}
+
+	/**
+	 * @methodtype command
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeUTF(userName);
+		out.writeUTF(tags.asString());
+		writePhotoIds(out, processedPhotoIds);
+		writePhotoIds(out, skippedPhotoIds);
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		userName = in.readUTF();
+		String tagsString = in.readUTF();
+		tags = tagsString.isEmpty() ? Tags.EMPTY_TAGS : new Tags(tagsString);
+		processedPhotoIds = readPhotoIds(in);
+		skippedPhotoIds = readPhotoIds(in);
+		displayablePhotoIds = new ArrayList<PhotoId>();
+		randomNumber = new Random(System.currentTimeMillis());
+	}
+
+	/**
+	 * @methodtype helper
+	 */
+	protected static void writePhotoIds(ObjectOutputStream out, IntBitmap photoIds) throws IOException {
+		int[] values = photoIds.toArray();
+		VarIntCodec.writeIntSet(out, values, values.length);
+	}
+
+	/**
+	 * @methodtype helper
+	 */
+	protected static IntBitmap readPhotoIds(ObjectInputStream in) throws IOException {
+		IntBitmap result = new IntBitmap();
+		for (int value : VarIntCodec.readIntSet(in)) {
+			result.add(value);
+		}
+		return result;
+	}
+
 }
@@ -22,6 +22,8 @@ package org.wahlzeit.model;
 
 import java.io.Serializable;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * A photo id identifies a photo with a unique number.
@@ -31,30 +33,46 @@ import java.util.Random;
 public class PhotoId implements Serializable {
 
 	/**
-	 * 0 is never returned from nextValue; first value is 1
+	 * Highest id that this instance has handed out or loaded, or that is known to be leased; 0 is never returned from
+	 * nextValue; first value is 1. Other instances lease their own blocks of ids, so there may be photos with higher
+	 * ids; the highest leased id is then read from the Globals again, see {@link #isLeasedId(int)}.
 	 */
-	protected static int currentId = 0;
+	protected static final AtomicInteger currentId = new AtomicInteger(0);
 
 	/**
 	 *
 	 */
-	public static final int BUFFER_SIZE_INCREMENT = 64;
+	protected static final IdAllocator idAllocator = new IdAllocator(Globals.Counter.PHOTO);
 
 	/**
-	 *
+	 * The flyweights are kept in segments of 2^SEGMENT_SHIFT ids, which are only created once an id in their range is
+	 * requested, so the registry grows with the ids without ever copying or locking.
 	 */
-	public static final PhotoId NULL_ID = new PhotoId(0);
+	protected static final int SEGMENT_SHIFT = 14;
+	protected static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+	protected static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+	/**
+	 * Enough segments for all non-negative int ids
+	 */
+	protected static final AtomicReferenceArray<AtomicReferenceArray<PhotoId>> segments =
+			new AtomicReferenceArray<AtomicReferenceArray<PhotoId>>((Integer.MAX_VALUE >>> SEGMENT_SHIFT) + 1);
 
 	/**
 	 *
 	 */
-	protected static PhotoId[] ids = new PhotoId[BUFFER_SIZE_INCREMENT];
+	public static final PhotoId NULL_ID = new PhotoId(0);
 
 	/**
 	 * What a hack :-)
 	 */
 	public static final int ID_START = getFromString("x1abz") + 1;
 
+	/**
+	 * Length of the longest id string, "x" plus at most 6 base-36 digits for all ints
+	 */
+	protected static final int MAX_STRING_LENGTH = 7;
+
 	/**
 	 *
 	 */
@@ -68,54 +86,113 @@ public class PhotoId implements Serializable {
 	 *
 	 */
 	public static int getCurrentIdAsInt() {
-		return currentId;
+		return currentId.get();
 	}
 
 	/**
 	 *
 	 */
-	public static synchronized void setCurrentIdFromInt(int id) {
-		currentId = id;
-		ids = new PhotoId[currentId + BUFFER_SIZE_INCREMENT];
-		ids[0] = NULL_ID;
+	public static void setCurrentIdFromInt(int id) {
+		currentId.set(id);
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public static IdAllocator getIdAllocator() {
+		return idAllocator;
+	}
+
+	/**
+	 * Ids are leased in blocks, so they are unique across all instances, see {@link IdAllocator}.
+	 */
+	public static int getNextIdAsInt() {
+		int result = (int) idAllocator.getNextId();
+		ensureCurrentIdIsAtLeast(result);
+		return result;
 	}
 
 	/**
 	 *
 	 */
-	public static synchronized int getNextIdAsInt() {
-		currentId += 1;
-		if (currentId >= ids.length) {
-			PhotoId[] nids = new PhotoId[currentId + BUFFER_SIZE_INCREMENT];
-			System.arraycopy(ids, 0, nids, 0, currentId);
-			ids = nids;
+	protected static void ensureCurrentIdIsAtLeast(int id) {
+		int current = currentId.get();
+		while (id > current && !currentId.compareAndSet(current, id)) {
+			current = currentId.get();
 		}
-		return currentId;
 	}
 
 	/**
-	 *
+	 * Returns the one PhotoId object for the id. If two threads ask for a new id at the same time, only the object of
+	 * the first is published, the other one gets that as well. Ids above the current id are valid as long as they have
+	 * been leased, possibly by another instance; all other ids are the NULL_ID.
 	 */
 	public static PhotoId getIdFromInt(int id) {
-		if ((id < 0) || (id > currentId)) {
+		if (id <= 0 || !isLeasedId(id)) {
 			return NULL_ID;
 		}
 
-		// @FIXME http://en.wikipedia.org/wiki/Double-checked_locking
-		PhotoId result = ids[id];
+		AtomicReferenceArray<PhotoId> segment = getSegment(id);
+		int index = id & SEGMENT_MASK;
+		PhotoId result = segment.get(index);
 		if (result == null) {
-			synchronized (ids) {
-				result = ids[id];
-				if (result == null) {
-					result = new PhotoId(id);
-					ids[id] = result;
-				}
+			PhotoId newId = new PhotoId(id);
+			if (segment.compareAndSet(index, null, newId)) {
+				result = newId;
+			} else {
+				result = segment.get(index);
 			}
 		}
 
 		return result;
 	}
 
+	/**
+	 * @methodtype boolean-query
+	 *
+	 * Returns true if the id has been leased by any instance. Ids up to the current id are; for higher ones, the
+	 * highest leased id is read from the Globals and becomes the current id.
+	 */
+	protected static boolean isLeasedId(int id) {
+		if (id <= currentId.get()) {
+			return true;
+		}
+
+		long lastLeasedId = GlobalsManager.getInstance().getLastId(Globals.Counter.PHOTO);
+		ensureCurrentIdIsAtLeast((int) Math.min(lastLeasedId, Integer.MAX_VALUE));
+		return id <= currentId.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	protected static AtomicReferenceArray<PhotoId> getSegment(int id) {
+		int segmentIndex = id >>> SEGMENT_SHIFT;
+		AtomicReferenceArray<PhotoId> result = segments.get(segmentIndex);
+		if (result == null) {
+			AtomicReferenceArray<PhotoId> newSegment = new AtomicReferenceArray<PhotoId>(SEGMENT_SIZE);
+			if (segments.compareAndSet(segmentIndex, null, newSegment)) {
+				result = newSegment;
+			} else {
+				result = segments.get(segmentIndex);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the PhotoId object for the id if it has been created already, null otherwise.
+	 */
+	protected static PhotoId getExistingId(int id) {
+		if (id <= 0) {
+			return null;
+		}
+		AtomicReferenceArray<PhotoId> segment = segments.get(id >>> SEGMENT_SHIFT);
+		return segment == null ? null : segment.get(id & SEGMENT_MASK);
+	}
+
 	/**
 	 *
 	 */
@@ -123,6 +200,26 @@ public class PhotoId implements Serializable {
 		return getIdFromInt(getFromString(id));
 	}
 
+	/**
+	 * Returns the PhotoId object for an id parsed from request input, or the NULL_ID if there is neither a PhotoId
+	 * object for the id yet nor a photo in the index. Unlike {@link #getIdFromInt(int)}, which is meant for ids from
+	 * leases and the Datastore, unknown ids never create objects.
+	 */
+	public static PhotoId getKnownIdFromInt(int id) {
+		PhotoId result = getExistingId(id);
+		if (result == null && PhotoManager.getInstance().getPhotoIndex().contains(id)) {
+			result = getIdFromInt(id);
+		}
+		return (result == null) ? NULL_ID : result;
+	}
+
+	/**
+	 * @see #getKnownIdFromInt(int)
+	 */
+	public static PhotoId getKnownIdFromString(String id) {
+		return getKnownIdFromInt(getFromString(id));
+	}
+
 	/**
 	 *
 	 */
@@ -205,33 +302,44 @@ public class PhotoId implements Serializable {
 	}
 
 	/**
-	 *
+	 * Known ids just return the string of their PhotoId object, all others are encoded into one char array.
 	 */
 	public static String getFromInt(int id) {
-		StringBuffer result = new StringBuffer(10);
+		PhotoId existingId = getExistingId(id);
+		if (existingId != null) {
+			return existingId.stringValue;
+		}
+
+		char[] result = new char[MAX_STRING_LENGTH];
+		int start = MAX_STRING_LENGTH;
 
 		id += ID_START;
 		for (; id > 0; id = id / 36) {
-			char letterOrDigit;
 			int modulus = id % 36;
 			if (modulus < 10) {
-				letterOrDigit = (char) ((int) '0' + modulus);
+				result[--start] = (char) ('0' + modulus);
 			} else {
-				letterOrDigit = (char) ((int) 'a' - 10 + modulus);
+				result[--start] = (char) ('a' - 10 + modulus);
 			}
-			result.insert(0, letterOrDigit);
-
 		}
+		result[--start] = 'x';
 
-		return "x" + result.toString();
+		return new String(result, start, MAX_STRING_LENGTH - start);
 	}
 
 	/**
 	 *
 	 */
 	public static int getFromString(String value) {
+		return getFromString(value, 0, value.length());
+	}
+
+	/**
+	 * Decodes the id string between start and end, without creating a substring.
+	 */
+	public static int getFromString(CharSequence value, int start, int end) {
 		int result = 0;
-		for (int i = 1; i < value.length(); i++) {
+		for (int i = start + 1; i < end; i++) {
 			int temp = 0;
 			char letterOrDigit = value.charAt(i);
 			if (letterOrDigit < 'a') {
@@ -250,4 +358,30 @@ public class PhotoId implements Serializable {
 		return result;
 	}
 
+	/**
+	 * @methodtype boolean-query
+	 *
+	 * Returns true if the chars between start and end have the syntax of an id string, i.e. an "x" followed by
+	 * lowercase base-36 digits of a non-negative int.
+	 */
+	public static boolean isIdString(CharSequence value, int start, int end) {
+		int length = end - start;
+		if (length < 2 || length > MAX_STRING_LENGTH || value.charAt(start) != 'x') {
+			return false;
+		}
+
+		long number = 0;
+		for (int i = start + 1; i < end; i++) {
+			char letterOrDigit = value.charAt(i);
+			if (letterOrDigit >= '0' && letterOrDigit <= '9') {
+				number = number * 36 + (letterOrDigit - '0');
+			} else if (letterOrDigit >= 'a' && letterOrDigit <= 'z') {
+				number = number * 36 + 10 + (letterOrDigit - 'a');
+			} else {
+				return false;
+			}
+		}
+		return number <= Integer.MAX_VALUE;
+	}
+
 }
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Compact index of all photos that always stays in memory, even if the photos themselves are paged out of the
+ * {@link PhotoLruCache}. For each photo id it keeps the owner, the status, the praise and whether there is new praise,
+ * in arrays indexed by {@link PhotoId#asInt()}, i.e. a few bytes per photo. The index is updated whenever a photo is
+ * added or saved. Writes are synchronized; reads are not and may briefly return the values before a concurrent write.
+ *
+ * @review
+ */
+public class PhotoIndex {
+
+	/**
+	 *
+	 */
+	protected static final int INITIAL_CAPACITY = 1024;
+
+	/**
+	 * Bits of the state byte: the lower four bits hold the photo status
+	 */
+	protected static final int STATUS_MASK = 0x0f;
+	protected static final int NEW_PRAISE_BIT = 0x10;
+	protected static final int IS_INDEXED_BIT = 0x40;
+
+	/**
+	 *
+	 */
+	protected volatile byte[] states = new byte[INITIAL_CAPACITY];
+
+	/**
+	 *
+	 */
+	protected volatile float[] praises = new float[INITIAL_CAPACITY];
+
+	/**
+	 * Owner ids are interned, so all photos of one owner share one string
+	 */
+	protected volatile String[] ownerIds = new String[INITIAL_CAPACITY];
+
+	/**
+	 *
+	 */
+	protected int size = 0;
+
+	/**
+	 * @methodtype set
+	 */
+	public synchronized void update(Photo photo) {
+		int id = photo.getId().asInt();
+		if (id <= 0) {
+			return;
+		}
+		ensureCapacity(id + 1);
+
+		if (states[id] == 0) {
+			size++;
+		}
+		int state = IS_INDEXED_BIT | photo.getStatus().asInt();
+		if (photo.hasNewPraise()) {
+			state |= NEW_PRAISE_BIT;
+		}
+		String ownerId = photo.getOwnerId();
+		ownerIds[id] = ownerId == null ? null : ownerId.intern();
+		praises[id] = (float) photo.getPraise();
+		states[id] = (byte) state;
+	}
+
+	/**
+	 * @methodtype set
+	 */
+	public synchronized void remove(PhotoId photoId) {
+		int id = photoId.asInt();
+		if (contains(id)) {
+			states[id] = 0;
+			ownerIds[id] = null;
+			praises[id] = 0;
+			size--;
+		}
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	public boolean contains(PhotoId photoId) {
+		return contains(photoId.asInt());
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	protected boolean contains(int id) {
+		byte[] currentStates = states;
+		return id > 0 && id < currentStates.length && currentStates[id] != 0;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns null if the photo is not in the index.
+	 */
+	public PhotoStatus getStatus(PhotoId photoId) {
+		int id = photoId.asInt();
+		if (!contains(id)) {
+			return null;
+		}
+		return PhotoStatus.getFromInt(states[id] & STATUS_MASK);
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	public boolean isVisible(PhotoId photoId) {
+		PhotoStatus status = getStatus(photoId);
+		return status != null && status.isDisplayable();
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	public boolean hasNewPraise(PhotoId photoId) {
+		int id = photoId.asInt();
+		return contains(id) && (states[id] & NEW_PRAISE_BIT) != 0;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public double getPraise(PhotoId photoId) {
+		int id = photoId.asInt();
+		return contains(id) ? praises[id] : 0;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public String getOwnerId(PhotoId photoId) {
+		int id = photoId.asInt();
+		return contains(id) ? ownerIds[id] : null;
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the ids of all indexed photos, ordered by id.
+	 */
+	public List<PhotoId> getPhotoIds() {
+		byte[] currentStates = states;
+		List<PhotoId> result = new ArrayList<PhotoId>();
+		for (int id = 1; id < currentStates.length; id++) {
+			if (currentStates[id] != 0) {
+				result.add(PhotoId.getIdFromInt(id));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the ids of the visible photos with the highest praise, highest first.
+	 */
+	public List<PhotoId> getTopPhotoIds(int maxSize) {
+		byte[] currentStates = states;
+		float[] currentPraises = praises;
+		int length = Math.min(currentStates.length, currentPraises.length);
+		Comparator<Integer> byPraise = getPraiseComparator(currentPraises);
+		PriorityQueue<Integer> top = new PriorityQueue<Integer>(Math.max(maxSize, 1), byPraise);
+		for (int id = 1; id < length && maxSize > 0; id++) {
+			int state = currentStates[id];
+			if (state != 0 && PhotoStatus.getFromInt(state & STATUS_MASK).isDisplayable()) {
+				top.add(id);
+				if (top.size() > maxSize) {
+					top.poll();
+				}
+			}
+		}
+
+		LinkedList<PhotoId> result = new LinkedList<PhotoId>();
+		while (!top.isEmpty()) {
+			result.addFirst(PhotoId.getIdFromInt(top.poll()));
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype helper
+	 */
+	protected static Comparator<Integer> getPraiseComparator(final float[] praises) {
+		return new Comparator<Integer>() {
+			public int compare(Integer id1, Integer id2) {
+				return Float.compare(praises[id1], praises[id2]);
+			}
+		};
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void ensureCapacity(int capacity) {
+		if (capacity <= states.length) {
+			return;
+		}
+
+		int newCapacity = Math.max(capacity, 2 * states.length);
+		byte[] newStates = new byte[newCapacity];
+		System.arraycopy(states, 0, newStates, 0, states.length);
+		float[] newPraises = new float[newCapacity];
+		System.arraycopy(praises, 0, newPraises, 0, praises.length);
+		String[] newOwnerIds = new String[newCapacity];
+		System.arraycopy(ownerIds, 0, newOwnerIds, 0, ownerIds.length);
+
+		// states last, so readers that see the new states also see the other arrays
+		praises = newPraises;
+		ownerIds = newOwnerIds;
+		states = newStates;
+	}
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import com.google.appengine.api.images.Image;
+import org.wahlzeit.services.LogBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Bounded cache of photos that evicts the least recently used ones. The bound is a weight in bytes, estimated from the
+ * images a photo holds, so a few large photos count as much as many small ones. Evicted photos are returned to the
+ * caller, which has to save them if they have unsaved changes.
+ *
+ * The cache is only used if the system property {@link #SYSTEM_PROPERTY} is set to a positive number of bytes;
+ * otherwise all photos stay in memory.
+ *
+ * @review
+ */
+public class PhotoLruCache {
+
+	/**
+	 *
+	 */
+	public static final String SYSTEM_PROPERTY = "org.wahlzeit.photoCacheSize";
+
+	/**
+	 * Estimated weight of a photo object without its images
+	 */
+	public static final long PHOTO_BASE_WEIGHT = 2 * 1024;
+
+	private static final Logger log = Logger.getLogger(PhotoLruCache.class.getName());
+
+	/**
+	 *
+	 */
+	protected final long maxWeight;
+
+	/**
+	 *
+	 */
+	protected long weight = 0;
+
+	/**
+	 * In access order, so the eldest entry is the least recently used one
+	 */
+	protected final LinkedHashMap<Integer, Photo> photos = new LinkedHashMap<Integer, Photo>(16, 0.75f, true);
+
+	/**
+	 * Weight of each cached photo at the time it was added
+	 */
+	protected final Map<Integer, Long> weights = new HashMap<Integer, Long>();
+
+	/**
+	 * @methodtype factory
+	 *
+	 * Returns a cache with the configured size, or null if photos should not be paged.
+	 */
+	public static PhotoLruCache createIfConfigured() {
+		String value = System.getProperty(SYSTEM_PROPERTY);
+		if (value == null || value.trim().isEmpty()) {
+			return null;
+		}
+
+		try {
+			long maxWeight = Long.parseLong(value.trim());
+			return maxWeight > 0 ? new PhotoLruCache(maxWeight) : null;
+		} catch (NumberFormatException ex) {
+			log.warning(LogBuilder.createSystemMessage().
+					addParameter("invalid photo cache size", value).
+					addMessage("keeping all photos in memory").toString());
+			return null;
+		}
+	}
+
+	/**
+	 * @methodtype constructor
+	 */
+	public PhotoLruCache(long maxWeight) {
+		if (maxWeight <= 0) {
+			throw new IllegalArgumentException("max weight must be positive");
+		}
+		this.maxWeight = maxWeight;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public synchronized Photo get(PhotoId id) {
+		return photos.get(id.asInt());
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	public synchronized boolean contains(PhotoId id) {
+		return photos.containsKey(id.asInt());
+	}
+
+	/**
+	 * @methodtype set
+	 *
+	 * Adds the photo and returns the photos that had to be evicted for it. The photo just added is never evicted.
+	 */
+	public synchronized List<Photo> put(Photo photo) {
+		Integer id = photo.getId().asInt();
+		long photoWeight = getWeight(photo);
+		photos.put(id, photo);
+		Long oldWeight = weights.put(id, photoWeight);
+		weight += photoWeight - (oldWeight == null ? 0 : oldWeight);
+
+		List<Photo> result = new ArrayList<Photo>();
+		Iterator<Map.Entry<Integer, Photo>> i = photos.entrySet().iterator();
+		while (weight > maxWeight && i.hasNext()) {
+			Map.Entry<Integer, Photo> eldest = i.next();
+			if (eldest.getKey().equals(id)) {
+				continue;
+			}
+			i.remove();
+			weight -= weights.remove(eldest.getKey());
+			result.add(eldest.getValue());
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype set
+	 */
+	public synchronized Photo remove(PhotoId id) {
+		Photo result = photos.remove(id.asInt());
+		Long oldWeight = weights.remove(id.asInt());
+		if (oldWeight != null) {
+			weight -= oldWeight;
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns a copy of the cached photos.
+	 */
+	public synchronized List<Photo> values() {
+		return new ArrayList<Photo>(photos.values());
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public synchronized int size() {
+		return photos.size();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	protected long getWeight(Photo photo) {
+		long result = PHOTO_BASE_WEIGHT;
+		for (PhotoSize size : PhotoSize.values()) {
+			Image image = photo.getImage(size);
+			if (image != null && image.getImageData() != null) {
+				result += image.getImageData().length;
+			}
+		}
+		return result;
+	}
+
+}
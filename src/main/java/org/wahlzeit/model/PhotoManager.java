@@ -23,22 +23,29 @@ package org.wahlzeit.model;
 import com.google.appengine.api.images.Image;
 import com.googlecode.objectify.ObjectifyService;
 import com.googlecode.objectify.Work;
+import org.wahlzeit.agents.AsyncTaskExecutor;
 import org.wahlzeit.model.mymodel.WatchPhotoManager;
 import org.wahlzeit.model.persistence.ImageStorage;
+import org.wahlzeit.services.DatastoreTask;
 import org.wahlzeit.services.LogBuilder;
 import org.wahlzeit.services.ObjectManager;
+import org.wahlzeit.services.OfyService;
 import org.wahlzeit.services.Persistent;
 
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
 import java.util.logging.Logger;
 
 /**
@@ -54,15 +61,47 @@ public class PhotoManager extends ObjectManager {
 	private static final Logger log = Logger.getLogger(PhotoManager.class.getName());
 
 	/**
-	 * In-memory cache for photos
+	 * Number of photos read per Datastore round trip when building the index
 	 */
-	protected Map<PhotoId, Photo> photoCache = new HashMap<PhotoId, Photo>();
+	protected static final int INDEX_CHUNK_SIZE = 200;
+
+	/**
+	 * Number of photos loaded with one batch get at startup
+	 */
+	protected static final int LOAD_PAGE_SIZE = 100;
+
+	/**
+	 * In-memory cache for photos, shared by all request threads and agents
+	 */
+	protected PhotoCatalog photoCache = new PhotoCatalog();
+
+	/**
+	 * If set, only the recently used photos are kept in memory and all others are paged in on demand; then the
+	 * photoCache stays empty
+	 */
+	protected PhotoLruCache pagedPhotoCache = PhotoLruCache.createIfConfigured();
+
+	/**
+	 * Photos that were paged out with unsaved changes; they are kept until PersistPhotoAgent has saved them, so the
+	 * request that evicted them does not have to write them
+	 */
+	protected final Map<PhotoId, Photo> unsavedPagedOutPhotos = new ConcurrentHashMap<PhotoId, Photo>();
+
+	/**
+	 * Owner, status and praise of all photos, also of those that are not in memory
+	 */
+	protected PhotoIndex photoIndex = new PhotoIndex();
 
 	/**
 	 *
 	 */
 	protected PhotoTagCollector photoTagCollector = null;
 
+	/**
+	 * How the collected tags of photos are persisted
+	 */
+	protected TagStorageMode tagStorageMode = TagStorageMode.getConfiguredMode();
+
 	/**
 	 *
 	 */
@@ -70,6 +109,44 @@ public class PhotoManager extends ObjectManager {
 		photoTagCollector = PhotoFactory.getInstance().createPhotoTagCollector();
 	}
 
+	/**
+	 * @methodtype boolean-query
+	 */
+	public boolean isPagingPhotos() {
+		return pagedPhotoCache != null;
+	}
+
+	/**
+	 * @methodtype set
+	 *
+	 * Sets the cache to page photos in and out, or null to keep all photos in memory.
+	 */
+	public void setPagedPhotoCache(PhotoLruCache newPagedPhotoCache) {
+		pagedPhotoCache = newPagedPhotoCache;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public PhotoIndex getPhotoIndex() {
+		return photoIndex;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public TagStorageMode getTagStorageMode() {
+		return tagStorageMode;
+	}
+
+	/**
+	 * @methodtype set
+	 */
+	public void setTagStorageMode(TagStorageMode newTagStorageMode) {
+		assertIsNonNullArgument(newTagStorageMode, "tag storage mode");
+		tagStorageMode = newTagStorageMode;
+	}
+
 	/**
 	 *
 	 */
@@ -81,7 +158,7 @@ public class PhotoManager extends ObjectManager {
 	 *
 	 */
 	public final boolean hasPhoto(String id) {
-		return hasPhoto(PhotoId.getIdFromString(id));
+		return hasPhoto(PhotoId.getKnownIdFromString(id));
 	}
 
 	/**
@@ -99,7 +176,8 @@ public class PhotoManager extends ObjectManager {
 	}
 
 	/**
-	 *
+	 * Photos that are not in memory are only loaded if the photo index knows them, so unknown ids cost no Datastore
+	 * read.
 	 */
 	public Photo getPhotoFromId(PhotoId id) {
 		if (id == null) {
@@ -108,8 +186,8 @@ public class PhotoManager extends ObjectManager {
 
 		Photo result = doGetPhotoFromId(id);
 
-		if (result == null) {
-			result = PhotoFactory.getInstance().loadPhoto(id);
+		if (result == null && photoIndex.contains(id)) {
+			result = getPhotoFactory().loadPhoto(id);
 			if (result != null) {
 				doAddPhoto(result);
 			}
@@ -118,12 +196,54 @@ public class PhotoManager extends ObjectManager {
 		return result;
 	}
 
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the photos with the given ids, ordered like the ids. Photos that are not in memory are loaded with one
+	 * batch, ids that the photo index does not know are left out.
+	 */
+	public Map<PhotoId, Photo> getPhotos(Collection<PhotoId> ids) {
+		List<PhotoId> missingIds = new ArrayList<PhotoId>();
+		for (PhotoId id : ids) {
+			if (id != null && doGetPhotoFromId(id) == null && photoIndex.contains(id)) {
+				missingIds.add(id);
+			}
+		}
+
+		if (!missingIds.isEmpty()) {
+			for (Photo photo : getPhotoFactory().loadPhotos(missingIds).values()) {
+				doAddPhoto(photo);
+			}
+		}
+
+		Map<PhotoId, Photo> result = new LinkedHashMap<PhotoId, Photo>();
+		for (PhotoId id : ids) {
+			Photo photo = id == null ? null : doGetPhotoFromId(id);
+			if (photo != null) {
+				result.put(id, photo);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	protected PhotoFactory getPhotoFactory() {
+		return PhotoFactory.getInstance();
+	}
+
 	/**
 	 * @methodtype get
 	 * @methodproperties primitive
 	 */
 	protected Photo doGetPhotoFromId(PhotoId id) {
-		return photoCache.get(id);
+		if (!isPagingPhotos()) {
+			return photoCache.get(id);
+		}
+
+		Photo result = pagedPhotoCache.get(id);
+		return result != null ? result : unsavedPagedOutPhotos.get(id);
 	}
 
 	/**
@@ -131,14 +251,26 @@ public class PhotoManager extends ObjectManager {
 	 * @methodproperties primitive
 	 */
 	protected void doAddPhoto(Photo myPhoto) {
-		photoCache.put(myPhoto.getId(), myPhoto);
+		photoIndex.update(myPhoto);
+		if (isPagingPhotos()) {
+			List<Photo> evictedPhotos = pagedPhotoCache.put(myPhoto);
+			for (Photo evictedPhoto : evictedPhotos) {
+				if (evictedPhoto.isDirty()) {
+					// changes must not get lost when the photo is paged out
+					unsavedPagedOutPhotos.put(evictedPhoto.getId(), evictedPhoto);
+					AsyncTaskExecutor.savePhotoAsync(evictedPhoto.getIdAsString());
+				}
+			}
+		} else {
+			photoCache.put(myPhoto);
+		}
 	}
 
 	/**
 	 * @methodtype get
 	 */
 	public final Photo getPhoto(String id) {
-		return getPhoto(PhotoId.getIdFromString(id));
+		return getPhoto(PhotoId.getKnownIdFromString(id));
 	}
 
 	/**
@@ -151,31 +283,141 @@ public class PhotoManager extends ObjectManager {
 	/**
 	 * @methodtype command
 	 *
-	 * Load all persisted photos. Executed when Wahlzeit is restarted.
+	 * Load all persisted photos. Executed when Wahlzeit is restarted. If photos are paged, only the index is built.
+	 * The photos are loaded in pages; when called within a fork-join pool, the pages are loaded in parallel. Returns
+	 * the number of loaded photos.
 	 */
-	public void loadPhotos() {
-		Collection<Photo> existingPhotos = ObjectifyService.run(new Work<Collection<Photo>>() {
+	public int loadPhotos() {
+		if (isPagingPhotos()) {
+			return indexPhotos();
+		}
+
+		List<com.googlecode.objectify.Key<Photo>> keys = ObjectifyService.run(
+				new Work<List<com.googlecode.objectify.Key<Photo>>>() {
 			@Override
-			public Collection<Photo> run() {
-				Collection<Photo> existingPhotos = new ArrayList<Photo>();
-				readObjects(existingPhotos, Photo.class);
-				return existingPhotos;
+			public List<com.googlecode.objectify.Key<Photo>> run() {
+				return OfyService.ofy().load().type(Photo.class).keys().list();
 			}
 		});
 
-		for (Photo photo : existingPhotos) {
-			if (!doHasPhoto(photo.getId())) {
-				log.config(LogBuilder.createSystemMessage().
-						addParameter("Load Photo with ID", photo.getIdAsString()).toString());
-				loadScaledImages(photo);
-				doAddPhoto(photo);
-			} else {
-				log.config(LogBuilder.createSystemMessage().
-						addParameter("Already loaded Photo", photo.getIdAsString()).toString());
+		List<LoadPhotoPageTask> pages = new ArrayList<LoadPhotoPageTask>();
+		for (int i = 0; i < keys.size(); i += LOAD_PAGE_SIZE) {
+			pages.add(new LoadPhotoPageTask(keys.subList(i, Math.min(i + LOAD_PAGE_SIZE, keys.size())), null));
+		}
+
+		return loadPhotoPages(pages);
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Adds photos that have already been loaded, e.g. from a ModelSnapshot, and loads their images. If photos are
+	 * paged, only the index is built. Returns the number of added photos.
+	 */
+	public int loadPhotos(List<Photo> photos) {
+		if (isPagingPhotos()) {
+			for (Photo photo : photos) {
+				photoIndex.update(photo);
+			}
+			return photos.size();
+		}
+
+		List<LoadPhotoPageTask> pages = new ArrayList<LoadPhotoPageTask>();
+		for (int i = 0; i < photos.size(); i += LOAD_PAGE_SIZE) {
+			pages.add(new LoadPhotoPageTask(null, photos.subList(i, Math.min(i + LOAD_PAGE_SIZE, photos.size()))));
+		}
+
+		return loadPhotoPages(pages);
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Runs the pages in parallel if called within a fork-join pool, else one after the other.
+	 */
+	protected int loadPhotoPages(List<LoadPhotoPageTask> pages) {
+		if (ForkJoinTask.inForkJoinPool()) {
+			ForkJoinTask.invokeAll(pages);
+		} else {
+			for (LoadPhotoPageTask page : pages) {
+				page.invoke();
+			}
+		}
+
+		int result = 0;
+		for (LoadPhotoPageTask page : pages) {
+			result += page.join();
+		}
+
+		log.info(LogBuilder.createSystemMessage().
+				addParameter("All photos loaded", result).
+				addParameter("pages", pages.size()).toString());
+		return result;
+	}
+
+	/**
+	 * Loads one page of photos with a single batch get, unless they have already been loaded, and adds those that
+	 * are not in memory yet.
+	 */
+	protected class LoadPhotoPageTask extends DatastoreTask<Integer> {
+
+		private static final long serialVersionUID = 42L; // any one does; class never serialized
+
+		protected final List<com.googlecode.objectify.Key<Photo>> keys;
+		protected final List<Photo> photos;
+
+		/**
+		 * @methodtype constructor
+		 */
+		protected LoadPhotoPageTask(List<com.googlecode.objectify.Key<Photo>> keys, List<Photo> photos) {
+			this.keys = keys;
+			this.photos = photos;
+		}
+
+		/**
+		 * @methodtype command
+		 */
+		@Override
+		protected Integer doCompute() {
+			Collection<Photo> page = photos != null ? photos : OfyService.ofy().load().keys(keys).values();
+			int result = 0;
+			for (Photo photo : page) {
+				if (!doHasPhoto(photo.getId())) {
+					log.config(LogBuilder.createSystemMessage().
+							addParameter("Load Photo with ID", photo.getIdAsString()).toString());
+					loadScaledImages(photo);
+					doAddPhoto(photo);
+					result++;
+				} else {
+					log.config(LogBuilder.createSystemMessage().
+							addParameter("Already loaded Photo", photo.getIdAsString()).toString());
+				}
 			}
+			return result;
 		}
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Builds the index of all persisted photos without keeping the photos in memory. Returns the number of photos.
+	 */
+	protected int indexPhotos() {
+		int result = ObjectifyService.run(new Work<Integer>() {
+			@Override
+			public Integer run() {
+				int result = 0;
+				for (Photo photo : OfyService.ofy().load().type(Photo.class).chunk(INDEX_CHUNK_SIZE).iterable()) {
+					photoIndex.update(photo);
+					result++;
+				}
+				return result;
+			}
+		});
 
-		log.info(LogBuilder.createSystemMessage().addMessage("All photos loaded.").toString());
+		log.info(LogBuilder.createSystemMessage().
+				addParameter("All photos indexed", result).toString());
+		return result;
 	}
 
 	/**
@@ -183,7 +425,11 @@ public class PhotoManager extends ObjectManager {
 	 * @methodproperty primitive
 	 */
 	protected boolean doHasPhoto(PhotoId id) {
-		return photoCache.containsKey(id);
+		if (!isPagingPhotos()) {
+			return photoCache.contains(id);
+		}
+
+		return pagedPhotoCache.contains(id) || unsavedPagedOutPhotos.containsKey(id);
 	}
 
 	/**
@@ -226,12 +472,32 @@ public class PhotoManager extends ObjectManager {
 		updateObject(photo);
 	}
 
+	/**
+	 * If tags are stored with the photo, the tag index has to be up to date before the photo is written.
+	 */
+	@Override
+	protected void updateObject(Persistent object) {
+		if (object instanceof Photo && !tagStorageMode.usesTagEntities()) {
+			updateTagIndex((Photo) object);
+		}
+		super.updateObject(object);
+		if (object instanceof Photo) {
+			Photo photo = (Photo) object;
+			photoIndex.update(photo);
+			if (!photo.isDirty()) {
+				unsavedPagedOutPhotos.remove(photo.getId(), photo);
+			}
+		}
+	}
+
 	@Override
 	protected void updateDependents(Persistent obj) {
 		if (obj instanceof Photo) {
 			Photo photo = (Photo) obj;
 			saveScaledImages(photo);
-			updateTags(photo);
+			if (tagStorageMode.usesTagEntities()) {
+				updateTags(photo);
+			}
 			UserManager userManager = UserManager.getInstance();
 			Client owner = userManager.getClientById(photo.getOwnerId());
 			userManager.saveClient(owner);
@@ -246,6 +512,57 @@ public class PhotoManager extends ObjectManager {
 		return tags;
 	}
 
+	/**
+	 * @methodtype helper
+	 *
+	 * Adds the ids of all photos that have the tag given as condition, e.g. "tg:watch", depending on the tag storage
+	 * mode either from the Tag entities or by a keys-only query on the tag index of the photos.
+	 */
+	public Collection<PhotoId> addPhotoIdsThatMatchCondition(Collection<PhotoId> photoIds, String condition) {
+		if (tagStorageMode.usesTagEntities()) {
+			List<Tag> tags = addTagsThatMatchCondition(new ArrayList<Tag>(), condition);
+			for (Tag tag : tags) {
+				photoIds.add(PhotoId.getIdFromString(tag.getPhotoId()));
+			}
+		} else {
+			log.config(LogBuilder.createSystemMessage().
+					addParameter("Datastore: load keys of photos with tag", condition).toString());
+			List<com.googlecode.objectify.Key<Photo>> keys = OfyService.ofy().load().type(Photo.class).
+					filter(Photo.TAG_INDEX, condition).keys().list();
+			List<com.googlecode.objectify.Key<Photo>> unmigratedKeys =
+					new ArrayList<com.googlecode.objectify.Key<Photo>>();
+			for (com.googlecode.objectify.Key<Photo> key : keys) {
+				if (key.getParent() == null) {
+					// photos in their own entity group are keyed by their photo id, see EntityGroups
+					photoIds.add(PhotoId.getIdFromInt((int) key.getId()));
+				} else {
+					unmigratedKeys.add(key);
+				}
+			}
+			addIdsOfUnmigratedPhotos(photoIds, unmigratedKeys);
+		}
+		return photoIds;
+	}
+
+	/**
+	 * @methodtype helper
+	 *
+	 * Photos that have not been moved to their own entity group yet, see EntityGroupMigration, still have an
+	 * auto-allocated key below the application root, so their photo id has to be read from the entities.
+	 */
+	protected void addIdsOfUnmigratedPhotos(Collection<PhotoId> photoIds,
+			List<com.googlecode.objectify.Key<Photo>> keys) {
+		if (keys.isEmpty()) {
+			return;
+		}
+
+		log.config(LogBuilder.createSystemMessage().
+				addParameter("Datastore: load photos not yet in their own entity group", keys.size()).toString());
+		for (Photo photo : OfyService.ofy().load().keys(keys).values()) {
+			photoIds.add(photo.getId());
+		}
+	}
+
 	/**
 	 * @methodtype command
 	 *
@@ -281,35 +598,143 @@ public class PhotoManager extends ObjectManager {
 	}
 
 	/**
-	 * Removes all tags of the Photo (obj) in the datastore that have been removed by the user and adds all new tags of
-	 * the photo to the datastore.
+	 * Brings the Tag entities of the photo in line with its current tags. Only tags that have been added since the last
+	 * tag write are written and only removed ones are deleted, both as one batch. If the tags did not change, e.g. when
+	 * only the praise of the photo was updated, the Datastore is not used at all. The persisted tags are kept with the
+	 * photo; they are only read if the photo does not know them yet, i.e. on its first save after loading.
 	 */
 	protected void updateTags(Photo photo) {
-		// delete all existing tags, for the case that some have been removed
-		deleteObjects(Tag.class, Tag.PHOTO_ID, photo.getId().asString());
-
-		// add all current tags to the datastore
 		Set<String> tags = new HashSet<String>();
 		photoTagCollector.collect(tags, photo);
-		for (Iterator<String> i = tags.iterator(); i.hasNext(); ) {
-			Tag tag = new Tag(i.next(), photo.getId().asString());
-			log.config(LogBuilder.createSystemMessage().addParameter("Writing Tag", tag.asString()).toString());
-			writeObject(tag);
+
+		Map<String, com.googlecode.objectify.Key<Tag>> persisted = photo.getPersistedTags();
+		if (persisted == null) {
+			persisted = readPersistedTags(photo);
+			photo.setPersistedTags(persisted);
 		}
+		if (persisted.keySet().equals(tags)) {
+			log.config(LogBuilder.createSystemMessage().
+					addParameter("Tags have not changed for photo", photo.getId().asString()).toString());
+			return;
+		}
+
+		List<com.googlecode.objectify.Key<Tag>> removedTags = new ArrayList<com.googlecode.objectify.Key<Tag>>();
+		for (Map.Entry<String, com.googlecode.objectify.Key<Tag>> entry : persisted.entrySet()) {
+			if (!tags.contains(entry.getKey())) {
+				removedTags.add(entry.getValue());
+			}
+		}
+
+		List<Tag> addedTags = new ArrayList<Tag>();
+		for (String text : tags) {
+			if (!persisted.containsKey(text)) {
+				addedTags.add(new Tag(text, photo.getId().asString()));
+			}
+		}
+
+		Map<String, com.googlecode.objectify.Key<Tag>> newPersisted =
+				new HashMap<String, com.googlecode.objectify.Key<Tag>>(persisted);
+		newPersisted.keySet().retainAll(tags);
+
+		log.config(LogBuilder.createSystemMessage().
+				addParameter("Updating tags of photo", photo.getId().asString()).
+				addParameter("added", addedTags.size()).
+				addParameter("removed", removedTags.size()).toString());
+		if (!addedTags.isEmpty()) {
+			OfyService.ofy().save().entities(addedTags).now();
+			for (Tag tag : addedTags) {
+				tag.resetWriteCount();
+				newPersisted.put(tag.getText(), com.googlecode.objectify.Key.create(tag));
+			}
+		}
+		if (!removedTags.isEmpty()) {
+			OfyService.ofy().delete().keys(removedTags).now();
+		}
+		photo.setPersistedTags(Collections.unmodifiableMap(newPersisted));
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Reads the keys of the Tag entities of the photo by their text from its entity group. Duplicates of former saves
+	 * are deleted on the way.
+	 */
+	protected Map<String, com.googlecode.objectify.Key<Tag>> readPersistedTags(Photo photo) {
+		Map<String, com.googlecode.objectify.Key<Tag>> result =
+				new HashMap<String, com.googlecode.objectify.Key<Tag>>();
+		List<Tag> tags = new ArrayList<Tag>();
+		readObjects(tags, Tag.class, EntityGroups.getPhotoKey(photo.getId()));
+		List<com.googlecode.objectify.Key<Tag>> duplicates = new ArrayList<com.googlecode.objectify.Key<Tag>>();
+		for (Tag tag : tags) {
+			com.googlecode.objectify.Key<Tag> key = com.googlecode.objectify.Key.create(tag);
+			if (result.containsKey(tag.getText())) {
+				duplicates.add(key);
+			} else {
+				result.put(tag.getText(), key);
+			}
+		}
+		if (!duplicates.isEmpty()) {
+			OfyService.ofy().delete().keys(duplicates).now();
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+	/**
+	 * Sets the tag index of the photo to all tags collected for it.
+	 */
+	protected void updateTagIndex(Photo photo) {
+		Set<String> tags = new HashSet<String>();
+		photoTagCollector.collect(tags, photo);
+		photo.setTagIndex(tags);
 	}
 
 	/**
 	 *
 	 */
 	public void savePhotos() throws IOException{
-		updateObjects(photoCache.values());
+		updateObjects(isPagingPhotos() ? pagedPhotoCache.values() : photoCache.values());
+		updateObjects(new ArrayList<Photo>(unsavedPagedOutPhotos.values()));
 	}
 
 	/**
 	 * @methodtype get
+	 *
+	 * Returns a read-only view of the cached photos.
 	 */
 	public Map<PhotoId, Photo> getPhotoCache() {
-		return photoCache;
+		return photoCache.asMap();
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns all cached photos; iterating is weakly consistent, so photos may be added or saved meanwhile. If photos
+	 * are paged, only the ones currently in memory are returned, use {@link #getPhotoIds()} to get all.
+	 */
+	public Collection<Photo> getPhotos() {
+		return isPagingPhotos() ? pagedPhotoCache.values() : photoCache.values();
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the ids of all photos, whether they are in memory or not.
+	 */
+	public Collection<PhotoId> getPhotoIds() {
+		return photoIndex.getPhotoIds();
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 *
+	 * Answers from the index, so the photo does not need to be paged in.
+	 */
+	public boolean isVisible(PhotoId id) {
+		if (photoIndex.contains(id)) {
+			return photoIndex.isVisible(id);
+		}
+		Photo photo = getPhoto(id);
+		return photo != null && photo.isVisible();
 	}
 
 	/**
@@ -330,7 +755,14 @@ public class PhotoManager extends ObjectManager {
 	 *
 	 */
 	public Photo getVisiblePhoto(PhotoFilter filter) {
-		filter.generateDisplayablePhotoIds();
+		return getVisiblePhoto(filter, null);
+	}
+
+	/**
+	 * Prefers photos the client has neither praised nor skipped.
+	 */
+	public Photo getVisiblePhoto(PhotoFilter filter, Client client) {
+		filter.generateDisplayablePhotoIds(client);
 		return getPhotoFromId(filter.getRandomDisplayablePhotoId());
 	}
 
@@ -352,14 +784,16 @@ public class PhotoManager extends ObjectManager {
 		assertIsNewPhoto(id);
 		doAddPhoto(photo);
 
-		GlobalsManager.getInstance().saveGlobals();
+		// the photo id is already persisted by its lease, so the globals are only saved from time to time
+		GlobalsCheckpointer.getInstance().recordChange();
 	}
 
 	/**
 	 * @methodtype assertion
 	 */
 	protected void assertIsNewPhoto(PhotoId id) {
-		if (hasPhoto(id)) {
+		// the photo index knows all photos, also the ones that are not in memory
+		if (doHasPhoto(id) || photoIndex.contains(id)) {
 			throw new IllegalStateException("Photo already exists!");
 		}
 	}
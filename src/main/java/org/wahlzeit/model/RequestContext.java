@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import org.wahlzeit.services.Language;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Objects that are looked up again and again while one request is handled: the client, the current photo, the owners
+ * of photos, and the language configuration of the client. The context is created for each request by the
+ * MainServlet and reached through {@link UserSession#getRequestContext()}; it must not be kept beyond the request,
+ * as other requests may change the objects in the meantime.
+ *
+ * @review
+ */
+public class RequestContext {
+
+	/**
+	 *
+	 */
+	protected final UserSession userSession;
+
+	/**
+	 *
+	 */
+	protected Client client;
+
+	/**
+	 * The photo is looked up again when the photo id of the session changes
+	 */
+	protected PhotoId photoId;
+	protected Photo photo;
+	protected boolean isPhotoLoaded = false;
+
+	/**
+	 * Owners by user id, null values stand for owners that do not exist
+	 */
+	protected Map<String, User> owners = new HashMap<String, User>();
+
+	/**
+	 * The configuration is looked up again when the language of the client changes
+	 */
+	protected ModelConfig modelConfig;
+	protected Language modelConfigLanguage;
+
+	/**
+	 * @methodtype constructor
+	 */
+	public RequestContext(UserSession userSession) {
+		this.userSession = userSession;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public Client getClient() {
+		if (client == null) {
+			client = userSession.loadClient();
+		}
+		return client;
+	}
+
+	/**
+	 * @methodtype set
+	 *
+	 * Forgets the client, e.g. after a login or logout.
+	 */
+	public void resetClient() {
+		client = null;
+		modelConfig = null;
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the photo of the session's photo id, or null if there is none.
+	 */
+	public Photo getPhoto() {
+		PhotoId currentPhotoId = userSession.getPhotoId();
+		if (!isPhotoLoaded || currentPhotoId != photoId) {
+			photoId = currentPhotoId;
+			photo = PhotoManager.getInstance().getPhoto(currentPhotoId);
+			isPhotoLoaded = true;
+		}
+		return photo;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public User getPhotoOwner(Photo photo) {
+		String ownerId = photo.getOwnerId();
+		if (!owners.containsKey(ownerId)) {
+			owners.put(ownerId, UserManager.getInstance().getUserById(ownerId));
+		}
+		return owners.get(ownerId);
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public ModelConfig getModelConfig() {
+		Language language = getClient().getLanguage();
+		if (modelConfig == null || language != modelConfigLanguage) {
+			modelConfig = getClient().getLanguageConfiguration();
+			modelConfigLanguage = language;
+		}
+		return modelConfig;
+	}
+
+}
@@ -6,7 +6,6 @@ import com.googlecode.objectify.annotation.Id;
 import com.googlecode.objectify.annotation.Index;
 import com.googlecode.objectify.annotation.Parent;
 import org.wahlzeit.services.DataObject;
-import org.wahlzeit.services.ObjectManager;
 
 /**
  * A class to hold one tag.
@@ -26,7 +25,7 @@ public class Tag extends DataObject {
 	@Index
 	private String photoId;
 	@Parent
-	Key parent = ObjectManager.applicationRootKey;
+	Key parent;
 
 	public Tag() {
 		// do nothing, necessary for Google Datastore
@@ -35,6 +34,7 @@ public class Tag extends DataObject {
 	public Tag(String text, String photoId) {
 		this.text = text;
 		this.photoId = photoId;
+		this.parent = EntityGroups.getTagParent(photoId);
 		incWriteCount();
 	}
 
@@ -46,6 +46,24 @@ public class Tag extends DataObject {
 		return photoId;
 	}
 
+	/**
+	 * @methodtype boolean-query
+	 */
+	boolean isInPhotoEntityGroup() {
+		return EntityGroups.getTagParent(photoId).equals(parent);
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Moves the tag into the entity group of its photo. The entity needs to be saved afterwards and the entity with
+	 * the former key deleted.
+	 */
+	void moveToPhotoEntityGroup() {
+		parent = EntityGroups.getTagParent(photoId);
+		incWriteCount();
+	}
+
 	public String asString() {
 		return "PhotoId: " + photoId + ", Tag: " + text;
 	}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import org.wahlzeit.services.LogBuilder;
+import org.wahlzeit.services.ObjectManager;
+import org.wahlzeit.services.OfyService;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Moves existing {@link Tag} entities into the tag index of their photos, see {@link TagStorageMode#PHOTO_PROPERTY}.
+ * Works in batches: the tags of a batch are added to the index of their photos, the photos are saved, and the tags
+ * are deleted afterwards. Adding a tag twice has no effect, so an interrupted batch is simply migrated again.
+ *
+ * @review
+ */
+public class TagIndexMigration extends ObjectManager {
+
+	private static final Logger log = Logger.getLogger(TagIndexMigration.class.getName());
+
+	/**
+	 *
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 200;
+
+	/**
+	 *
+	 */
+	protected final int batchSize;
+
+	/**
+	 *
+	 */
+	public TagIndexMigration() {
+		this(DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * @methodtype constructor
+	 */
+	public TagIndexMigration(int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("batch size must be positive");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Migrates tags batch by batch until nothing is left or the deadline (in milliseconds since the epoch) has passed.
+	 * Returns the number of migrated tags.
+	 */
+	public int migrate(long deadline) {
+		int result = 0;
+		int migrated;
+		do {
+			migrated = migrateBatch();
+			result += migrated;
+		} while (migrated == batchSize && System.currentTimeMillis() < deadline);
+
+		log.info(LogBuilder.createSystemMessage().
+				addAction("migrate tags into tag index").
+				addParameter("number of migrated tags", result).toString());
+		return result;
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	public boolean hasTagsToMigrate() {
+		return OfyService.ofy().load().type(Tag.class).keys().first().now() != null;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected int migrateBatch() {
+		List<Tag> batch = OfyService.ofy().load().type(Tag.class).limit(batchSize).list();
+		if (batch.isEmpty()) {
+			return 0;
+		}
+
+		Set<Photo> photos = new LinkedHashSet<Photo>();
+		PhotoManager photoManager = PhotoManager.getInstance();
+		for (Tag tag : batch) {
+			Photo photo = photoManager.getPhoto(tag.getPhotoId());
+			if (photo != null) {
+				photo.addToTagIndex(tag.getText());
+				photos.add(photo);
+			} else {
+				log.config(LogBuilder.createSystemMessage().
+						addParameter("dropping tag of unknown photo", tag.asString()).toString());
+			}
+		}
+
+		List<Photo> dirtyPhotos = new ArrayList<Photo>();
+		for (Photo photo : photos) {
+			if (photo.isDirty()) {
+				dirtyPhotos.add(photo);
+			}
+		}
+
+		// the photos itself have not changed, so there is no need to save images or owners
+		OfyService.ofy().save().entities(dirtyPhotos).now();
+		for (Photo photo : dirtyPhotos) {
+			photo.resetWriteCount();
+		}
+		OfyService.ofy().delete().entities(batch).now();
+
+		return batch.size();
+	}
+
+}
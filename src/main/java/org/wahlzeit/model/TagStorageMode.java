@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import org.wahlzeit.services.LogBuilder;
+
+import java.util.logging.Logger;
+
+/**
+ * Defines how the tags collected by the {@link PhotoTagCollector} are persisted. Either as one {@link Tag} entity
+ * per tag and photo, or as a single indexed multi-valued property of the {@link Photo} itself. The mode is configured
+ * with the system property {@link #SYSTEM_PROPERTY} in appengine-web.xml.
+ *
+ * @review
+ */
+public enum TagStorageMode {
+
+	/**
+	 * One Tag entity per tag, rewritten whenever the photo is saved
+	 */
+	TAG_ENTITIES,
+
+	/**
+	 * All tags of a photo are stored in its indexed tag property, so a photo is written as one entity
+	 */
+	PHOTO_PROPERTY;
+
+	/**
+	 *
+	 */
+	public static final String SYSTEM_PROPERTY = "org.wahlzeit.tagStorageMode";
+
+	private static final Logger log = Logger.getLogger(TagStorageMode.class.getName());
+
+	/**
+	 * @methodtype get
+	 */
+	public static TagStorageMode getConfiguredMode() {
+		String value = System.getProperty(SYSTEM_PROPERTY, TAG_ENTITIES.name());
+		try {
+			return valueOf(value.trim().toUpperCase());
+		} catch (IllegalArgumentException ex) {
+			log.warning(LogBuilder.createSystemMessage().
+					addParameter("unknown tag storage mode", value).
+					addParameter("using", TAG_ENTITIES.name()).toString());
+			return TAG_ENTITIES;
+		}
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	public boolean usesTagEntities() {
+		return this == TAG_ENTITIES;
+	}
+
+}
@@ -24,10 +24,10 @@ import com.googlecode.objectify.ObjectifyService;
 import com.googlecode.objectify.Work;
 import org.wahlzeit.services.EmailAddress;
 import org.wahlzeit.services.LogBuilder;
+import org.wahlzeit.services.OfyService;
 import org.wahlzeit.services.mailing.EmailService;
 import org.wahlzeit.services.mailing.EmailServiceManager;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -52,6 +52,10 @@ public class UserManager extends ClientManager {
 			"guest#"
 	);
 
+	/**
+	 * Number of users read per Datastore round trip when loading all users
+	 */
+	protected static final int LOAD_CHUNK_SIZE = 200;
 
 	/**
 	 *
@@ -85,11 +89,9 @@ public class UserManager extends ClientManager {
 		ObjectifyService.run(new Work<Void>() {
 			@Override
 			public Void run() {
-				Collection<User> existingUser = new ArrayList<User>();
-				readObjects(existingUser, User.class);
-
-				for (User user : existingUser) {
-					if (!hasClientById(user.getId())) {
+				// users are read in chunks, so only the cached ones stay in memory if there is an inactive client cache
+				for (User user : OfyService.ofy().load().type(User.class).chunk(LOAD_CHUNK_SIZE).iterable()) {
+					if (getClientInMemory(user.getId()) == null) {
 						doAddClient(user);
 					} else {
 						log.config(LogBuilder.createSystemMessage().addParameter("user has been loaded", user.getId())
@@ -103,6 +105,22 @@ public class UserManager extends ClientManager {
 		log.info(LogBuilder.createSystemMessage().addMessage("loaded all clients").toString());
 	}
 
+	/**
+	 * @methodtype command
+	 *
+	 * Adds users that have already been loaded, e.g. from a ModelSnapshot, instead of querying them.
+	 */
+	public void addLoadedUsers(Collection<User> users) {
+		for (User user : users) {
+			if (getClientInMemory(user.getId()) == null) {
+				doAddClient(user);
+			}
+		}
+
+		log.info(LogBuilder.createSystemMessage().
+				addParameter("added loaded users", users.size()).toString());
+	}
+
 	/**
 	 *
 	 */
@@ -139,19 +157,8 @@ public class UserManager extends ClientManager {
 	 *
 	 */
 	public User getUserByEmailAddress(EmailAddress emailAddress) {
-		User result;
-		result = readObject(User.class, User.EMAIL_ADDRESS, emailAddress.asString());
-
-		if (result != null) {
-			User current = getUserById(result.getId());
-			if (current == null) {
-				doAddClient(result);
-			} else {
-				result = current;
-			}
-		}
-
-		return result;
+		String userId = getClientIdByEmailAddress(emailAddress);
+		return userId == null ? null : getUserById(userId);
 	}
 
 	/**
@@ -23,9 +23,11 @@ package org.wahlzeit.model;
 import org.wahlzeit.services.Language;
 import org.wahlzeit.services.Session;
 import org.wahlzeit.utils.HtmlUtil;
+import org.wahlzeit.utils.SortedIntSet;
 
 import javax.servlet.http.HttpSession;
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -35,7 +37,10 @@ import java.util.logging.Logger;
 /**
  * Wrapper class for {@link HttpSession} to provide a readable interface for Wahlzeit.
  *
- * {@link HttpSession}s are managed automatically by Google App Engine.
+ * {@link HttpSession}s are managed automatically by Google App Engine. Each attribute set on them marks the whole
+ * session to be serialized and written to memcache and the Datastore, so a user session lives for one request only
+ * and buffers the attributes: they are read from the {@link HttpSession} once, and only the changed ones are written
+ * back by {@link #flush()} at the end of the request.
  */
 public class UserSession extends Session implements Serializable {
 
@@ -58,15 +63,37 @@ public class UserSession extends Session implements Serializable {
 
 	protected HttpSession httpSession;
 
+	/**
+	 * Attributes read or written during the request; a null value stands for a missing attribute
+	 */
+	protected Map<String, Object> attributes = new HashMap<String, Object>();
+
+	/**
+	 * Attributes as they were read from the http session; a null value stands for a missing attribute
+	 */
+	protected Map<String, Object> loadedAttributes = new HashMap<String, Object>();
+
+	/**
+	 * Names of the attributes that have been set, and of the attributes that have been modified in place; the latter
+	 * are always written back, as their loaded value is the modified object
+	 */
+	protected Set<String> dirtyAttributes = new HashSet<String>();
+	protected Set<String> modifiedAttributes = new HashSet<String>();
+
+	/**
+	 *
+	 */
+	protected transient RequestContext requestContext;
+
 	/**
 	 *
 	 */
 	public UserSession(String myName, String mySiteUrl, HttpSession myHttpSession, String myLanguage) {
 		httpSession = myHttpSession;
 		initialize(myName);
-		if (httpSession.getAttribute(INITIALIZED) == null) {
-			httpSession.setAttribute(SITE_URL, mySiteUrl);
-			httpSession.setAttribute(PHOTO_FILTER, PhotoFactory.getInstance().createPhotoFilter());
+		if (getAttribute(INITIALIZED) == null) {
+			setAttribute(SITE_URL, mySiteUrl);
+			setAttribute(PHOTO_FILTER, PhotoFactory.getInstance().createPhotoFilter());
 
 			setClient(new Guest());
 			try {
@@ -79,7 +106,7 @@ public class UserSession extends Session implements Serializable {
 			clearDisplayedPhotos();
 			clearPraisedPhotos();
 			clearSavedArgs();
-			httpSession.setAttribute(INITIALIZED, INITIALIZED);
+			setAttribute(INITIALIZED, INITIALIZED);
 
 		}
 	}
@@ -88,10 +115,10 @@ public class UserSession extends Session implements Serializable {
 	 *
 	 */
 	public void clearDisplayedPhotos() {
-		PhotoFilter photoFilter = (PhotoFilter) httpSession.getAttribute(PHOTO_FILTER);
+		PhotoFilter photoFilter = (PhotoFilter) getAttribute(PHOTO_FILTER);
 		if (photoFilter != null) {
 			photoFilter.clear();
-			httpSession.setAttribute(PHOTO_FILTER, photoFilter);
+			markDirty(PHOTO_FILTER);
 		} else {
 			log.warning("No PhotoFilter found in HttpSession to clear.");
 		}
@@ -101,14 +128,14 @@ public class UserSession extends Session implements Serializable {
 	 *
 	 */
 	public void clearPraisedPhotos() {
-		httpSession.setAttribute(PRAISED_PHOTOS, new HashSet<Photo>());
+		setAttribute(PRAISED_PHOTOS, new SortedIntSet());
 	}
 
 	/**
 	 * @methodtype init
 	 */
 	public void clearSavedArgs() {
-		httpSession.setAttribute(SAVED_ARGS, new HashMap<String, Object>());
+		setAttribute(SAVED_ARGS, new HashMap<String, Object>());
 	}
 
 	/**
@@ -123,39 +150,68 @@ public class UserSession extends Session implements Serializable {
 	 * @methodtype get
 	 */
 	public String getSiteUrl() {
-		return (String) httpSession.getAttribute(SITE_URL);
+		return (String) getAttribute(SITE_URL);
 	}
 
 	@Override
 	protected void notifyNameChanged() {
-		httpSession.setAttribute(Session.NAME, super.getName());
+		setAttribute(Session.NAME, super.getName());
 	}
 
 	/**
 	 * @methodtype convert Returns some signifier of current user
 	 */
 	public String getClientId() {
-		return (String) httpSession.getAttribute(CLIENT_ID);
+		return (String) getAttribute(CLIENT_ID);
 	}
 
-	@Override
-	protected void notifyProcessingTimeChanged() {
-		httpSession.setAttribute(Session.PROCESSING_TIME, super.getProcessingTime());
+	/**
+	 * @methodtype get
+	 */
+	public Client getClient() {
+		return getRequestContext().getClient();
 	}
 
 	/**
 	 * @methodtype get
+	 *
+	 * Looks up the client of the session; use {@link #getClient()}, which remembers it for the request.
 	 */
-	public Client getClient() {
-		String clientName = (String) httpSession.getAttribute(CLIENT_ID);
-		return UserManager.getInstance().getClientById(clientName);
+	protected Client loadClient() {
+		String clientName = (String) getAttribute(CLIENT_ID);
+		Client result = UserManager.getInstance().getClientById(clientName);
+		if (result == null) {
+			// the transient guest of the session has expired on this instance
+			result = new Guest();
+			setClient(result);
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the context of the current request, which is created on first use if the servlet did not set one.
+	 */
+	public RequestContext getRequestContext() {
+		if (requestContext == null) {
+			requestContext = new RequestContext(this);
+		}
+		return requestContext;
+	}
+
+	/**
+	 * @methodtype set
+	 */
+	public void setRequestContext(RequestContext requestContext) {
+		this.requestContext = requestContext;
 	}
 
 	/**
 	 * @methodtype set
 	 */
 	public void setClient(Client newClient) {
-		String previousClientId = (String) httpSession.getAttribute(CLIENT_ID);
+		String previousClientId = (String) getAttribute(CLIENT_ID);
 		if (previousClientId != null) {
 			Client previousClient = UserManager.getInstance().getClientById(previousClientId);
 			if (previousClient instanceof Guest) {
@@ -163,38 +219,81 @@ public class UserSession extends Session implements Serializable {
 			}
 		}
 
-		httpSession.setAttribute(CLIENT_ID, newClient.getId());
+		setAttribute(CLIENT_ID, newClient.getId());
 		UserManager.getInstance().addHttpSessionIdToClientMapping(httpSession.getId(), newClient);
+		getRequestContext().resetClient();
 	}
 
 	/**
 	 *
 	 */
 	public PhotoFilter getPhotoFilter() {
-		return (PhotoFilter) httpSession.getAttribute(PHOTO_FILTER);
+		return (PhotoFilter) getAttribute(PHOTO_FILTER);
 	}
 
 	/**
 	 * @methodtype boolean query
 	 */
 	public boolean hasPraisedPhoto(Photo photo) {
-		Set praisedPhotos = (Set) httpSession.getAttribute(PRAISED_PHOTOS);
-		if (praisedPhotos != null) {
-			return praisedPhotos.contains(photo);
-		} else {
-			log.warning("Found no set of praised Photos to search for Photo.");
-			return false;
+		return getPraisedPhotoIds().contains(photo.getId().asInt());
+	}
+
+	/**
+	 * @methodtype set
+	 */
+	public void addPraisedPhoto(Photo photo) {
+		if (getPraisedPhotoIds().add(photo.getId().asInt())) {
+			markDirty(PRAISED_PHOTOS);
 		}
 	}
 
+	/**
+	 * @methodtype get
+	 *
+	 * Sessions from before the praised photos were kept as ids start with an empty set.
+	 */
+	protected SortedIntSet getPraisedPhotoIds() {
+		Object praisedPhotoIds = getAttribute(PRAISED_PHOTOS);
+		if (!(praisedPhotoIds instanceof SortedIntSet)) {
+			log.warning("Found no set of praised photo ids, starting with an empty one.");
+			clearPraisedPhotos();
+			praisedPhotoIds = getAttribute(PRAISED_PHOTOS);
+		}
+		return (SortedIntSet) praisedPhotoIds;
+	}
+
+	/**
+	 * @methodtype set
+	 */
+	public void addSkippedPhotoId(PhotoId photoId) {
+		getPhotoFilter().addSkippedPhotoId(photoId);
+		markDirty(PHOTO_FILTER);
+	}
+
+	/**
+	 * @methodtype set
+	 */
+	public void setPhotoFilterUserName(String userName) {
+		getPhotoFilter().setUserName(userName);
+		markDirty(PHOTO_FILTER);
+	}
+
+	/**
+	 * @methodtype set
+	 */
+	public void setPhotoFilterTags(Tags tags) {
+		getPhotoFilter().setTags(tags);
+		markDirty(PHOTO_FILTER);
+	}
+
 	/**
 	 *
 	 */
 	public void addProcessedPhoto(Photo photo) {
-		PhotoFilter photoFilter = (PhotoFilter) httpSession.getAttribute(PHOTO_FILTER);
+		PhotoFilter photoFilter = (PhotoFilter) getAttribute(PHOTO_FILTER);
 		if (photoFilter != null) {
 			photoFilter.addProcessedPhoto(photo);
-			httpSession.setAttribute(PHOTO_FILTER, photoFilter);
+			markDirty(PHOTO_FILTER);
 		} else {
 			log.warning("No PhotoFilter found in HttpSession to add Photo.");
 		}
@@ -204,70 +303,70 @@ public class UserSession extends Session implements Serializable {
 	 * @methodtype get
 	 */
 	public String getHeading() {
-		return (String) httpSession.getAttribute(HEADING);
+		return (String) getAttribute(HEADING);
 	}
 
 	/**
 	 * @methodtype set
 	 */
 	public void setHeading(String myHeading) {
-		httpSession.setAttribute(HEADING, myHeading);
+		setAttribute(HEADING, myHeading);
 	}
 
 	/**
 	 * @methodtype get
 	 */
 	public String getMessage() {
-		return (String) httpSession.getAttribute(MESSAGE);
+		return (String) getAttribute(MESSAGE);
 	}
 
 	/**
 	 * @methodtype set
 	 */
 	public void setMessage(String myMessage) {
-		httpSession.setAttribute(MESSAGE, HtmlUtil.asP(myMessage));
+		setAttribute(MESSAGE, HtmlUtil.asP(myMessage));
 	}
 
 	/**
 	 * @methodtype set
 	 */
 	public void setTwoLineMessage(String msg1, String msg2) {
-		httpSession.setAttribute(MESSAGE, HtmlUtil.asP(msg1) + HtmlUtil.asP(msg2));
+		setAttribute(MESSAGE, HtmlUtil.asP(msg1) + HtmlUtil.asP(msg2));
 	}
 
 	/**
 	 * @methodtype set
 	 */
 	public void setThreeLineMessage(String msg1, String msg2, String msg3) {
-		httpSession.setAttribute(MESSAGE, HtmlUtil.asP(msg1) + HtmlUtil.asP(msg2) + HtmlUtil.asP(msg3));
+		setAttribute(MESSAGE, HtmlUtil.asP(msg1) + HtmlUtil.asP(msg2) + HtmlUtil.asP(msg3));
 	}
 
 	/**
 	 * @methodtype get
 	 */
 	public PhotoId getPhotoId() {
-		return (PhotoId) httpSession.getAttribute(Photo.ID);
+		return (PhotoId) getAttribute(Photo.ID);
 	}
 
 	/**
 	 * @methodtype set
 	 */
 	public void setPhotoId(PhotoId newPhotoId) {
-		httpSession.setAttribute(Photo.ID, newPhotoId);
+		setAttribute(Photo.ID, newPhotoId);
 	}
 
 	/**
 	 * @methodtype get
 	 */
 	public PhotoCase getPhotoCase() {
-		return (PhotoCase) httpSession.getAttribute(PHOTO_CASE);
+		return (PhotoCase) getAttribute(PHOTO_CASE);
 	}
 
 	/**
 	 * @methodtype set
 	 */
 	public void setPhotoCase(PhotoCase photoCase) {
-		httpSession.setAttribute(PHOTO_CASE, photoCase);
+		setAttribute(PHOTO_CASE, photoCase);
 	}
 
 	/**
@@ -287,7 +386,7 @@ public class UserSession extends Session implements Serializable {
 	 * @methodtype get
 	 */
 	public Object getSavedArg(String key) {
-		Map<String, Object> savedArgs = (Map<String, Object>) httpSession.getAttribute(SAVED_ARGS);
+		Map<String, Object> savedArgs = (Map<String, Object>) getAttribute(SAVED_ARGS);
 		return savedArgs.get(key);
 	}
 
@@ -333,16 +432,111 @@ public class UserSession extends Session implements Serializable {
 	 * @methodtype set
 	 */
 	public void setSavedArg(String key, Object value) {
-		Map<String, Object> savedArgs = getSavedArgs();
+		Map<String, Object> savedArgs = (Map<String, Object>) getAttribute(SAVED_ARGS);
 		savedArgs.put(key, value);
-		httpSession.setAttribute(SAVED_ARGS, savedArgs);
+		markDirty(SAVED_ARGS);
 	}
 
 	/**
 	 * @methodtype get
+	 *
+	 * Returns the saved arguments read-only; they are changed with {@link #setSavedArg(String, Object)}.
 	 */
 	public Map<String, Object> getSavedArgs() {
-		return (Map<String, Object>) httpSession.getAttribute(SAVED_ARGS);
+		return Collections.unmodifiableMap((Map<String, Object>) getAttribute(SAVED_ARGS));
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	protected Object getAttribute(String name) {
+		if (attributes.containsKey(name)) {
+			return attributes.get(name);
+		}
+
+		Object result = httpSession.getAttribute(name);
+		attributes.put(name, result);
+		loadedAttributes.put(name, result);
+		return result;
+	}
+
+	/**
+	 * @methodtype set
+	 *
+	 * Buffers the attribute until {@link #flush()}; setting an equal value does not mark it as changed.
+	 */
+	protected void setAttribute(String name, Object value) {
+		Object oldValue = getAttribute(name);
+		if (oldValue == null ? value == null : oldValue.equals(value)) {
+			return;
+		}
+
+		attributes.put(name, value);
+		dirtyAttributes.add(name);
+	}
+
+	/**
+	 * @methodtype set
+	 *
+	 * Marks an attribute as changed whose value has been modified in place.
+	 */
+	protected void markDirty(String name) {
+		modifiedAttributes.add(name);
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	public boolean isDirty() {
+		if (!modifiedAttributes.isEmpty()) {
+			return true;
+		}
+		for (String name : dirtyAttributes) {
+			if (isChanged(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 *
+	 * Returns true if the attribute has been modified in place or its value differs from the one that was loaded.
+	 */
+	protected boolean isChanged(String name) {
+		if (modifiedAttributes.contains(name)) {
+			return true;
+		}
+		Object value = attributes.get(name);
+		Object loadedValue = loadedAttributes.get(name);
+		return (value == null) ? loadedValue != null : !value.equals(loadedValue);
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Writes the changed attributes back to the http session, each one once; an attribute that has been set back to
+	 * its loaded value is not written.
+	 */
+	public void flush() {
+		Set<String> names = new HashSet<String>(dirtyAttributes);
+		names.addAll(modifiedAttributes);
+		for (String name : names) {
+			if (!isChanged(name)) {
+				continue;
+			}
+
+			Object value = attributes.get(name);
+			if (value == null) {
+				httpSession.removeAttribute(name);
+			} else {
+				httpSession.setAttribute(name, value);
+			}
+			loadedAttributes.put(name, value);
+		}
+		dirtyAttributes.clear();
+		modifiedAttributes.clear();
 	}
 
 }
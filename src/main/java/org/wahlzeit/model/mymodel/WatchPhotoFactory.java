@@ -20,10 +20,14 @@
 
 package org.wahlzeit.model.mymodel;
 
+import org.wahlzeit.model.Photo;
 import org.wahlzeit.model.PhotoFactory;
 import org.wahlzeit.model.PhotoId;
 import org.wahlzeit.services.LogBuilder;
 
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -82,7 +86,7 @@ public class WatchPhotoFactory extends PhotoFactory {
      */
     @Override
     public WatchPhoto createPhoto() {
-        return new WatchPhoto();
+        return new WatchPhoto(PhotoId.getNextId());
     }
 
     /**
@@ -95,19 +99,35 @@ public class WatchPhotoFactory extends PhotoFactory {
 
     /**
      * Loads a photo. The Java object is loaded from the Google Datastore, the Images in all sizes are loaded from the
-     * Google Cloud storage.
+     * image storage. Returns null if there is no such photo or if it is no WatchPhoto.
      */
     @Override
     public WatchPhoto loadPhoto(PhotoId id) {
-	   /* Photo result =
-                OfyService.ofy().load().type(WatchPhoto.class).ancestor(KeyFactory.createKey("Application", "Wahlzeit")).filter(Photo.ID, id).first().now();
-        for (PhotoSize size : PhotoSize.values()) {
-            GcsFilename gcsFilename = new GcsFilename("picturebucket", filename);
-
-
+        Photo result = super.loadPhoto(id);
+        if (result != null && !(result instanceof WatchPhoto)) {
+            log.warning(LogBuilder.createSystemMessage().
+                    addParameter("loaded photo is no WatchPhoto", id.asString()).toString());
+            return null;
+        }
+        return (WatchPhoto) result;
+    }
 
-        }*/
-        return null;
+    /**
+     * Loads several photos with one multi-get, see {@link PhotoFactory#loadPhotos(Collection)}. Photos that are no
+     * WatchPhotos are left out.
+     */
+    @Override
+    public Map<PhotoId, Photo> loadPhotos(Collection<PhotoId> ids) {
+        Map<PhotoId, Photo> result = super.loadPhotos(ids);
+        for (Iterator<Photo> i = result.values().iterator(); i.hasNext(); ) {
+            Photo photo = i.next();
+            if (!(photo instanceof WatchPhoto)) {
+                log.warning(LogBuilder.createSystemMessage().
+                        addParameter("loaded photo is no WatchPhoto", photo.getIdAsString()).toString());
+                i.remove();
+            }
+        }
+        return result;
     }
 
 }
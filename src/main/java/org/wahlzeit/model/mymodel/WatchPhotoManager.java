@@ -21,6 +21,7 @@
 package org.wahlzeit.model.mymodel;
 
 import org.wahlzeit.model.Photo;
+import org.wahlzeit.model.PhotoFactory;
 import org.wahlzeit.model.PhotoId;
 import org.wahlzeit.model.PhotoManager;
 
@@ -39,7 +40,7 @@ public class WatchPhotoManager extends PhotoManager {
 
 
     /**
-     *
+     * Like in PhotoManager, photos are only loaded if the photo index knows them
      */
     @Override
     public Photo getPhotoFromId(PhotoId id) {
@@ -49,7 +50,7 @@ public class WatchPhotoManager extends PhotoManager {
 
         Photo result = doGetPhotoFromId(id);
 
-        if (result == null) {
+        if (result == null && photoIndex.contains(id)) {
             result = WatchPhotoFactory.getInstance().loadPhoto(id);
             if (result != null) {
                 doAddPhoto(result);
@@ -58,4 +59,12 @@ public class WatchPhotoManager extends PhotoManager {
 
         return result;
     }
+
+    /**
+     * @methodtype get
+     */
+    @Override
+    protected PhotoFactory getPhotoFactory() {
+        return WatchPhotoFactory.getInstance();
+    }
 }
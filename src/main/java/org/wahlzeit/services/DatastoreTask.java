@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.services;
+
+import com.google.apphosting.api.ApiProxy;
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.Work;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork-join task that may use the datastore on any worker thread. App Engine APIs only work on threads that have the
+ * environment of a request, and Objectify needs a context per thread, so the task takes over the environment of the
+ * thread that created it and runs in its own Objectify context.
+ *
+ * @review
+ */
+public abstract class DatastoreTask<V> extends RecursiveTask<V> {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 42L; // any one does; class never serialized
+
+	/**
+	 *
+	 */
+	protected final ApiProxy.Environment environment = ApiProxy.getCurrentEnvironment();
+
+	/**
+	 * @methodtype command
+	 */
+	@Override
+	protected final V compute() {
+		ApiProxy.Environment oldEnvironment = ApiProxy.getCurrentEnvironment();
+		boolean isOtherEnvironment = environment != null && environment != oldEnvironment;
+		if (isOtherEnvironment) {
+			ApiProxy.setEnvironmentForCurrentThread(environment);
+		}
+
+		try {
+			return ObjectifyService.run(new Work<V>() {
+				@Override
+				public V run() {
+					return doCompute();
+				}
+			});
+		} finally {
+			if (isOtherEnvironment) {
+				if (oldEnvironment != null) {
+					ApiProxy.setEnvironmentForCurrentThread(oldEnvironment);
+				} else {
+					ApiProxy.clearEnvironmentForCurrentThread();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected abstract V doCompute();
+
+}
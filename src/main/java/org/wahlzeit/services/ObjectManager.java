@@ -34,7 +34,8 @@ import java.util.logging.Logger;
 public abstract class ObjectManager {
 
 	/**
-	 * All objects are now saved under this root key. In case of multi-tenancy this may change to several keys.
+	 * All objects used to be saved under this root key, which put the whole application into one entity group. New
+	 * entities form their own entity groups (see EntityGroups); the key is only kept to find not yet migrated ones.
 	 */
 	public static final Key applicationRootKey = KeyFactory.createKey("Application", "Wahlzeit");
 
@@ -87,8 +88,7 @@ public abstract class ObjectManager {
 				addMessage("Load Type " + type.toString() + " with parameter " +
 						parameterName + " == " + value + " from datastore.").toString());
 
-		return OfyService.ofy().load().type(type).ancestor(applicationRootKey).filter(parameterName, value).first()
-				.now();
+		return OfyService.ofy().load().type(type).filter(parameterName, value).first().now();
 	}
 
 	/**
@@ -100,7 +100,7 @@ public abstract class ObjectManager {
 
 		log.config(LogBuilder.createSystemMessage().
 				addParameter("Datastore: load all entities of type", type.getName()).toString());
-		List<E> objects = OfyService.ofy().load().type(type).ancestor(applicationRootKey).list();
+		List<E> objects = OfyService.ofy().load().type(type).list();
 		log.config(LogBuilder.createSystemMessage().
 				addParameter("Datastore: number of loaded objects", objects.size()).toString());
 		result.addAll(objects);
@@ -119,8 +119,26 @@ public abstract class ObjectManager {
 		log.info(LogBuilder.createSystemMessage().
 				addMessage("Datastore: Load all Entities of type " + type.toString() + " where parameter "
 						+ propertyName + " = " + value.toString() + " from datastore.").toString());
-		List<E> objects = OfyService.ofy().load().type(type).
-				ancestor(applicationRootKey).filter(propertyName, value).list();
+		List<E> objects = OfyService.ofy().load().type(type).filter(propertyName, value).list();
+		log.config(LogBuilder.createSystemMessage().
+				addParameter("Datastore: number of loaded objects", objects.size()).toString());
+		result.addAll(objects);
+	}
+
+	/**
+	 * Reads all Entities of the specified type within the entity group of the given ancestor, e.g.
+	 * readObjects(Tag.class, EntityGroups.getPhotoKey(photoId)) to get all tags of one photo. In contrast to the
+	 * other queries, ancestor queries are strongly consistent.
+	 */
+	protected <E> void readObjects(Collection<E> result, Class<E> type, Key ancestor) {
+		assertIsNonNullArgument(result, "result");
+		assertIsNonNullArgument(type, "type");
+		assertIsNonNullArgument(ancestor, "ancestor");
+
+		log.config(LogBuilder.createSystemMessage().
+				addParameter("Datastore: load all entities of type", type.getName()).
+				addParameter("ancestor", ancestor).toString());
+		List<E> objects = OfyService.ofy().load().type(type).ancestor(ancestor).list();
 		log.config(LogBuilder.createSystemMessage().
 				addParameter("Datastore: number of loaded objects", objects.size()).toString());
 		result.addAll(objects);
@@ -190,7 +208,22 @@ public abstract class ObjectManager {
 				addMessage("Datastore: delete entities of type " + type
 						+ " where property " + propertyName + " == " + value).toString());
 		List<com.googlecode.objectify.Key<E>> keys = OfyService.ofy().load().type(type).
-				ancestor(applicationRootKey).filter(propertyName, value).keys().list();
+				filter(propertyName, value).keys().list();
+		OfyService.ofy().delete().keys(keys);
+	}
+
+	/**
+	 * Deletes all entities of the type within the entity group of the given ancestor, e.g.
+	 * deleteObjects(Tag.class, EntityGroups.getPhotoKey(photoId)) to delete all tags of one photo.
+	 */
+	protected <E> void deleteObjects(Class<E> type, Key ancestor) {
+		assertIsNonNullArgument(type, "type");
+		assertIsNonNullArgument(ancestor, "ancestor");
+
+		log.info(LogBuilder.createSystemMessage().
+				addMessage("Datastore: delete entities of type " + type + " with ancestor " + ancestor).toString());
+		List<com.googlecode.objectify.Key<E>> keys = OfyService.ofy().load().type(type).
+				ancestor(ancestor).keys().list();
 		OfyService.ofy().delete().keys(keys);
 	}
 
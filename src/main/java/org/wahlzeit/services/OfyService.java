@@ -31,6 +31,9 @@ public class OfyService {
 		factory().register(PhotoCase.class);
 		factory().register(ImageWrapper.class);
 		factory().register(WatchPhoto.class);
+		factory().register(ModelSnapshotInfo.class);
+		factory().register(ModelSnapshotChunk.class);
+		factory().register(ModelTombstone.class);
 
 	}
 
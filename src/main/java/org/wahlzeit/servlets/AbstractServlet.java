@@ -21,6 +21,9 @@
 package org.wahlzeit.servlets;
 
 import org.wahlzeit.main.ServiceMain;
+import org.wahlzeit.model.Globals;
+import org.wahlzeit.model.IdAllocator;
+import org.wahlzeit.model.UserManager;
 import org.wahlzeit.model.UserSession;
 import org.wahlzeit.services.LogBuilder;
 import org.wahlzeit.services.Session;
@@ -34,6 +37,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.InetAddress;
 import java.util.Iterator;
@@ -50,27 +54,27 @@ public abstract class AbstractServlet extends HttpServlet {
 	/**
 	 *
 	 */
-	protected static int lastSessionId = 0; // system and agent are named differently
+	protected static final IdAllocator sessionIdAllocator = new IdAllocator(Globals.Counter.SESSION); // system and agent are named differently
 
 	/**
 	 *
 	 */
-	public static synchronized int getLastSessionId() {
-		return lastSessionId;
+	public static IdAllocator getSessionIdAllocator() {
+		return sessionIdAllocator;
 	}
 
 	/**
 	 *
 	 */
-	public static void setLastSessionId(int newSessionId) {
-		lastSessionId = newSessionId;
+	public static int getLastSessionId() {
+		return (int) sessionIdAllocator.getLastId();
 	}
 
 	/**
 	 *
 	 */
-	public static synchronized int getNextSessionId() {
-		return ++lastSessionId;
+	public static int getNextSessionId() {
+		return (int) sessionIdAllocator.getNextId();
 	}
 
 	/**
@@ -83,13 +87,19 @@ public abstract class AbstractServlet extends HttpServlet {
 		UserSession us = ensureUserSession(request);
 		SessionManager.setThreadLocalSession(us);
 
-		if (ServiceMain.getInstance().isShuttingDown() || (us == null)) {
-			displayNullPage(request, response);
-		} else {
-			myGet(request, response);
+		try {
+			if (ServiceMain.getInstance().isShuttingDown() || (us == null)) {
+				displayNullPage(request, response);
+			} else {
+				myGet(request, response);
+			}
+		} finally {
+			if (us != null) {
+				// GAE saves the http session only after the request has been handled
+				us.flush();
+			}
+			SessionManager.dropThreadLocalSession();
 		}
-
-		SessionManager.dropThreadLocalSession();
 	}
 
 	/**
@@ -102,13 +112,19 @@ public abstract class AbstractServlet extends HttpServlet {
 		UserSession us = ensureUserSession(request);
 		SessionManager.setThreadLocalSession(us);
 
-		if (ServiceMain.getInstance().isShuttingDown() || (us == null)) {
-			displayNullPage(request, response);
-		} else {
-			myPost(request, response);
+		try {
+			if (ServiceMain.getInstance().isShuttingDown() || (us == null)) {
+				displayNullPage(request, response);
+			} else {
+				myPost(request, response);
+			}
+		} finally {
+			if (us != null) {
+				// GAE saves the http session only after the request has been handled
+				us.flush();
+			}
+			SessionManager.dropThreadLocalSession();
 		}
-
-		SessionManager.dropThreadLocalSession();
 	}
 
 	/**
@@ -130,6 +146,10 @@ public abstract class AbstractServlet extends HttpServlet {
 
 		UserSession result = new UserSession(sessionName, siteUrl, httpSession, request.getLocale().getLanguage());
 
+		UserManager userManager = UserManager.getInstance();
+		userManager.touchHttpSession(sessionName);
+		userManager.expireHttpSessions();
+
 		return result;
 	}
 
@@ -185,7 +205,7 @@ public abstract class AbstractServlet extends HttpServlet {
 
 		response.setContentType("text/html");
 
-		PrintWriter out = response.getWriter();
+		OutputStream out = response.getOutputStream();
 		result.writeOn(out);
 		out.close();
 
@@ -31,6 +31,8 @@ import org.wahlzeit.handlers.PartUtil;
 import org.wahlzeit.handlers.WebFormHandler;
 import org.wahlzeit.handlers.WebPageHandler;
 import org.wahlzeit.handlers.WebPartHandlerManager;
+import org.wahlzeit.handlers.WebPartRouter;
+import org.wahlzeit.model.RequestContext;
 import org.wahlzeit.model.User;
 import org.wahlzeit.model.UserSession;
 import org.wahlzeit.services.LogBuilder;
@@ -67,22 +69,24 @@ public class MainServlet extends AbstractServlet {
 		long startTime = System.currentTimeMillis();
 
 		UserSession us = (UserSession) SessionManager.getThreadLocalSession();
-		String link = request.getRequestURI();
-		int linkStart = link.lastIndexOf("/") + 1;
-		int linkEnd = link.indexOf(".form");
+		us.setRequestContext(new RequestContext(us));
+		String uri = request.getRequestURI();
+		int linkStart = uri.lastIndexOf('/') + 1;
+		int linkEnd = uri.indexOf(".form", linkStart);
+		WebPartRouter.Route route;
 		if (linkEnd != -1) {
-			link = link.substring(linkStart, linkEnd);
+			route = WebPartHandlerManager.getInstance().getRouter().resolve(uri, linkStart, linkEnd);
 		} else {
-			link = PartUtil.NULL_FORM_NAME;
+			route = WebPartHandlerManager.getInstance().getRouter().resolve(PartUtil.NULL_FORM_NAME);
 		}
-		log.info(LogBuilder.createUserMessage().addParameter("posted to", link).toString());
+		log.info(LogBuilder.createUserMessage().addParameter("posted to", uri).toString());
 
 		Map args = getRequestArgs(request, us);
 		log.info(LogBuilder.createSystemMessage().
 				addParameter("POST arguments", getRequestArgsAsString(us, args)).toString());
 
-		WebFormHandler formHandler = WebPartHandlerManager.getWebFormHandler(link);
-		link = PartUtil.DEFAULT_PAGE_NAME;
+		WebFormHandler formHandler = route.getWebFormHandler();
+		String link = PartUtil.DEFAULT_PAGE_NAME;
 		if (formHandler != null) {
 			link = formHandler.handlePost(us, args);
 		}
@@ -99,18 +103,20 @@ public class MainServlet extends AbstractServlet {
 		long startTime = System.currentTimeMillis();
 
 		UserSession us = (UserSession) SessionManager.getThreadLocalSession();
-		String link = request.getRequestURI();
-		int linkStart = link.lastIndexOf("/") + 1;
-		int linkEnd = link.indexOf(".html");
+		us.setRequestContext(new RequestContext(us));
+		String uri = request.getRequestURI();
+		int linkStart = uri.lastIndexOf('/') + 1;
+		int linkEnd = uri.indexOf(".html", linkStart);
 		if (linkEnd == -1) {
-			linkEnd = link.length();
+			linkEnd = uri.length();
 		}
 
-		link = link.substring(linkStart, linkEnd);
-		log.info(LogBuilder.createUserMessage().addParameter("requested URI", request.getRequestURI()).toString());
+		WebPartRouter.Route route = WebPartHandlerManager.getInstance().getRouter().resolve(uri, linkStart, linkEnd);
+		String link = route.getLink(uri, linkStart, linkEnd);
+		log.info(LogBuilder.createUserMessage().addParameter("requested URI", uri).toString());
 
 
-		WebPageHandler handler = WebPartHandlerManager.getWebPageHandler(link);
+		WebPageHandler handler = route.getWebPageHandler();
 		String newLink = PartUtil.DEFAULT_PAGE_NAME;
 		if (handler != null) {
 			Map args = getRequestArgs(request, us);
@@ -1,64 +1,120 @@
 package org.wahlzeit.servlets;
 
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
 import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.PreparedQuery;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.QueryResultList;
+import com.google.apphosting.api.ApiProxy;
+import org.wahlzeit.agents.AsyncTaskExecutor;
 import org.wahlzeit.model.Client;
 import org.wahlzeit.model.Guest;
 import org.wahlzeit.model.UserManager;
 import org.wahlzeit.services.LogBuilder;
-import org.wahlzeit.services.OfyService;
 
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
 
 /**
- * This servlet is run to cleanup expired sessions.
+ * This servlet is run to cleanup expired sessions. Session mappings in memory expire on their own, see
+ * {@link org.wahlzeit.model.ClientManager#expireHttpSessions()}; this cron job reconciles them with the sessions that
+ * expired in the datastore and deletes the saved guests.
+ *
+ * The expired sessions are read page by page with a keys-only query and deleted in batches. Before the request runs
+ * out of time, the servlet enqueues a task that continues at the cursor of the next page.
  */
 public class SessionCleanupServlet extends HttpServlet {
 
+	/**
+	 * URL and parameters of the servlet
+	 */
+	public static final String URL = "/_ah/sessioncleanup";
+	public static final String CLEAR = "clear";
+	public static final String CURSOR = "cursor";
+	public static final String EXPIRED_BEFORE = "expiredBefore";
+
 	private static final String SESSION_ENTITY_TYPE = "_ah_SESSION";
 	private static final String EXPIRES_PROP = "_expires";
 
+	/**
+	 * Number of sessions read and deleted at once
+	 */
+	protected static final int BATCH_SIZE = 500;
+
+	/**
+	 * Time after which the cleanup continues in a new task, well before the deadline of the request
+	 */
+	protected static final long TIME_BUDGET = 5 * 60 * 1000;
+
+	/**
+	 * Time that has to be left before the deadline to process another batch
+	 */
+	protected static final long DEADLINE_MARGIN = 30 * 1000;
+
 	private static final Logger log = Logger.getLogger(SessionCleanupServlet.class.getName());
 
 	@Override
-	public void service(HttpServletRequest request, HttpServletResponse response) {
-		if ("clear".equals(request.getQueryString())) {
-			clearAll(response);
+	public void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		if (request.getParameter(CLEAR) != null) {
+			clearAll(request, response);
 		}
 	}
 
 	/**
 	 * Clears all {@link HttpSession}s in the datastore that are expired and if they are guest sessions, deletes the
-	 * corresponding {@link Guest} object, too.
+	 * corresponding {@link Guest} object, too. Users of expired sessions may then be evicted from memory.
 	 */
-	private void clearAll(HttpServletResponse response) {
+	private void clearAll(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		long startTime = System.currentTimeMillis();
+		String cursorParameter = request.getParameter(CURSOR);
+		String expiredBeforeParameter = request.getParameter(EXPIRED_BEFORE);
 
-		List<Object> killList = OfyService.ofy().load().
-				kind(SESSION_ENTITY_TYPE).
-				filter(EXPIRES_PROP + " <", System.currentTimeMillis()).list();
+		// a continued cleanup has to run the same query, so it keeps the expiry time of the first request
+		long expiredBefore = expiredBeforeParameter == null ? startTime : Long.parseLong(expiredBeforeParameter);
+		Cursor cursor = cursorParameter == null ? null : Cursor.fromWebSafeString(cursorParameter);
 
-		log.config(LogBuilder.createSystemMessage().
-				addParameter("number of old sessions to delete from datastore", killList.size()).toString());
+		DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+		Query query = new Query(SESSION_ENTITY_TYPE).setKeysOnly().setFilter(
+				new Query.FilterPredicate(EXPIRES_PROP, Query.FilterOperator.LESS_THAN, expiredBefore));
+		PreparedQuery preparedQuery = datastore.prepare(query);
 
+		int noSessions = 0;
+		int noGuests = 0;
+		int noBatches = 0;
+		boolean isContinued = false;
 		try {
-			for (Object o : killList) {
-				Entity httpSessionEntity = (Entity) o;
-				Key key = httpSessionEntity.getKey();
-				// GAE does not use session id as key name, instead "_ahs<sessionId>"
-				String sessionId = key.getName().substring(4);
-				log.config(LogBuilder.createSystemMessage().
-						addAction("delete session").
-						addParameter("session id", sessionId).toString());
-				Client client = UserManager.getInstance().getClientByHttpSessionId(sessionId);
-				if (client != null && client instanceof Guest) {
-					UserManager.getInstance().deleteClient(client);
+			while (true) {
+				FetchOptions fetchOptions = FetchOptions.Builder.withLimit(BATCH_SIZE);
+				if (cursor != null) {
+					fetchOptions.startCursor(cursor);
+				}
+				QueryResultList<Entity> page = preparedQuery.asQueryResultList(fetchOptions);
+				if (page.isEmpty()) {
+					break;
+				}
+
+				noGuests += deleteSessions(datastore, page);
+				noSessions += page.size();
+				noBatches++;
+				cursor = page.getCursor();
+
+				if (page.size() < BATCH_SIZE) {
+					break;
+				} else if (isRunningOutOfTime(startTime)) {
+					AsyncTaskExecutor.continueSessionCleanupAsync(cursor.toWebSafeString(), expiredBefore);
+					isContinued = true;
+					break;
 				}
-				OfyService.ofy().delete().entity(httpSessionEntity).now();
 			}
 			response.setStatus(HttpServletResponse.SC_OK);
 		} catch (Exception e) {
@@ -66,5 +122,63 @@ public class SessionCleanupServlet extends HttpServlet {
 					addException("problem when deleting session and guest", e).toString());
 			response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
 		}
+
+		long duration = Math.max(1, System.currentTimeMillis() - startTime);
+		long sessionsPerSecond = noSessions * 1000L / duration;
+		String metrics = LogBuilder.createSystemMessage().
+				addAction("cleanup sessions").
+				addParameter("deleted sessions", noSessions).
+				addParameter("deleted guests", noGuests).
+				addParameter("batches", noBatches).
+				addParameter("duration in ms", duration).
+				addParameter("sessions per second", sessionsPerSecond).
+				addParameter("continued in new task", isContinued).toString();
+		log.info(metrics);
+
+		response.setContentType("text/plain");
+		response.getWriter().println(metrics);
+	}
+
+	/**
+	 * Deletes one page of expired sessions incl. their guests and returns the number of deleted guests.
+	 */
+	private int deleteSessions(DatastoreService datastore, List<Entity> page) {
+		UserManager userManager = UserManager.getInstance();
+		List<Key> keys = new ArrayList<Key>(page.size());
+		List<Client> guests = new ArrayList<Client>();
+		for (Entity httpSessionEntity : page) {
+			Key key = httpSessionEntity.getKey();
+			keys.add(key);
+
+			// GAE does not use session id as key name, instead "_ahs<sessionId>"
+			String sessionId = key.getName().substring(4);
+			Client client = userManager.getClientByHttpSessionId(sessionId);
+			if (client instanceof Guest) {
+				guests.add(client);
+			} else if (client != null) {
+				userManager.removeHttpSessionIdToClientMapping(sessionId);
+			}
+		}
+
+		userManager.deleteClients(guests);
+		datastore.delete(keys);
+		return guests.size();
+	}
+
+	/**
+	 * Returns true if there is not enough time left for another batch.
+	 */
+	private boolean isRunningOutOfTime(long startTime) {
+		if (System.currentTimeMillis() - startTime > TIME_BUDGET) {
+			return true;
+		}
+
+		ApiProxy.Environment environment = ApiProxy.getCurrentEnvironment();
+		try {
+			return environment != null && environment.getRemainingMillis() < DEADLINE_MARGIN;
+		} catch (UnsupportedOperationException ex) {
+			// environments without a deadline
+			return false;
+		}
 	}
 }
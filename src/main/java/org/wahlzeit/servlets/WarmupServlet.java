@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.servlets;
+
+import org.wahlzeit.main.ServiceWarmup;
+import org.wahlzeit.services.LogBuilder;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.logging.Logger;
+
+/**
+ * Handles the warmup requests App Engine sends before it routes traffic to a new instance. The instance has been
+ * started up by the {@link org.wahlzeit.apps.Wahlzeit} listener at that point, so the servlet only runs the
+ * {@link ServiceWarmup}.
+ *
+ * @review
+ */
+public class WarmupServlet extends HttpServlet {
+
+	private static final Logger log = Logger.getLogger(WarmupServlet.class.getName());
+
+	/**
+	 * @methodtype command
+	 */
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) {
+		try {
+			new ServiceWarmup().run();
+			response.setStatus(HttpServletResponse.SC_OK);
+		} catch (Exception ex) {
+			// a failed warmup only makes the first requests slower, the instance can serve them anyway
+			log.warning(LogBuilder.createSystemMessage().
+					addException("warming up instance failed", ex).toString());
+			response.setStatus(HttpServletResponse.SC_OK);
+		}
+	}
+
+}
@@ -0,0 +1,549 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Compressed set of non-negative ints in the style of roaring bitmaps. The ints are split by their high 16 bits into
+ * containers; a container with few values keeps them in a sorted array, a container with many values keeps a bitmap
+ * of all 2^16 low values. Photo ids are dense, so the ids of a client mostly fall into one or two containers.
+ *
+ * Membership is a lookup of the container followed by a bit test or a search among at most
+ * {@link #MAX_ARRAY_SIZE} values, so it does not depend on the number of values in the set. The set is stored as a
+ * byte array, see {@link #toBytes()}, with the array containers delta-varint encoded, see {@link VarIntCodec}.
+ *
+ * @review
+ */
+public class IntBitmap implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Array containers with more values are turned into bitmap containers, which take 8 KB each
+	 */
+	protected static final int MAX_ARRAY_SIZE = 4096;
+
+	/**
+	 *
+	 */
+	protected static final int CONTAINER_BITS = 16;
+	protected static final int LOW_MASK = (1 << CONTAINER_BITS) - 1;
+	protected static final int NO_WORDS = (1 << CONTAINER_BITS) / 64;
+
+	/**
+	 *
+	 */
+	protected static final byte ARRAY_CONTAINER = 0;
+	protected static final byte BITMAP_CONTAINER = 1;
+
+	/**
+	 * High 16 bits of the values of each container, sorted
+	 */
+	protected transient int[] keys = new int[0];
+
+	/**
+	 * Containers in the order of their keys
+	 */
+	protected transient Container[] containers = new Container[0];
+
+	/**
+	 * @methodtype factory
+	 */
+	public static IntBitmap fromBytes(byte[] bytes) {
+		IntBitmap result = new IntBitmap();
+		if (bytes != null && bytes.length > 0) {
+			try {
+				result.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+			} catch (IOException ex) {
+				throw new IllegalArgumentException("bytes are no int bitmap", ex);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	public boolean contains(int value) {
+		if (value < 0) {
+			return false;
+		}
+		int index = Arrays.binarySearch(keys, value >>> CONTAINER_BITS);
+		return index >= 0 && containers[index].contains(value & LOW_MASK);
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Returns false if the value is in the set already.
+	 */
+	public boolean add(int value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("value must not be negative");
+		}
+
+		int key = value >>> CONTAINER_BITS;
+		int index = Arrays.binarySearch(keys, key);
+		if (index < 0) {
+			index = -index - 1;
+			insertContainer(index, key, new ArrayContainer());
+		}
+
+		Container container = containers[index];
+		int size = container.size();
+		containers[index] = container.add(value & LOW_MASK);
+		return containers[index].size() > size;
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Returns false if the value was not in the set.
+	 */
+	public boolean remove(int value) {
+		if (value < 0) {
+			return false;
+		}
+
+		int index = Arrays.binarySearch(keys, value >>> CONTAINER_BITS);
+		if (index < 0) {
+			return false;
+		}
+
+		int size = containers[index].size();
+		Container container = containers[index].remove(value & LOW_MASK);
+		if (container.size() == 0) {
+			removeContainer(index);
+		} else {
+			containers[index] = container;
+		}
+		return container.size() < size;
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Adds all values of the other set to this one.
+	 */
+	public void or(IntBitmap other) {
+		for (int i = 0; i < other.keys.length; i++) {
+			int index = Arrays.binarySearch(keys, other.keys[i]);
+			if (index < 0) {
+				insertContainer(-index - 1, other.keys[i], other.containers[i].copy());
+			} else {
+				containers[index] = containers[index].or(other.containers[i]);
+			}
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int size() {
+		int result = 0;
+		for (Container container : containers) {
+			result += container.size();
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	public boolean isEmpty() {
+		return containers.length == 0;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void clear() {
+		keys = new int[0];
+		containers = new Container[0];
+	}
+
+	/**
+	 * @methodtype factory
+	 */
+	public IntBitmap copy() {
+		IntBitmap result = new IntBitmap();
+		result.keys = keys.clone();
+		result.containers = new Container[containers.length];
+		for (int i = 0; i < containers.length; i++) {
+			result.containers[i] = containers[i].copy();
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype conversion
+	 *
+	 * Returns the values in ascending order.
+	 */
+	public int[] toArray() {
+		int[] result = new int[size()];
+		int offset = 0;
+		for (int i = 0; i < containers.length; i++) {
+			offset = containers[i].copyTo(result, offset, keys[i] << CONTAINER_BITS);
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype conversion
+	 */
+	public byte[] toBytes() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			write(new DataOutputStream(bytes));
+		} catch (IOException ex) {
+			throw new IllegalStateException("could not write to byte array", ex);
+		}
+		return bytes.toByteArray();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof IntBitmap)) {
+			return false;
+		}
+		return Arrays.equals(toArray(), ((IntBitmap) obj).toArray());
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(toArray());
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void insertContainer(int index, int key, Container container) {
+		int[] newKeys = new int[keys.length + 1];
+		Container[] newContainers = new Container[containers.length + 1];
+		System.arraycopy(keys, 0, newKeys, 0, index);
+		System.arraycopy(containers, 0, newContainers, 0, index);
+		newKeys[index] = key;
+		newContainers[index] = container;
+		System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+		System.arraycopy(containers, index, newContainers, index + 1, containers.length - index);
+		keys = newKeys;
+		containers = newContainers;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void removeContainer(int index) {
+		int[] newKeys = new int[keys.length - 1];
+		Container[] newContainers = new Container[containers.length - 1];
+		System.arraycopy(keys, 0, newKeys, 0, index);
+		System.arraycopy(containers, 0, newContainers, 0, index);
+		System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+		System.arraycopy(containers, index + 1, newContainers, index, containers.length - index - 1);
+		keys = newKeys;
+		containers = newContainers;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void write(DataOutput out) throws IOException {
+		VarIntCodec.writeVarInt(out, keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			VarIntCodec.writeVarInt(out, keys[i]);
+			containers[i].write(out);
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void read(DataInput in) throws IOException {
+		int noContainers = VarIntCodec.readVarInt(in);
+		keys = new int[noContainers];
+		containers = new Container[noContainers];
+		for (int i = 0; i < noContainers; i++) {
+			keys[i] = VarIntCodec.readVarInt(in);
+			byte type = in.readByte();
+			if (type == ARRAY_CONTAINER) {
+				containers[i] = ArrayContainer.read(in);
+			} else if (type == BITMAP_CONTAINER) {
+				containers[i] = BitmapContainer.read(in);
+			} else {
+				throw new InvalidObjectException("unknown container type " + type);
+			}
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		write(out);
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		read(in);
+	}
+
+	/**
+	 * Set of the low 16 bits of the values of one container; changes may return a container of another kind
+	 */
+	protected abstract static class Container {
+
+		protected abstract boolean contains(int low);
+
+		protected abstract Container add(int low);
+
+		protected abstract Container remove(int low);
+
+		protected abstract Container or(Container other);
+
+		protected abstract int size();
+
+		protected abstract int copyTo(int[] target, int offset, int high);
+
+		protected abstract Container copy();
+
+		protected abstract void write(DataOutput out) throws IOException;
+	}
+
+	/**
+	 * Container with the values in a sorted array
+	 */
+	protected static class ArrayContainer extends Container {
+
+		protected int[] values = new int[4];
+		protected int size = 0;
+
+		protected static ArrayContainer read(DataInput in) throws IOException {
+			ArrayContainer result = new ArrayContainer();
+			result.values = VarIntCodec.readIntSet(in);
+			result.size = result.values.length;
+			return result;
+		}
+
+		@Override
+		protected boolean contains(int low) {
+			return Arrays.binarySearch(values, 0, size, low) >= 0;
+		}
+
+		@Override
+		protected Container add(int low) {
+			int index = Arrays.binarySearch(values, 0, size, low);
+			if (index >= 0) {
+				return this;
+			} else if (size == MAX_ARRAY_SIZE) {
+				return toBitmapContainer().add(low);
+			}
+
+			index = -index - 1;
+			if (size == values.length) {
+				values = Arrays.copyOf(values, Math.max(4, size * 2));
+			}
+			System.arraycopy(values, index, values, index + 1, size - index);
+			values[index] = low;
+			size++;
+			return this;
+		}
+
+		@Override
+		protected Container remove(int low) {
+			int index = Arrays.binarySearch(values, 0, size, low);
+			if (index >= 0) {
+				System.arraycopy(values, index + 1, values, index, size - index - 1);
+				size--;
+			}
+			return this;
+		}
+
+		@Override
+		protected Container or(Container other) {
+			Container result = this;
+			int[] otherValues = new int[other.size()];
+			other.copyTo(otherValues, 0, 0);
+			for (int low : otherValues) {
+				result = result.add(low);
+			}
+			return result;
+		}
+
+		@Override
+		protected int size() {
+			return size;
+		}
+
+		@Override
+		protected int copyTo(int[] target, int offset, int high) {
+			for (int i = 0; i < size; i++) {
+				target[offset++] = high | values[i];
+			}
+			return offset;
+		}
+
+		@Override
+		protected Container copy() {
+			ArrayContainer result = new ArrayContainer();
+			result.values = Arrays.copyOf(values, Math.max(4, size));
+			result.size = size;
+			return result;
+		}
+
+		@Override
+		protected void write(DataOutput out) throws IOException {
+			out.writeByte(ARRAY_CONTAINER);
+			VarIntCodec.writeIntSet(out, values, size);
+		}
+
+		protected BitmapContainer toBitmapContainer() {
+			BitmapContainer result = new BitmapContainer();
+			for (int i = 0; i < size; i++) {
+				result.add(values[i]);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Container with one bit for each of the 2^16 low values
+	 */
+	protected static class BitmapContainer extends Container {
+
+		protected long[] words = new long[NO_WORDS];
+		protected int size = 0;
+
+		protected static BitmapContainer read(DataInput in) throws IOException {
+			BitmapContainer result = new BitmapContainer();
+			for (int i = 0; i < NO_WORDS; i++) {
+				result.words[i] = in.readLong();
+				result.size += Long.bitCount(result.words[i]);
+			}
+			return result;
+		}
+
+		@Override
+		protected boolean contains(int low) {
+			return (words[low >>> 6] & (1L << low)) != 0;
+		}
+
+		@Override
+		protected Container add(int low) {
+			if (!contains(low)) {
+				words[low >>> 6] |= 1L << low;
+				size++;
+			}
+			return this;
+		}
+
+		@Override
+		protected Container remove(int low) {
+			if (contains(low)) {
+				words[low >>> 6] &= ~(1L << low);
+				size--;
+			}
+			if (size <= MAX_ARRAY_SIZE / 2) {
+				return toArrayContainer();
+			}
+			return this;
+		}
+
+		@Override
+		protected Container or(Container other) {
+			if (other instanceof BitmapContainer) {
+				long[] otherWords = ((BitmapContainer) other).words;
+				size = 0;
+				for (int i = 0; i < NO_WORDS; i++) {
+					words[i] |= otherWords[i];
+					size += Long.bitCount(words[i]);
+				}
+				return this;
+			}
+
+			ArrayContainer arrayContainer = (ArrayContainer) other;
+			for (int i = 0; i < arrayContainer.size; i++) {
+				add(arrayContainer.values[i]);
+			}
+			return this;
+		}
+
+		@Override
+		protected int size() {
+			return size;
+		}
+
+		@Override
+		protected int copyTo(int[] target, int offset, int high) {
+			for (int i = 0; i < NO_WORDS; i++) {
+				long word = words[i];
+				while (word != 0) {
+					target[offset++] = high | (i << 6) | Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+				}
+			}
+			return offset;
+		}
+
+		@Override
+		protected Container copy() {
+			BitmapContainer result = new BitmapContainer();
+			result.words = words.clone();
+			result.size = size;
+			return result;
+		}
+
+		@Override
+		protected void write(DataOutput out) throws IOException {
+			out.writeByte(BITMAP_CONTAINER);
+			for (long word : words) {
+				out.writeLong(word);
+			}
+		}
+
+		protected ArrayContainer toArrayContainer() {
+			ArrayContainer result = new ArrayContainer();
+			result.values = new int[Math.max(4, size)];
+			result.size = copyTo(result.values, 0, 0);
+			return result;
+		}
+	}
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.utils;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Set of non-negative ints kept in a sorted array, for small sets that are stored in the http session. Lookups use a
+ * binary search; the set is serialized with {@link VarIntCodec}, so it takes about one byte per dense value.
+ *
+ * @review
+ */
+public class SortedIntSet implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 *
+	 */
+	protected static final int INITIAL_CAPACITY = 8;
+
+	/**
+	 *
+	 */
+	protected transient int[] values = new int[INITIAL_CAPACITY];
+	protected transient int size = 0;
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	public boolean contains(int value) {
+		return Arrays.binarySearch(values, 0, size, value) >= 0;
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Returns false if the value is in the set already.
+	 */
+	public boolean add(int value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("value must not be negative");
+		}
+
+		int index = Arrays.binarySearch(values, 0, size, value);
+		if (index >= 0) {
+			return false;
+		}
+
+		index = -index - 1;
+		if (size == values.length) {
+			values = Arrays.copyOf(values, size * 2);
+		}
+		System.arraycopy(values, index, values, index + 1, size - index);
+		values[index] = value;
+		size++;
+		return true;
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Returns false if the value was not in the set.
+	 */
+	public boolean remove(int value) {
+		int index = Arrays.binarySearch(values, 0, size, value);
+		if (index < 0) {
+			return false;
+		}
+
+		System.arraycopy(values, index + 1, values, index, size - index - 1);
+		size--;
+		return true;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void clear() {
+		values = new int[INITIAL_CAPACITY];
+		size = 0;
+	}
+
+	/**
+	 * @methodtype conversion
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof SortedIntSet)) {
+			return false;
+		}
+
+		SortedIntSet other = (SortedIntSet) obj;
+		return Arrays.equals(toArray(), other.toArray());
+	}
+
+	@Override
+	public int hashCode() {
+		int result = 1;
+		for (int i = 0; i < size; i++) {
+			result = 31 * result + values[i];
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		VarIntCodec.writeIntSet(out, values, size);
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		values = VarIntCodec.readIntSet(in);
+		size = values.length;
+		if (values.length < INITIAL_CAPACITY) {
+			values = Arrays.copyOf(values, INITIAL_CAPACITY);
+		}
+	}
+
+}
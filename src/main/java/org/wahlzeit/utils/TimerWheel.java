@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hierarchical timer wheel that expires keys which have not been touched for a time-to-live. Time is divided into
+ * ticks; each level of the wheel has {@link #NO_SLOTS} slots, and a slot of a higher level spans all slots of the
+ * level below it. A key is scheduled into the slot of its deadline and cascades down to lower levels as time passes.
+ *
+ * Touching a known key only records the time of the access, without moving the key to another slot. When the slot
+ * of the key comes up, the key is scheduled again if it was touched in the meantime, and expires otherwise. So each
+ * touch is O(1), and each key is moved at most once per level and time-to-live.
+ *
+ * @review
+ */
+public class TimerWheel<K> {
+
+	/**
+	 * Number of slots per level, a power of two
+	 */
+	public static final int SLOT_BITS = 6;
+	public static final int NO_SLOTS = 1 << SLOT_BITS;
+	protected static final int SLOT_MASK = NO_SLOTS - 1;
+
+	/**
+	 * Number of levels; together they span NO_SLOTS^NO_LEVELS ticks
+	 */
+	public static final int NO_LEVELS = 4;
+
+	/**
+	 * Scheduled key with the time it was last touched
+	 */
+	protected static class Entry<K> {
+
+		protected final K key;
+		protected volatile long lastAccess;
+		protected volatile boolean isRemoved = false;
+
+		protected Entry(K key, long lastAccess) {
+			this.key = key;
+			this.lastAccess = lastAccess;
+		}
+	}
+
+	/**
+	 *
+	 */
+	protected final long timeToLive;
+
+	/**
+	 *
+	 */
+	protected final long tickDuration;
+
+	/**
+	 *
+	 */
+	protected final ConcurrentHashMap<K, Entry<K>> entries = new ConcurrentHashMap<K, Entry<K>>();
+
+	/**
+	 * Slots by level and index; guarded by this wheel
+	 */
+	protected final List<List<Entry<K>>> slots = new ArrayList<List<Entry<K>>>();
+
+	/**
+	 * Last tick that has been processed
+	 */
+	protected volatile long currentTick = -1;
+
+	/**
+	 * @methodtype constructor
+	 */
+	public TimerWheel(long timeToLive, long tickDuration) {
+		if (timeToLive <= 0 || tickDuration <= 0) {
+			throw new IllegalArgumentException("time to live and tick duration must be positive");
+		}
+		this.timeToLive = timeToLive;
+		this.tickDuration = tickDuration;
+		for (int i = 0; i < NO_LEVELS * NO_SLOTS; i++) {
+			slots.add(new ArrayList<Entry<K>>());
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Records an access to the key; a new key is scheduled to expire after the time-to-live.
+	 */
+	public void touch(K key, long now) {
+		Entry<K> entry = entries.get(key);
+		if (entry != null) {
+			entry.lastAccess = now;
+			return;
+		}
+
+		synchronized (this) {
+			entry = entries.get(key);
+			if (entry != null) {
+				entry.lastAccess = now;
+				return;
+			}
+			entry = new Entry<K>(key, now);
+			entries.put(key, entry);
+			if (currentTick < 0) {
+				currentTick = getTick(now);
+			}
+			schedule(entry);
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Stops tracking the key; it stays in its slot until the slot comes up, but is skipped then.
+	 */
+	public void remove(K key) {
+		Entry<K> entry = entries.remove(key);
+		if (entry != null) {
+			entry.isRemoved = true;
+		}
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	public boolean contains(K key) {
+		return entries.containsKey(key);
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Processes all ticks up to now and returns the keys that expired; they are no longer tracked. Returns at once if
+	 * no tick has passed since the last call.
+	 */
+	public List<K> advance(long now) {
+		List<K> result = new ArrayList<K>();
+		long nowTick = getTick(now);
+		if (currentTick < 0 || nowTick <= currentTick) {
+			return result;
+		}
+
+		synchronized (this) {
+			while (currentTick < nowTick) {
+				currentTick++;
+				for (int level = 1; level < NO_LEVELS; level++) {
+					if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+						break;
+					}
+					int index = (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+					for (Entry<K> entry : takeSlot(level, index)) {
+						if (!entry.isRemoved) {
+							schedule(entry);
+						}
+					}
+				}
+
+				for (Entry<K> entry : takeSlot(0, (int) currentTick & SLOT_MASK)) {
+					if (entry.isRemoved) {
+						continue;
+					} else if (getDeadlineTick(entry) <= currentTick) {
+						entries.remove(entry.key, entry);
+						entry.isRemoved = true;
+						result.add(entry.key);
+					} else {
+						schedule(entry);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Puts the entry into the slot of its deadline, on the lowest level that spans it.
+	 */
+	protected void schedule(Entry<K> entry) {
+		long delta = getDeadlineTick(entry) - currentTick;
+		long maxDelta = (1L << (SLOT_BITS * NO_LEVELS)) - 1;
+		delta = Math.max(0, Math.min(delta, maxDelta));
+		long deadlineTick = currentTick + delta;
+
+		int level = 0;
+		while (level < NO_LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+			level++;
+		}
+		int index = (int) (deadlineTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+		slots.get(level * NO_SLOTS + index).add(entry);
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected List<Entry<K>> takeSlot(int level, int index) {
+		List<Entry<K>> slot = slots.get(level * NO_SLOTS + index);
+		if (slot.isEmpty()) {
+			return slot;
+		}
+		slots.set(level * NO_SLOTS + index, new ArrayList<Entry<K>>());
+		return slot;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	protected long getDeadlineTick(Entry<K> entry) {
+		return (entry.lastAccess + timeToLive + tickDuration - 1) / tickDuration;
+	}
+
+	/**
+	 * @methodtype conversion
+	 */
+	protected long getTick(long time) {
+		return time / tickDuration;
+	}
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.util.Arrays;
+
+/**
+ * Encodes non-negative ints with a variable number of bytes, seven bits per byte, the lowest bits first. Sets of ints
+ * are written sorted, as the differences between neighbouring values, so dense ids like photo ids mostly take one
+ * byte each.
+ *
+ * @review
+ */
+public class VarIntCodec {
+
+	/**
+	 * @methodtype command
+	 */
+	public static void writeVarInt(DataOutput out, int value) throws IOException {
+		if (value < 0) {
+			throw new IllegalArgumentException("value must not be negative");
+		}
+		while ((value & ~0x7f) != 0) {
+			out.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public static int readVarInt(DataInput in) throws IOException {
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			result |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new InvalidObjectException("var int is too long");
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Writes the first size values as a set, i.e. sorted and without duplicates.
+	 */
+	public static void writeIntSet(DataOutput out, int[] values, int size) throws IOException {
+		int[] sorted = Arrays.copyOf(values, size);
+		Arrays.sort(sorted);
+
+		int noDistinct = 0;
+		for (int i = 0; i < size; i++) {
+			if (i == 0 || sorted[i] != sorted[i - 1]) {
+				sorted[noDistinct++] = sorted[i];
+			}
+		}
+
+		writeVarInt(out, noDistinct);
+		int previous = 0;
+		for (int i = 0; i < noDistinct; i++) {
+			writeVarInt(out, sorted[i] - previous);
+			previous = sorted[i];
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Reads a set written by {@link #writeIntSet(DataOutput, int[], int)} as a sorted array.
+	 */
+	public static int[] readIntSet(DataInput in) throws IOException {
+		int size = readVarInt(in);
+		int[] result = new int[size];
+		int previous = 0;
+		for (int i = 0; i < size; i++) {
+			previous += readVarInt(in);
+			result[i] = previous;
+		}
+		return result;
+	}
+
+}
@@ -24,14 +24,16 @@ import org.wahlzeit.utils.EnumValue;
 import org.wahlzeit.utils.HtmlUtil;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
  * A WebPart is a Writable formatted as HTML, working off a template.
  * A WebPart has its data set from a client using key/value pairs.
  * A WebPart has a recursive structure; it may contain further WebParts.
+ * The values are kept in an array by the key indexes of the template; values for keys the template does not have are
+ * not kept, as they would never be written.
  */
 public class WebPart implements Writable {
 
@@ -43,17 +45,31 @@ public class WebPart implements Writable {
 	/**
 	 *
 	 */
-	protected Map<String, Object> parts = new HashMap<String, Object>();
+	protected Object[] values;
 
 	/**
 	 *
 	 */
 	public WebPart(WebPartTemplate myTemplate) {
 		template = myTemplate;
+		values = new Object[(template == null) ? 0 : template.getNoOfKeys()];
 	}
 
+	/**
+	 *
+	 */
 	public Object getValue(String key) {
-		return parts.get(key);
+		int keyIndex = getKeyIndex(key);
+		return (keyIndex == -1) ? null : values[keyIndex];
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the index of the key in the template, or -1 if the template does not have the key.
+	 */
+	protected int getKeyIndex(String key) {
+		return (template == null) ? -1 : template.getKeyIndex(key);
 	}
 
 	/**
@@ -170,7 +186,16 @@ public class WebPart implements Writable {
 	 */
 	protected void putValue(String key, Object value) {
 		if (value != null) {
-			parts.put(key, value);
+			putValue(getKeyIndex(key), value);
+		}
+	}
+
+	/**
+	 *
+	 */
+	protected void putValue(int keyIndex, Object value) {
+		if (value != null && keyIndex != -1) {
+			values[keyIndex] = value;
 		}
 	}
 
@@ -179,25 +204,21 @@ public class WebPart implements Writable {
 	 */
 	public void writeOn(Writer out) throws IOException {
 		String tmpl = template.asString();
-		String[] keys = template.getKeys();
 		int[] slots = template.getSlots();
 
 		int start = 0;
-		for (int i = 0; i < keys.length; i++) {
+		for (int i = 0; i < slots.length; i++) {
 			int index = slots[i];
 			out.write(tmpl, start, index - start);
 
-			String key = keys[i];
-			if (key != null) {
-				Object object = parts.get(key);
-				if (object != null) {
-					if (object instanceof Writable) {
-						Writable part = (Writable) object;
-						part.writeOn(out);
-					} else {
-						String value = object.toString();
-						out.write(value);
-					}
+			Object object = values[template.getKeyIndexOfSlot(i)];
+			if (object != null) {
+				if (object instanceof Writable) {
+					Writable part = (Writable) object;
+					part.writeOn(out);
+				} else {
+					String value = object.toString();
+					out.write(value);
 				}
 			}
 
@@ -207,4 +228,28 @@ public class WebPart implements Writable {
 		out.write(tmpl, start, tmpl.length() - start);
 	}
 
+	/**
+	 * Writes the static segments of the template as precompiled bytes; only the values are encoded per request.
+	 */
+	public void writeOn(OutputStream out) throws IOException {
+		int noSlots = template.getNoOfSlots();
+
+		for (int i = 0; i < noSlots; i++) {
+			out.write(template.getSegment(i));
+
+			Object object = values[template.getKeyIndexOfSlot(i)];
+			if (object != null) {
+				if (object instanceof Writable) {
+					Writable part = (Writable) object;
+					part.writeOn(out);
+				} else {
+					String value = object.toString();
+					out.write(value.getBytes(WebPartTemplate.CHARSET));
+				}
+			}
+		}
+
+		out.write(template.getSegment(noSlots));
+	}
+
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.webparts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A WebPartFragment is a Writable that has been rendered already. It keeps the text and its UTF-8 encoding, so it is
+ * written as it is, and it is immutable, so it can be shared by all requests.
+ *
+ * @review
+ */
+public class WebPartFragment implements Writable {
+
+	/**
+	 *
+	 */
+	protected final String text;
+	protected final byte[] bytes;
+
+	/**
+	 * Template the fragment was rendered from, or null
+	 */
+	protected final WebPartTemplate template;
+
+	/**
+	 * @methodtype constructor
+	 */
+	public WebPartFragment(String text) {
+		this(text, text.getBytes(WebPartTemplate.CHARSET), null);
+	}
+
+	/**
+	 * @methodtype constructor
+	 */
+	protected WebPartFragment(String text, byte[] bytes, WebPartTemplate template) {
+		this.text = text;
+		this.bytes = bytes;
+		this.template = template;
+	}
+
+	/**
+	 * @methodtype factory
+	 *
+	 * Renders the part, which is made from the template, into a fragment.
+	 */
+	public static WebPartFragment render(WebPartTemplate template, Writable part) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			part.writeOn(out);
+		} catch (IOException ex) {
+			// a byte array stream does not throw
+			throw new IllegalStateException(ex);
+		}
+		byte[] bytes = out.toByteArray();
+		return new WebPartFragment(new String(bytes, WebPartTemplate.CHARSET), bytes, template);
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public String asString() {
+		return text;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public WebPartTemplate getTemplate() {
+		return template;
+	}
+
+	/**
+	 *
+	 */
+	public void writeOn(Writer out) throws IOException {
+		out.write(text);
+	}
+
+	/**
+	 *
+	 */
+	public void writeOn(OutputStream out) throws IOException {
+		out.write(bytes);
+	}
+
+}
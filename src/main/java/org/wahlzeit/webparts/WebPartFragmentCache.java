@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2017 by Daniel Vahle
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.webparts;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The WebPartFragmentCache keeps web parts that render the same for all requests as fragments, e.g. the info parts of
+ * a language or the menus of the model configurations. Fragments of templates are keyed by the name of the template,
+ * which includes the language, and the inputs the part was made from.
+ *
+ * A fragment is only returned for the template instance it was rendered from, so a template that has been loaded again
+ * renders a new fragment; the WebPartTemplateService also drops the fragments of a template when loading it.
+ *
+ * @review
+ */
+public class WebPartFragmentCache {
+
+	/**
+	 *
+	 */
+	protected static final WebPartFragmentCache instance = new WebPartFragmentCache();
+
+	/**
+	 * Separates the name of the template from the inputs in the key of a fragment
+	 */
+	protected static final String INPUTS_SEPARATOR = "|";
+
+	/**
+	 *
+	 */
+	protected Map<String, WebPartFragment> fragments = new ConcurrentHashMap<String, WebPartFragment>();
+
+	/**
+	 *
+	 */
+	protected WebPartFragmentCache() {
+		// do nothing
+	}
+
+	/**
+	 * Convenience method...
+	 */
+	public static WebPartFragmentCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the fragment of the template without any values, rendering it on first use.
+	 */
+	public WebPartFragment getFragment(WebPartTemplate template) {
+		WebPartFragment result = getFragment(template, "");
+		if (result == null) {
+			result = putFragment(template, "", new WebPart(template));
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the fragment of the template and inputs, or null if there is none for this instance of the template.
+	 */
+	public WebPartFragment getFragment(WebPartTemplate template, String inputs) {
+		WebPartFragment result = fragments.get(asKey(template.getName(), inputs));
+		if (result != null && result.getTemplate() != template) {
+			return null;
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Renders the part, which has been made from the template and inputs, and keeps it as the fragment of both.
+	 */
+	public WebPartFragment putFragment(WebPartTemplate template, String inputs, Writable part) {
+		WebPartFragment result = WebPartFragment.render(template, part);
+		fragments.put(asKey(template.getName(), inputs), result);
+		return result;
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the text as fragment, which is kept under the key as long as the text does not change.
+	 */
+	public WebPartFragment getTextFragment(String key, String text) {
+		WebPartFragment result = fragments.get(key);
+		if (result == null || (result.asString() != text && !result.asString().equals(text))) {
+			result = new WebPartFragment(text);
+			fragments.put(key, result);
+		}
+		return result;
+	}
+
+	/**
+	 * @methodtype command
+	 *
+	 * Drops all fragments of the template with the name.
+	 */
+	public void invalidate(String templateName) {
+		String prefix = templateName + INPUTS_SEPARATOR;
+		for (Iterator<String> i = fragments.keySet().iterator(); i.hasNext(); ) {
+			if (i.next().startsWith(prefix)) {
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void clear() {
+		fragments.clear();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int size() {
+		return fragments.size();
+	}
+
+	/**
+	 * @methodtype conversion
+	 */
+	protected String asKey(String templateName, String inputs) {
+		return templateName + INPUTS_SEPARATOR + inputs;
+	}
+
+}
@@ -20,15 +20,33 @@
 
 package org.wahlzeit.webparts;
 
-import java.util.LinkedList;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A WebPartTmpl is a template for a WebPart.
  * It gets initialized once and is read-only after that.
+ *
+ * On initialization, the template is compiled into the keys of its slots and the static segments between them; the
+ * segments are kept encoded as UTF-8, so rendering to a stream writes them as they are. Each distinct key gets an
+ * index, so a WebPart keeps its values in an array sized to the template, and slots that share a key share the value.
  */
 public class WebPartTemplate {
 
+	/**
+	 *
+	 */
+	public static final Charset CHARSET = Charset.forName("UTF-8");
+
+	/**
+	 *
+	 */
+	protected static final String SLOT_START = "{$";
+	protected static final char SLOT_END = '}';
+
 	/**
 	 *
 	 */
@@ -45,6 +63,17 @@ public class WebPartTemplate {
 	protected String[] keys = null;
 	protected int[] slots = null;
 
+	/**
+	 * Static segments before, between, and after the slots, encoded as UTF-8; there is one more than there are slots
+	 */
+	protected byte[][] segments = null;
+
+	/**
+	 * Index of each distinct key, and the key index of each slot
+	 */
+	protected Map<String, Integer> keyIndexes = new HashMap<String, Integer>();
+	protected int[] slotKeyIndexes = new int[0];
+
 	/**
 	 *
 	 */
@@ -54,39 +83,55 @@ public class WebPartTemplate {
 
 	/**
 	 * @methodtype initialization
+	 *
+	 * Parses the source in a single pass; a "{$" without a closing brace is kept as text.
 	 */
 	public void initialize(String source) {
-		List<String> keyList = new LinkedList<String>();
-		List<Integer> slotList = new LinkedList<Integer>();
-
-		StringBuffer buffer = new StringBuffer(source);
-
-		for (int index = 0; index != -1; ) {
-			int nextSlot = buffer.indexOf("{$", index);
-			if (nextSlot != -1) {
-				int endSlot = buffer.indexOf("}", nextSlot);
-				if (endSlot != -1) {
-					String key = buffer.substring(nextSlot + 2, endSlot);
-
-					keyList.add(key);
-					slotList.add(nextSlot);
-
-					buffer.replace(nextSlot, endSlot + 1, "");
-					index = nextSlot;
-				}
-				index = endSlot;
-			} else {
-				index = -1;
+		List<String> keyList = new ArrayList<String>();
+		List<Integer> slotList = new ArrayList<Integer>();
+		List<byte[]> segmentList = new ArrayList<byte[]>();
+
+		StringBuilder buffer = new StringBuilder(source.length());
+
+		int index = 0;
+		while (true) {
+			int nextSlot = source.indexOf(SLOT_START, index);
+			int endSlot = (nextSlot == -1) ? -1 : source.indexOf(SLOT_END, nextSlot + SLOT_START.length());
+			if (endSlot == -1) {
+				break;
 			}
+
+			String segment = source.substring(index, nextSlot);
+			buffer.append(segment);
+			segmentList.add(segment.getBytes(CHARSET));
+			keyList.add(source.substring(nextSlot + SLOT_START.length(), endSlot));
+			slotList.add(buffer.length());
+			index = endSlot + 1;
 		}
 
+		String segment = source.substring(index);
+		buffer.append(segment);
+		segmentList.add(segment.getBytes(CHARSET));
+
 		int length = keyList.size();
-		keys = new String[length];
+		keys = keyList.toArray(new String[length]);
 		slots = new int[length];
 		for (int i = 0; i < length; i++) {
-			keys[i] = keyList.get(i);
 			slots[i] = slotList.get(i);
 		}
+		segments = segmentList.toArray(new byte[length + 1][]);
+
+		Map<String, Integer> newKeyIndexes = new HashMap<String, Integer>();
+		slotKeyIndexes = new int[length];
+		for (int i = 0; i < length; i++) {
+			Integer keyIndex = newKeyIndexes.get(keys[i]);
+			if (keyIndex == null) {
+				keyIndex = newKeyIndexes.size();
+				newKeyIndexes.put(keys[i], keyIndex);
+			}
+			slotKeyIndexes[i] = keyIndex;
+		}
+		keyIndexes = newKeyIndexes;
 
 		template = buffer.toString();
 	}
@@ -119,4 +164,47 @@ public class WebPartTemplate {
 		return slots; // @FIXME needs cloning?
 	}
 
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the UTF-8 encoded segment in front of the slot with the index; the index of the number of slots returns
+	 * the last segment.
+	 */
+	public byte[] getSegment(int i) {
+		return segments[i];
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getNoOfSlots() {
+		return slotKeyIndexes.length;
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the number of distinct keys of the slots.
+	 */
+	public int getNoOfKeys() {
+		return keyIndexes.size();
+	}
+
+	/**
+	 * @methodtype get
+	 *
+	 * Returns the index of the key, or -1 if no slot of the template has the key.
+	 */
+	public int getKeyIndex(String key) {
+		Integer result = keyIndexes.get(key);
+		return (result == null) ? -1 : result;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getKeyIndexOfSlot(int i) {
+		return slotKeyIndexes[i];
+	}
+
 }
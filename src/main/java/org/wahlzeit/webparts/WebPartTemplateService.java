@@ -27,8 +27,10 @@ import org.wahlzeit.services.LogBuilder;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 /**
@@ -41,11 +43,16 @@ public class WebPartTemplateService {
 	 *
 	 */
 	protected static final WebPartTemplateService instance = new WebPartTemplateService();
+
+	/**
+	 *
+	 */
+	public static final String TEMPLATE_FILE_ENDING = ".html";
 	private static final Logger log = Logger.getLogger(WebPartTemplateService.class.getName());
 	/**
 	 *
 	 */
-	protected Map<String, WebPartTemplate> templates = new HashMap<String, WebPartTemplate>();
+	protected Map<String, WebPartTemplate> templates = new ConcurrentHashMap<String, WebPartTemplate>();
 	/**
 	 *
 	 */
@@ -86,12 +93,52 @@ public class WebPartTemplateService {
 		return result;
 	}
 
+	/**
+	 * @methodtype command
+	 *
+	 * Loads all templates of the language, from the default and the custom directory, so no request has to wait for
+	 * them. Returns the number of templates.
+	 */
+	public int loadAllTemplates(String lang) {
+		Set<String> names = new HashSet<String>();
+		for (String dirName : new String[]{ConfigDir.DEFAULT_DIR_NAME, ConfigDir.CUSTOM_DIR_NAME}) {
+			File langDir = new File(getTemplatesDir().asString() + File.separator + dirName + File.separator + lang);
+			File[] typeDirs = langDir.listFiles();
+			if (typeDirs == null) {
+				continue;
+			}
+
+			for (File typeDir : typeDirs) {
+				File[] files = typeDir.listFiles();
+				if (files == null) {
+					continue;
+				}
+
+				for (File file : files) {
+					String fileName = file.getName();
+					if (fileName.endsWith(TEMPLATE_FILE_ENDING)) {
+						names.add(typeDir.getName() + "/" +
+								fileName.substring(0, fileName.length() - TEMPLATE_FILE_ENDING.length()));
+					}
+				}
+			}
+		}
+
+		int result = 0;
+		for (String name : names) {
+			if (getTemplate(lang, name) != null) {
+				result++;
+			}
+		}
+		return result;
+	}
+
 	/**
 	 *
 	 */
 	protected void loadTemplate(String shortName) throws IOException {
 		WebPartTemplate template = new WebPartTemplate(shortName);
-		String fileName = getTemplatesDir().getAbsoluteConfigFileName(shortName + ".html");
+		String fileName = getTemplatesDir().getAbsoluteConfigFileName(shortName + TEMPLATE_FILE_ENDING);
 		log.config(LogBuilder.createSystemMessage().
 				addAction("open html template file").
 				addParameter("file name", fileName).toString());
@@ -107,6 +154,7 @@ public class WebPartTemplateService {
 			}
 
 			templates.put(shortName, template);
+			WebPartFragmentCache.getInstance().invalidate(shortName);
 		} catch (IOException e) {
 			log.warning(LogBuilder.createSystemMessage().
 					addException("I/O Error while reading Template file", e).toString());
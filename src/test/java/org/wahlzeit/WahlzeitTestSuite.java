@@ -23,17 +23,21 @@ package org.wahlzeit;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.wahlzeit.handlers.HandlerTestSuite;
+import org.wahlzeit.main.MainTestSuite;
 import org.wahlzeit.model.ModelTestSuite;
 import org.wahlzeit.services.ServiceTestSuite;
 import org.wahlzeit.utils.UtilsTestSuite;
+import org.wahlzeit.webparts.WebPartsTestSuite;
 
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
         HandlerTestSuite.class,
+        MainTestSuite.class,
         ModelTestSuite.class,
         ServiceTestSuite.class,
-        UtilsTestSuite.class
+        UtilsTestSuite.class,
+        WebPartsTestSuite.class
 })
 
 
@@ -26,7 +26,8 @@ import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
-        TellFriendTest.class
+        TellFriendTest.class,
+        WebPartRouterTest.class
 })
 
 public class HandlerTestSuite {
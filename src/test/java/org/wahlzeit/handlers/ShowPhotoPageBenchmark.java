@@ -0,0 +1,127 @@
+package org.wahlzeit.handlers;
+
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.Work;
+import org.junit.rules.RuleChain;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.wahlzeit.model.EnglishModelConfig;
+import org.wahlzeit.model.LanguageConfigs;
+import org.wahlzeit.model.Photo;
+import org.wahlzeit.model.PhotoId;
+import org.wahlzeit.model.PhotoManager;
+import org.wahlzeit.model.RequestContext;
+import org.wahlzeit.model.User;
+import org.wahlzeit.model.UserSession;
+import org.wahlzeit.services.Language;
+import org.wahlzeit.services.SessionManager;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+import org.wahlzeit.testEnvironmentProvider.SysConfigProvider;
+
+import javax.servlet.http.HttpSession;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures the time and the memory allocated per request to build and render the full page that shows a photo, i.e.
+ * the page frame, both sidebars with their forms, the caption and the engage guest form. Runs in the same environment
+ * as the handler tests. Not part of the test suites, run the main method manually, e.g. with the number of measured
+ * renders as argument.
+ */
+public class ShowPhotoPageBenchmark {
+
+	protected static final int NO_RENDERS = 200000;
+	protected static final int NO_WARMUP_RENDERS = 50000;
+
+	public static void main(String[] args) throws Throwable {
+		final int noRenders = args.length > 0 ? Integer.parseInt(args[0]) : NO_RENDERS;
+		RuleChain environment = RuleChain.
+				outerRule(new SysConfigProvider()).
+				around(new LocalDatastoreServiceTestConfigProvider()).
+				around(new RegisteredOfyEnvironmentProvider());
+
+		environment.apply(new Statement() {
+			@Override
+			public void evaluate() {
+				ObjectifyService.run(new Work<Void>() {
+					@Override
+					public Void run() {
+						try {
+							runRenders(noRenders);
+						} catch (IOException ex) {
+							throw new IllegalStateException(ex);
+						}
+						return null;
+					}
+				});
+			}
+		}, Description.EMPTY).evaluate();
+	}
+
+	/**
+	 *
+	 */
+	protected static void runRenders(int noRenders) throws IOException {
+		WebPartHandlerManager manager = WebPartHandlerManager.getInstance();
+		manager.addWebPartHandler(PartUtil.NULL_FORM_NAME, new NullFormHandler());
+		manager.addWebPartHandler(PartUtil.FILTER_PHOTOS_FORM_NAME, new FilterPhotosFormHandler());
+		manager.addWebPartHandler(PartUtil.PRAISE_PHOTO_FORM_NAME, new PraisePhotoFormHandler());
+		manager.addWebPartHandler(PartUtil.SHOW_PHOTO_PAGE_NAME, new ShowPhotoPageHandler());
+		WebPageHandler handler = WebPartHandlerManager.getWebPageHandler(PartUtil.SHOW_PHOTO_PAGE_NAME);
+
+		LanguageConfigs.put(Language.ENGLISH, new EnglishModelConfig());
+		HttpSession httpSession = mock(HttpSession.class);
+		when(httpSession.getId()).thenReturn("benchmark");
+		UserSession us = new UserSession("benchmark", "", httpSession, "en");
+		SessionManager.setThreadLocalSession(us);
+		us.setRequestContext(new RequestContext(us));
+		User owner = new User("benchmarkOwner", "benchmarkOwner", "owner@wahlzeit.org");
+		Photo photo = new Photo(PhotoId.getNextId());
+		photo.setOwnerId(owner.getId());
+		PhotoManager.getInstance().addPhoto(photo);
+		us.setPhotoId(photo.getId());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+		render(handler, us, out, NO_WARMUP_RENDERS);
+
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		long startBytes = getAllocatedBytes(threadBean);
+		long startTime = System.nanoTime();
+		render(handler, us, out, noRenders);
+		long duration = System.nanoTime() - startTime;
+		long allocatedBytes = getAllocatedBytes(threadBean) - startBytes;
+
+		System.out.println(String.format("%10s %14s %18s %14s", "renders", "page bytes", "us per render",
+				"bytes allocated"));
+		System.out.println(String.format("%10d %14d %18.2f %14d", noRenders, out.size(),
+				duration / 1000.0 / noRenders, allocatedBytes < 0 ? -1 : allocatedBytes / noRenders));
+	}
+
+	/**
+	 *
+	 */
+	protected static void render(WebPageHandler handler, UserSession us, ByteArrayOutputStream out, int noRenders)
+			throws IOException {
+		for (int i = 0; i < noRenders; i++) {
+			out.reset();
+			handler.makeWebPart(us).writeOn(out);
+		}
+	}
+
+	/**
+	 * Returns the bytes allocated by the current thread so far, or -1 if the JVM does not count them
+	 */
+	protected static long getAllocatedBytes(ThreadMXBean threadBean) {
+		if (threadBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+}
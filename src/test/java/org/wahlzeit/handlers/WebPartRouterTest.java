@@ -0,0 +1,95 @@
+package org.wahlzeit.handlers;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.wahlzeit.model.AccessRights;
+import org.wahlzeit.model.PhotoId;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link WebPartRouter}.
+ */
+public class WebPartRouterTest {
+
+	private ShowPhotoPageHandler photoHandler;
+	private ShowInfoPageHandler aboutHandler;
+	private NullFormHandler nullFormHandler;
+	private WebPartRouter router;
+
+	@Before
+	public void setUp() {
+		photoHandler = new ShowPhotoPageHandler();
+		aboutHandler = new ShowInfoPageHandler(AccessRights.GUEST, PartUtil.ABOUT_INFO_FILE);
+		nullFormHandler = new NullFormHandler();
+
+		Map<String, WebPartHandler> handlers = new HashMap<String, WebPartHandler>();
+		handlers.put(PartUtil.SHOW_PHOTO_PAGE_NAME, photoHandler);
+		handlers.put(PartUtil.ABOUT_PAGE_NAME, aboutHandler);
+		handlers.put(PartUtil.NULL_FORM_NAME, nullFormHandler);
+		handlers.put("abo", nullFormHandler);
+		router = new WebPartRouter(handlers, PartUtil.DEFAULT_PAGE_NAME, PartUtil.SHOW_PHOTO_PAGE_NAME);
+	}
+
+	@Test
+	public void testNamesAreResolvedWithinPath() {
+		String path = "/about.html";
+		WebPartRouter.Route route = router.resolve(path, 1, 6);
+		assertSame(aboutHandler, route.getWebPageHandler());
+		assertSame(PartUtil.ABOUT_PAGE_NAME, route.getLink(path, 1, 6));
+
+		// prefixes of a name are only routes if they are names themselves
+		assertSame(nullFormHandler, router.resolve("abo").getWebFormHandler());
+		assertSame(photoHandler, router.resolve("ab").getWebPageHandler());
+		assertEquals(4, router.getNoOfRoutes());
+	}
+
+	@Test
+	public void testHandlersOfWrongKindFallBackToDefault() {
+		assertSame(nullFormHandler, router.resolve(PartUtil.NULL_FORM_NAME).getWebFormHandler());
+		assertSame(photoHandler, router.resolve(PartUtil.NULL_FORM_NAME).getWebPageHandler());
+		assertSame(photoHandler, router.resolve(PartUtil.ABOUT_PAGE_NAME).getWebFormHandler());
+	}
+
+	@Test
+	public void testPhotoIdsAreRecognized() {
+		String idString = PhotoId.getFromInt(12345);
+		String path = "/" + idString + ".html";
+		WebPartRouter.Route route = router.resolve(path, 1, 1 + idString.length());
+		assertTrue(route.isPhotoRoute());
+		assertSame(photoHandler, route.getWebPageHandler());
+		assertEquals(idString, route.getLink(path, 1, 1 + idString.length()));
+
+		WebPartRouter.Route unknown = router.resolve("xY12");
+		assertFalse(unknown.isPhotoRoute());
+		assertNull(unknown.getName());
+		assertEquals("xY12", unknown.getLink("xY12", 0, 4));
+		assertFalse(router.resolve("xzzzzzz").isPhotoRoute());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testFrozenManagerRejectsHandlers() {
+		WebPartHandlerManager manager = new WebPartHandlerManager();
+		manager.addWebPartHandler(PartUtil.SHOW_PHOTO_PAGE_NAME, photoHandler);
+		manager.freeze();
+		assertTrue(manager.isFrozen());
+		assertSame(photoHandler, manager.getWebPageHandlerFor(PhotoId.getFromInt(7)));
+
+		manager.addWebPartHandler(PartUtil.ABOUT_PAGE_NAME, aboutHandler);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testRouterIsNotAvailableBeforeFreeze() {
+		WebPartHandlerManager manager = new WebPartHandlerManager();
+		manager.addWebPartHandler(PartUtil.SHOW_PHOTO_PAGE_NAME, photoHandler);
+		manager.getRouter();
+	}
+
+}
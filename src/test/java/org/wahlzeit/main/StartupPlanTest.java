@@ -0,0 +1,136 @@
+package org.wahlzeit.main;
+
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.Work;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.wahlzeit.model.Photo;
+import org.wahlzeit.model.PhotoManager;
+import org.wahlzeit.model.mymodel.WatchPhotoFactory;
+import org.wahlzeit.model.persistence.DatastoreAdapter;
+import org.wahlzeit.model.persistence.ImageStorage;
+import org.wahlzeit.services.OfyService;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for {@link StartupPlan}.
+ */
+public class StartupPlanTest {
+
+	@ClassRule
+	public static RuleChain ruleChain = RuleChain.
+			outerRule(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider());
+
+	@Test
+	public void testPhasesRunAfterTheirDependencies() throws Exception {
+		final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch bothStarted = new CountDownLatch(2);
+
+		StartupPlan plan = new StartupPlan();
+		plan.addPhase(new RecordingPhase("a", order, bothStarted));
+		plan.addPhase(new RecordingPhase("b", order, bothStarted));
+		plan.addPhase(new RecordingPhase("c", order, null, "a", "b"));
+
+		StartupReport report = plan.run();
+
+		assertEquals(3, order.size());
+		assertEquals("c", order.get(2));
+		assertEquals(3, report.getEntries().size());
+		assertEquals(1, report.getEntry("c").getCount());
+		assertTrue(report.getEntry("c").getStart() >= report.getEntry("a").getStart());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownDependencyIsRejected() {
+		new StartupPlan().addPhase(new RecordingPhase("a", new ArrayList<String>(), null, "b"));
+	}
+
+	@Test
+	public void testFailedPhaseStopsItsDependents() throws Exception {
+		List<String> order = Collections.synchronizedList(new ArrayList<String>());
+		StartupPlan plan = new StartupPlan();
+		plan.addPhase(new StartupPhase("broken") {
+			protected int run() throws Exception {
+				throw new IOException("no datastore");
+			}
+		});
+		plan.addPhase(new RecordingPhase("dependent", order, null, "broken"));
+
+		try {
+			plan.run();
+			fail("exception of the failed phase expected");
+		} catch (IOException ex) {
+			assertEquals("no datastore", ex.getMessage());
+		}
+		assertTrue(order.isEmpty());
+	}
+
+	@Test
+	public void testPhotosAreLoadedInParallelPages() throws Exception {
+		final List<Photo> photos = ObjectifyService.run(new Work<List<Photo>>() {
+			@Override
+			public List<Photo> run() {
+				WatchPhotoFactory.initialize();
+				List<Photo> result = new ArrayList<Photo>();
+				for (int i = 0; i < 3; i++) {
+					result.add(WatchPhotoFactory.getInstance().createPhoto());
+				}
+				OfyService.ofy().save().entities(result).now();
+				return result;
+			}
+		});
+		ImageStorage.setInstance(new DatastoreAdapter());
+
+		StartupPlan plan = new StartupPlan();
+		plan.addPhase(new StartupPhase(ModelMain.PHOTOS_PHASE) {
+			protected int run() {
+				return PhotoManager.getInstance().loadPhotos();
+			}
+		});
+		StartupReport report = plan.run();
+
+		assertTrue(report.getEntry(ModelMain.PHOTOS_PHASE).getCount() >= photos.size());
+		for (Photo photo : photos) {
+			assertNotNull(PhotoManager.getInstance().getPhotoCache().get(photo.getId()));
+		}
+	}
+
+	/**
+	 * Records when it runs; the first phases wait for each other to show that they run in parallel.
+	 */
+	private static class RecordingPhase extends StartupPhase {
+
+		private final List<String> order;
+		private final CountDownLatch started;
+
+		RecordingPhase(String name, List<String> order, CountDownLatch started, String... dependencies) {
+			super(name, dependencies);
+			this.order = order;
+			this.started = started;
+		}
+
+		protected int run() throws Exception {
+			if (started != null) {
+				started.countDown();
+				assertTrue("phases without dependencies should run in parallel", started.await(5, TimeUnit.SECONDS));
+			}
+			order.add(getName());
+			return 1;
+		}
+	}
+}
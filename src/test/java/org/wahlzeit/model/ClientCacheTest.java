@@ -0,0 +1,257 @@
+package org.wahlzeit.model;
+
+import com.google.apphosting.api.ApiProxy;
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.Work;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.wahlzeit.services.OfyService;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link ClientLruCache} and loading users on demand in {@link ClientManager}.
+ */
+public class ClientCacheTest {
+
+	@ClassRule
+	public static RuleChain ruleChain = RuleChain.
+			outerRule(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider());
+
+	@Test
+	public void testLeastRecentlyUsedClientIsEvicted() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				UserManager userManager = UserManager.getInstance();
+				ClientLruCache oldCache = userManager.getInactiveClientCache();
+				try {
+					userManager.setInactiveClientCache(new ClientLruCache(2));
+					User first = new User("lruFirst", "lruFirst", "lru1@wahlzeit.org");
+					User second = new User("lruSecond", "lruSecond", "lru2@wahlzeit.org");
+					assertSame(first, userManager.getInactiveClientCache().get(first.getId()));
+
+					User third = new User("lruThird", "lruThird", "lru3@wahlzeit.org");
+					List<Client> cached = userManager.getInactiveClientCache().values();
+					assertEquals(2, cached.size());
+					assertTrue(cached.contains(first));
+					assertTrue(cached.contains(third));
+					assertNull(userManager.getInactiveClientCache().get(second.getId()));
+				} finally {
+					userManager.setInactiveClientCache(oldCache);
+				}
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testEvictedUserIsLoadedOnDemand() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				UserManager userManager = UserManager.getInstance();
+				ClientLruCache oldCache = userManager.getInactiveClientCache();
+				try {
+					userManager.setInactiveClientCache(new ClientLruCache(1));
+					User evicted = new User("lazyEvicted", "lazyEvicted", "lazy1@wahlzeit.org");
+					new User("lazyOther", "lazyOther", "lazy2@wahlzeit.org");
+					assertNull(userManager.getInactiveClientCache().get(evicted.getId()));
+
+					User loaded = userManager.getUserById(evicted.getId());
+					assertNotNull(loaded);
+					assertEquals("lazy1@wahlzeit.org", loaded.getEmailAddress().asString());
+					assertSame(loaded, userManager.getInactiveClientCache().get(evicted.getId()));
+				} finally {
+					userManager.setInactiveClientCache(oldCache);
+				}
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testConcurrentLoadsOfEvictedUserReturnOneCopy() throws Exception {
+		final UserManager userManager = UserManager.getInstance();
+		ClientLruCache oldCache = userManager.getInactiveClientCache();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			userManager.setInactiveClientCache(new ClientLruCache(1));
+			final String evictedId = ObjectifyService.run(new Work<String>() {
+				@Override
+				public String run() {
+					User evicted = new User("concurrentEvicted", "concurrentEvicted", "concurrent1@wahlzeit.org");
+					new User("concurrentOther", "concurrentOther", "concurrent2@wahlzeit.org");
+					assertNull(userManager.getInactiveClientCache().get(evicted.getId()));
+					return evicted.getId();
+				}
+			});
+
+			final ApiProxy.Environment environment = ApiProxy.getCurrentEnvironment();
+			final CountDownLatch start = new CountDownLatch(1);
+			List<Future<User>> loads = new ArrayList<Future<User>>();
+			for (int i = 0; i < 8; i++) {
+				loads.add(executor.submit(new Callable<User>() {
+					@Override
+					public User call() throws Exception {
+						ApiProxy.setEnvironmentForCurrentThread(environment);
+						start.await();
+						return ObjectifyService.run(new Work<User>() {
+							@Override
+							public User run() {
+								return userManager.getUserById(evictedId);
+							}
+						});
+					}
+				}));
+			}
+			start.countDown();
+
+			User first = loads.get(0).get();
+			assertNotNull(first);
+			for (Future<User> load : loads) {
+				assertSame(first, load.get());
+			}
+			assertSame(first, userManager.getInactiveClientCache().get(evictedId));
+		} finally {
+			executor.shutdown();
+			userManager.setInactiveClientCache(oldCache);
+		}
+	}
+
+	@Test
+	public void testUserWithSessionIsNotEvicted() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				UserManager userManager = UserManager.getInstance();
+				ClientLruCache oldCache = userManager.getInactiveClientCache();
+				try {
+					userManager.setInactiveClientCache(new ClientLruCache(1));
+					User active = new User("sessionActive", "sessionActive", "session1@wahlzeit.org");
+					userManager.addHttpSessionIdToClientMapping("sessionOfActiveUser", active);
+					new User("sessionOther1", "sessionOther1", "session2@wahlzeit.org");
+					new User("sessionOther2", "sessionOther2", "session3@wahlzeit.org");
+					assertSame(active, userManager.getUserById(active.getId()));
+
+					userManager.removeHttpSessionIdToClientMapping("sessionOfActiveUser");
+					assertSame(active, userManager.getInactiveClientCache().get(active.getId()));
+				} finally {
+					userManager.setInactiveClientCache(oldCache);
+				}
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testUserStaysResidentUntilLastSessionEnds() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				UserManager userManager = UserManager.getInstance();
+				ClientLruCache oldCache = userManager.getInactiveClientCache();
+				try {
+					userManager.setInactiveClientCache(new ClientLruCache(1));
+					User user = new User("twoSessions", "twoSessions", "two@wahlzeit.org");
+					userManager.addHttpSessionIdToClientMapping("firstSessionOfUser", user);
+					userManager.addHttpSessionIdToClientMapping("secondSessionOfUser", user);
+					assertNull(userManager.getInactiveClientCache().get(user.getId()));
+
+					userManager.removeHttpSessionIdToClientMapping("firstSessionOfUser");
+					assertNull(userManager.getInactiveClientCache().get(user.getId()));
+					assertTrue(userManager.hasLiveSession(user));
+
+					userManager.removeHttpSessionIdToClientMapping("secondSessionOfUser");
+					assertFalse(userManager.hasLiveSession(user));
+					assertSame(user, userManager.getInactiveClientCache().get(user.getId()));
+				} finally {
+					userManager.setInactiveClientCache(oldCache);
+				}
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testPhotoIdsAreSavedAsBitmaps() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				UserManager userManager = UserManager.getInstance();
+				User user = new User("bitmapUser", "bitmapUser", "bitmap@wahlzeit.org");
+				PhotoId.ensureCurrentIdIsAtLeast(200);
+				for (int id = 1; id <= 100; id++) {
+					user.addSkippedPhotoId(PhotoId.getIdFromInt(id));
+				}
+				user.addPraisedPhotoId(PhotoId.getIdFromInt(50));
+				user.addPraisedPhotoId(PhotoId.getIdFromInt(150));
+				userManager.saveClient(user);
+				OfyService.ofy().clear();
+
+				User loaded = OfyService.ofy().load().type(User.class).id(user.getId()).now();
+				assertNotSame(user, loaded);
+				assertEquals(2, loaded.getPraisedPhotoIds().size());
+				assertTrue(loaded.hasPraisedPhotoId(PhotoId.getIdFromInt(150)));
+				assertEquals(99, loaded.getSkippedPhotoIds().size());
+				assertFalse(loaded.getSkippedPhotoIds().contains(50));
+				assertEquals(150, loaded.lastPraisedPhotoId);
+				userManager.deleteClient(user);
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testLastPraisedPhotoFallsBackToVisiblePraisedPhoto() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				try {
+					User user = new User("fallbackUser", "fallbackUser", "fallback@wahlzeit.org");
+					Photo first = new Photo(PhotoId.getNextId());
+					Photo second = new Photo(PhotoId.getNextId());
+					Photo last = new Photo(PhotoId.getNextId());
+					for (Photo photo : Arrays.asList(first, second, last)) {
+						PhotoManager.getInstance().addPhoto(photo);
+						user.addPraisedPhotoId(photo.getId());
+					}
+					assertSame(last, user.getLastPraisedPhoto());
+
+					last.setStatus(PhotoStatus.INVISIBLE);
+					assertSame(second, user.getLastPraisedPhoto());
+
+					second.setStatus(PhotoStatus.DELETED);
+					assertSame(first, user.getLastPraisedPhoto());
+
+					first.setStatus(PhotoStatus.INVISIBLE);
+					assertNull(user.getLastPraisedPhoto());
+				} catch (IOException ex) {
+					throw new RuntimeException(ex);
+				}
+				return null;
+			}
+		});
+	}
+
+}
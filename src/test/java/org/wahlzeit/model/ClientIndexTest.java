@@ -0,0 +1,90 @@
+package org.wahlzeit.model;
+
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.Work;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.wahlzeit.services.EmailAddress;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for the nickname and email address indexes of {@link ClientManager}.
+ */
+public class ClientIndexTest {
+
+	@ClassRule
+	public static RuleChain ruleChain = RuleChain.
+			outerRule(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider());
+
+	@Test
+	public void testUserIsFoundByEmailAddress() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				UserManager userManager = UserManager.getInstance();
+				User user = new User("indexMail", "indexMail", "index@wahlzeit.org");
+
+				assertSame(user, userManager.getUserByEmailAddress("index@wahlzeit.org"));
+				assertEquals(user.getId(), userManager.getClientIdByNickname("indexMail"));
+				assertNull(userManager.getUserByEmailAddress("unknown@wahlzeit.org"));
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testNicknameIsUnique() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				UserManager userManager = UserManager.getInstance();
+				User user = new User("indexFirst", "indexTaken", "first@wahlzeit.org");
+				User other = new User("indexSecond", "indexFree", "second@wahlzeit.org");
+				try {
+					new User("indexThird", "indexTaken", "third@wahlzeit.org");
+					fail("nickname should be used already");
+				} catch (IllegalArgumentException ex) {
+					// expected
+				}
+				try {
+					other.setNickName("indexTaken");
+					fail("nickname should be used already");
+				} catch (IllegalArgumentException ex) {
+					// expected
+				}
+
+				user.setNickName("indexRenamed");
+				assertNull(userManager.getClientIdByNickname("indexTaken"));
+				assertEquals(user.getId(), userManager.getClientIdByNickname("indexRenamed"));
+				other.setNickName("indexTaken");
+				assertEquals(other.getId(), userManager.getClientIdByNickname("indexTaken"));
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testDeletedUserIsRemovedFromIndexes() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				UserManager userManager = UserManager.getInstance();
+				User user = new User("indexDeleted", "indexDeleted", "deleted@wahlzeit.org");
+				userManager.deleteClient(user);
+
+				assertNull(userManager.getClientIdByNickname("indexDeleted"));
+				assertNull(userManager.getClientIdByEmailAddress(EmailAddress.getFromString("deleted@wahlzeit.org")));
+				return null;
+			}
+		});
+	}
+
+}
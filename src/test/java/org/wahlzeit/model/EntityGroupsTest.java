@@ -0,0 +1,82 @@
+package org.wahlzeit.model;
+
+import com.google.appengine.api.datastore.Key;
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.Work;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.wahlzeit.services.ObjectManager;
+import org.wahlzeit.services.OfyService;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link EntityGroups} and {@link EntityGroupMigration}.
+ */
+public class EntityGroupsTest {
+
+	@ClassRule
+	public static RuleChain ruleChain = RuleChain.
+			outerRule(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider());
+
+	@Test
+	public void testPhotoKey() {
+		String photoIdAsString = PhotoId.getFromInt(42);
+		Key key = EntityGroups.getPhotoKey(photoIdAsString);
+
+		assertEquals(EntityGroups.PHOTO_KIND, key.getKind());
+		assertEquals(42, key.getId());
+		assertNull(key.getParent());
+		assertEquals(key, EntityGroups.getTagParent(photoIdAsString));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullIdHasNoPhotoKey() {
+		EntityGroups.getPhotoKey(PhotoId.NULL_ID);
+	}
+
+	@Test
+	public void testNewTagIsInPhotoEntityGroup() {
+		Tag tag = new Tag("tg:watch", PhotoId.getFromInt(7));
+		assertTrue(tag.isInPhotoEntityGroup());
+	}
+
+	@Test
+	public void testMigrateTags() {
+		final String photoIdAsString = PhotoId.getFromInt(3);
+		final int noLegacyTags = 5;
+
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				for (int i = 0; i < noLegacyTags; i++) {
+					Tag tag = new Tag("tg:legacy" + i, photoIdAsString);
+					tag.parent = ObjectManager.applicationRootKey;
+					OfyService.ofy().save().entity(tag).now();
+				}
+
+				EntityGroupMigration migration = new EntityGroupMigration(2);
+				assertTrue(migration.hasEntitiesToMigrate());
+				assertEquals(noLegacyTags, migration.migrate(Long.MAX_VALUE));
+				assertFalse(migration.hasEntitiesToMigrate());
+
+				List<Tag> tags = OfyService.ofy().load().type(Tag.class).
+						ancestor(EntityGroups.getTagParent(photoIdAsString)).list();
+				assertEquals(noLegacyTags, tags.size());
+				for (Tag tag : tags) {
+					assertTrue(tag.isInPhotoEntityGroup());
+				}
+				return null;
+			}
+		});
+	}
+}
@@ -0,0 +1,70 @@
+package org.wahlzeit.model;
+
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.Work;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.wahlzeit.services.OfyService;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link GlobalsCheckpointer}.
+ */
+public class GlobalsCheckpointerTest {
+
+	@ClassRule
+	public static RuleChain ruleChain = RuleChain.
+			outerRule(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider());
+
+	@Test
+	public void testCheckpointIsWrittenOnceAfterEnoughChanges() {
+		GlobalsCheckpointer checkpointer = new GlobalsCheckpointer();
+		checkpointer.setChangesPerCheckpoint(3);
+
+		checkpointer.recordChange();
+		checkpointer.recordChange();
+		assertFalse(checkpointer.checkpointIfDue());
+
+		checkpointer.recordChange();
+		assertTrue(checkpointer.checkpointIfDue());
+		assertEquals(0, checkpointer.getChangesSinceCheckpoint());
+		assertFalse(checkpointer.isCheckpointDue());
+		assertFalse(checkpointer.checkpointIfDue());
+
+		for (int i = 0; i < 3; i++) {
+			checkpointer.recordChange();
+		}
+		assertTrue(checkpointer.checkpointIfDue());
+	}
+
+	@Test
+	public void testCheckpointIsDueAfterInterval() {
+		GlobalsCheckpointer checkpointer = new GlobalsCheckpointer();
+		checkpointer.setCheckpointInterval(0);
+		assertFalse(checkpointer.isCheckpointDue());
+
+		checkpointer.recordChange();
+		assertTrue(checkpointer.isCheckpointDue());
+	}
+
+	@Test
+	public void testCheckpointSavesLeasedIds() {
+		int photoId = PhotoId.getNextIdAsInt();
+		new GlobalsCheckpointer().checkpoint();
+
+		Globals globals = ObjectifyService.run(new Work<Globals>() {
+			@Override
+			public Globals run() {
+				return OfyService.ofy().load().type(Globals.class).id(Globals.DEAULT_ID).now();
+			}
+		});
+		assertTrue(globals.getLastPhotoId() >= photoId);
+	}
+}
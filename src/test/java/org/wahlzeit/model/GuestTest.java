@@ -5,11 +5,19 @@ import com.googlecode.objectify.Work;
 import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.rules.RuleChain;
+import org.wahlzeit.services.OfyService;
+import org.wahlzeit.utils.TimerWheel;
 import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
 import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
 
+import java.util.Arrays;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test class for {@link Guest}.
@@ -24,7 +32,7 @@ public class GuestTest {
 
 	@Test
 	public void testNameGeneration() {
-		int clientId = ClientManager.lastClientId.intValue();
+		int clientId = UserManager.getInstance().getLastClientId().intValue();
 		assertNewGuestHasId(++clientId);
 		assertNewGuestHasId(++clientId);
 		// creation of user should not consume a next id
@@ -44,6 +52,87 @@ public class GuestTest {
 		testGetGuestFromUserManager(Guest.GUEST_PREFIX + ++clientId);
 	}
 
+	@Test
+	public void testGuestIsSavedOnlyWhenMaterialized() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				UserManager userManager = UserManager.getInstance();
+				Guest idle = new Guest();
+				userManager.addHttpSessionIdToClientMapping("idleGuestSession", idle);
+				assertFalse(idle.isMaterialized());
+				assertNull(OfyService.ofy().load().type(Client.class).id(idle.getId()).now());
+
+				Guest active = new Guest();
+				active.addPraisedPhotoId(PhotoId.getNextId());
+				userManager.materializeClient(active);
+				assertTrue(active.isMaterialized());
+				assertNotNull(OfyService.ofy().load().type(Client.class).id(active.getId()).now());
+
+				userManager.deleteClient(idle);
+				userManager.deleteClient(active);
+				assertNull(OfyService.ofy().load().type(Client.class).id(active.getId()).now());
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testAbandonedSessionExpires() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				UserManager userManager = UserManager.getInstance();
+				TimerWheel<String> oldWheel = userManager.sessionTimerWheel;
+				try {
+					userManager.sessionTimerWheel = new TimerWheel<String>(60000, 1000);
+					Guest abandoned = new Guest();
+					userManager.addHttpSessionIdToClientMapping("abandonedSession", abandoned);
+					Guest active = new Guest();
+					userManager.addHttpSessionIdToClientMapping("activeSession", active);
+
+					long now = System.currentTimeMillis();
+					assertEquals(0, userManager.expireHttpSessions(now + 30000));
+					userManager.sessionTimerWheel.touch("activeSession", now + 30000);
+					assertEquals(1, userManager.expireHttpSessions(now + 62000));
+
+					assertNull(userManager.getClientByHttpSessionId("abandonedSession"));
+					assertNull(userManager.getClientById(abandoned.getId()));
+					assertSame(active, userManager.getClientByHttpSessionId("activeSession"));
+					userManager.deleteClient(active);
+				} finally {
+					userManager.sessionTimerWheel = oldWheel;
+				}
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testGuestsAreDeletedInBulk() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				UserManager userManager = UserManager.getInstance();
+				Guest saved = new Guest();
+				userManager.materializeClient(saved);
+				userManager.addHttpSessionIdToClientMapping("bulkSavedSession", saved);
+				Guest unsaved = new Guest();
+				userManager.addHttpSessionIdToClientMapping("bulkUnsavedSession", unsaved);
+
+				userManager.deleteClients(Arrays.asList(saved, unsaved));
+				OfyService.ofy().clear();
+
+				assertNull(userManager.getClientByHttpSessionId("bulkSavedSession"));
+				assertNull(userManager.getClientByHttpSessionId("bulkUnsavedSession"));
+				assertNull(userManager.getClientById(saved.getId()));
+				assertNull(userManager.getClientById(unsaved.getId()));
+				assertNull(OfyService.ofy().load().type(Guest.class).id(saved.getId()).now());
+				return null;
+			}
+		});
+	}
+
 	protected void assertNewGuestHasId(int id) {
 		Guest testGuest = ObjectifyService.run(new Work<Guest>() {
 			@Override
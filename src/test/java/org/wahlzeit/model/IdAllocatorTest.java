@@ -0,0 +1,101 @@
+package org.wahlzeit.model;
+
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.Work;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.wahlzeit.services.OfyService;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link IdAllocator}.
+ */
+public class IdAllocatorTest {
+
+	@ClassRule
+	public static RuleChain ruleChain = RuleChain.
+			outerRule(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider());
+
+	@Test
+	public void testAllocatorsOfDifferentInstancesDoNotOverlap() {
+		// two allocators for the same counter behave like two instances of the application
+		IdAllocator first = new IdAllocator(Globals.Counter.SESSION, 3);
+		IdAllocator second = new IdAllocator(Globals.Counter.SESSION, 5);
+
+		Set<Long> ids = new HashSet<Long>();
+		for (int i = 0; i < 20; i++) {
+			assertTrue(ids.add(first.getNextId()));
+			assertTrue(ids.add(second.getNextId()));
+		}
+
+		long lastLeasedId = loadGlobals().getLastSessionId();
+		assertTrue(lastLeasedId >= first.getLastId());
+		assertTrue(lastLeasedId >= second.getLastId());
+	}
+
+	@Test
+	public void testIdsOfOneBlockAreConsecutive() {
+		IdAllocator allocator = new IdAllocator(Globals.Counter.CASE, 4);
+		long firstId = allocator.getNextId();
+		for (int i = 1; i < 10; i++) {
+			assertEquals(firstId + i, allocator.getNextId());
+		}
+		assertEquals(firstId + 9, allocator.getLastId());
+		assertEquals(firstId + 11, loadGlobals().getLastCaseId());
+	}
+
+	@Test
+	public void testLeaseNeverGoesBack() {
+		long firstId = GlobalsManager.getInstance().leaseIds(Globals.Counter.CLIENT, 10, 1000);
+		assertEquals(1000, firstId);
+		assertEquals(1010, GlobalsManager.getInstance().leaseIds(Globals.Counter.CLIENT, 10, 1));
+	}
+
+	@Test
+	public void testPhotoIdsLeasedByOtherInstanceResolve() {
+		PhotoId ownId = PhotoId.getNextId();
+		// the other instance leases a block above the current id of this instance
+		GlobalsManager.getInstance().leaseIds(Globals.Counter.PHOTO, 1, PhotoId.getCurrentIdAsInt() + 1000);
+		IdAllocator other = new IdAllocator(Globals.Counter.PHOTO);
+		int otherId = (int) other.getNextId();
+		assertTrue(otherId > PhotoId.getCurrentIdAsInt());
+
+		PhotoId photoId = PhotoId.getIdFromInt(otherId);
+		assertNotSame(PhotoId.NULL_ID, photoId);
+		assertEquals(otherId, photoId.asInt());
+		assertSame(photoId, PhotoId.getIdFromString(photoId.asString()));
+		assertTrue(ownId.asInt() < otherId);
+	}
+
+	@Test
+	public void testPhotoIdsAboveLeasedIdsAreNullIds() {
+		PhotoId.getNextId();
+		long lastLeasedId = GlobalsManager.getInstance().getLastId(Globals.Counter.PHOTO);
+		int unleasedId = (int) lastLeasedId + 10 * PhotoId.SEGMENT_SIZE;
+
+		assertSame(PhotoId.NULL_ID, PhotoId.getIdFromInt(unleasedId));
+		assertNull(PhotoId.segments.get(unleasedId >>> PhotoId.SEGMENT_SHIFT));
+		assertEquals(lastLeasedId, PhotoId.getCurrentIdAsInt());
+	}
+
+	protected Globals loadGlobals() {
+		return ObjectifyService.run(new Work<Globals>() {
+			@Override
+			public Globals run() {
+				return OfyService.ofy().load().type(Globals.class).id(Globals.DEAULT_ID).now();
+			}
+		});
+	}
+}
@@ -0,0 +1,130 @@
+package org.wahlzeit.model;
+
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.Work;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.wahlzeit.model.mymodel.WatchPhoto;
+import org.wahlzeit.model.mymodel.WatchPhotoFactory;
+import org.wahlzeit.services.OfyService;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link ModelSnapshot} and {@link ModelSnapshotManager}.
+ */
+public class ModelSnapshotTest {
+
+	@ClassRule
+	public static RuleChain ruleChain = RuleChain.
+			outerRule(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider());
+
+	@Test
+	public void testSnapshotIsStoredAndBroughtUpToDate() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				try {
+					doTestSnapshotIsStoredAndBroughtUpToDate();
+				} catch (IOException ex) {
+					throw new RuntimeException(ex);
+				}
+				return null;
+			}
+		});
+	}
+
+	protected void doTestSnapshotIsStoredAndBroughtUpToDate() throws IOException {
+		new User("snapshooter", "snapshooter", "snap@shoot.er");
+		User deletedUser = new User("snapleaver", "snapleaver", "snap@leav.er");
+		WatchPhotoFactory.initialize();
+		Photo changedPhoto = WatchPhotoFactory.getInstance().createPhoto();
+		changedPhoto.setTagIndex(Arrays.asList("tg:before"));
+		Photo deletedPhoto = WatchPhotoFactory.getInstance().createPhoto();
+		OfyService.ofy().save().entities(changedPhoto, deletedPhoto).now();
+
+		ModelSnapshot snapshot = ModelSnapshot.fromBytes(ModelSnapshot.readAll().asBytes());
+		Photo copy = findPhoto(snapshot, changedPhoto.getId());
+		assertTrue(copy instanceof WatchPhoto);
+		assertFalse(copy.isDirty());
+		assertEquals(Arrays.asList("tg:before"), copy.getTagIndex());
+		assertTrue(hasUser(snapshot, "snapshooter"));
+		assertTrue(hasUser(snapshot, "snapleaver"));
+
+		ModelSnapshotManager.getInstance().saveSnapshot(snapshot);
+		ModelSnapshot loaded = ModelSnapshotManager.getInstance().loadSnapshot();
+		assertNotNull(loaded);
+		assertEquals(snapshot.getTakenOn(), loaded.getTakenOn());
+		assertEquals(snapshot.getPhotos().size(), loaded.getPhotos().size());
+
+		changedPhoto.setTagIndex(Arrays.asList("tg:after"));
+		OfyService.ofy().save().entity(changedPhoto).now();
+		OfyService.ofy().delete().entity(deletedPhoto).now();
+		ModelSnapshotManager.getInstance().recordDeletions(Arrays.asList(deletedPhoto));
+		UserManager.getInstance().deleteClient(deletedUser);
+
+		assertTrue(loaded.replayChanges() > 0);
+		assertEquals(Arrays.asList("tg:after"), findPhoto(loaded, changedPhoto.getId()).getTagIndex());
+		assertNull(findPhoto(loaded, deletedPhoto.getId()));
+		assertFalse(hasUser(loaded, "snapleaver"));
+		assertTrue(hasUser(loaded, "snapshooter"));
+		assertTrue(loaded.getTakenOn() >= snapshot.getTakenOn());
+
+		// tombstones are kept for the replay margin of the next snapshot only
+		assertEquals(2, countTombstones());
+		ModelSnapshotManager.getInstance().deleteTombstones(System.currentTimeMillis());
+		assertEquals(0, countTombstones());
+	}
+
+	@Test
+	public void testSnapshotIsNotUsedIfPhotosArePaged() {
+		PhotoManager photoManager = PhotoManager.getInstance();
+		PhotoLruCache oldCache = photoManager.pagedPhotoCache;
+		try {
+			photoManager.setPagedPhotoCache(null);
+			assertTrue(ModelSnapshotManager.getInstance().isSnapshotUsable());
+			photoManager.setPagedPhotoCache(new PhotoLruCache(PhotoLruCache.PHOTO_BASE_WEIGHT));
+			assertFalse(ModelSnapshotManager.getInstance().isSnapshotUsable());
+		} finally {
+			photoManager.setPagedPhotoCache(oldCache);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testOtherBytesAreRejected() throws IOException {
+		ModelSnapshot.fromBytes(new byte[32]);
+	}
+
+	protected int countTombstones() {
+		return OfyService.ofy().load().type(ModelTombstone.class).keys().list().size();
+	}
+
+	protected Photo findPhoto(ModelSnapshot snapshot, PhotoId id) {
+		for (Photo photo : snapshot.getPhotos()) {
+			if (photo.getId().equals(id)) {
+				return photo;
+			}
+		}
+		return null;
+	}
+
+	protected boolean hasUser(ModelSnapshot snapshot, String id) {
+		for (User user : snapshot.getUsers()) {
+			if (user.getId().equals(id)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -29,13 +29,26 @@ import org.wahlzeit.model.persistence.PersistenceTestSuite;
 @Suite.SuiteClasses({
         PersistenceTestSuite.class,
         AccessRightsTest.class,
+        ClientCacheTest.class,
+        ClientIndexTest.class,
+        EntityGroupsTest.class,
+        TagIndexTest.class,
+        TagUpdateTest.class,
         CoordinateTest.class,
         FlagReasonTest.class,
         GenderTest.class,
+        GlobalsCheckpointerTest.class,
         GuestTest.class,
+        IdAllocatorTest.class,
+        ModelSnapshotTest.class,
         LocationTest.class,
+        PhotoCatalogTest.class,
         PhotoFilterTest.class,
+        PhotoIdTest.class,
+        PhotoPagingTest.class,
+        RequestContextTest.class,
         TagsTest.class,
+        UserSessionTest.class,
         UserStatusTest.class,
         ValueTest.class,
         WatchTest.class,
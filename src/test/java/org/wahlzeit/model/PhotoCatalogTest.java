@@ -0,0 +1,117 @@
+package org.wahlzeit.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link PhotoCatalog}.
+ */
+public class PhotoCatalogTest {
+
+	private PhotoCatalog catalog;
+
+	@Before
+	public void setUp() {
+		catalog = new PhotoCatalog();
+		PhotoId.ensureCurrentIdIsAtLeast(10 * PhotoCatalog.SEGMENT_SIZE);
+	}
+
+	@Test
+	public void testPutGetRemove() {
+		Photo photo = new Photo(PhotoId.getIdFromInt(5));
+		assertNull(catalog.put(photo));
+		assertSame(photo, catalog.get(PhotoId.getIdFromInt(5)));
+		assertTrue(catalog.contains(photo.getId()));
+		assertEquals(1, catalog.size());
+
+		Photo otherPhoto = new Photo(PhotoId.getIdFromInt(5));
+		assertSame(photo, catalog.put(otherPhoto));
+		assertEquals(1, catalog.size());
+
+		assertSame(otherPhoto, catalog.remove(photo.getId()));
+		assertFalse(catalog.contains(photo.getId()));
+		assertEquals(0, catalog.size());
+		assertNull(catalog.get(PhotoId.NULL_ID));
+	}
+
+	@Test
+	public void testIterationIsOrderedById() {
+		int[] ids = {3 * PhotoCatalog.SEGMENT_SIZE + 1, 7, PhotoCatalog.SEGMENT_SIZE, 1};
+		for (int id : ids) {
+			catalog.put(new Photo(PhotoId.getIdFromInt(id)));
+		}
+
+		List<Integer> iteratedIds = new ArrayList<Integer>();
+		for (Photo photo : catalog.values()) {
+			iteratedIds.add(photo.getId().asInt());
+		}
+		assertEquals(4, iteratedIds.size());
+		assertEquals(Integer.valueOf(1), iteratedIds.get(0));
+		assertEquals(Integer.valueOf(7), iteratedIds.get(1));
+		assertEquals(Integer.valueOf(PhotoCatalog.SEGMENT_SIZE), iteratedIds.get(2));
+		assertEquals(Integer.valueOf(3 * PhotoCatalog.SEGMENT_SIZE + 1), iteratedIds.get(3));
+
+		Map<PhotoId, Photo> map = catalog.asMap();
+		assertEquals(4, map.size());
+		assertTrue(map.containsKey(PhotoId.getIdFromInt(7)));
+		assertTrue(map.keySet().contains(PhotoId.getIdFromInt(PhotoCatalog.SEGMENT_SIZE)));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testMapViewIsReadOnly() {
+		catalog.asMap().put(PhotoId.getIdFromInt(2), new Photo(PhotoId.getIdFromInt(2)));
+	}
+
+	@Test
+	public void testIterationDuringConcurrentWrites() throws Exception {
+		final int noPhotos = 4 * PhotoCatalog.SEGMENT_SIZE;
+		final List<Photo> photos = new ArrayList<Photo>();
+		for (int id = 1; id <= noPhotos; id++) {
+			photos.add(new Photo(PhotoId.getIdFromInt(id)));
+		}
+		for (int i = 0; i < noPhotos; i += 2) {
+			catalog.put(photos.get(i));
+		}
+
+		final CountDownLatch started = new CountDownLatch(1);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread writer = new Thread(new Runnable() {
+			public void run() {
+				try {
+					started.await();
+					for (int i = 1; i < noPhotos; i += 2) {
+						catalog.put(photos.get(i));
+					}
+				} catch (Throwable ex) {
+					failure.set(ex);
+				}
+			}
+		});
+		writer.start();
+
+		started.countDown();
+		int noIterated = 0;
+		for (Iterator<Photo> i = catalog.values().iterator(); i.hasNext(); ) {
+			i.next();
+			noIterated++;
+		}
+		writer.join();
+
+		assertNull(failure.get());
+		assertTrue(noIterated >= noPhotos / 2);
+		assertEquals(noPhotos, catalog.size());
+	}
+}
@@ -21,10 +21,20 @@ package org.wahlzeit.model;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.wahlzeit.utils.IntBitmap;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class PhotoFilterTest {
 
@@ -73,7 +83,7 @@ public class PhotoFilterTest {
 		photoFilter.displayablePhotoIds.add(new PhotoId(3));
 		assertTrue(photoFilter.displayablePhotoIds.size() == 1);
 
-		photoFilter.processedPhotoIds.add(new PhotoId(2));
+		photoFilter.processedPhotoIds.add(2);
 		assertTrue(photoFilter.processedPhotoIds.size() == 1);
 
 		photoFilter.clear();
@@ -84,4 +94,54 @@ public class PhotoFilterTest {
 		assertTrue(photoFilter.processedPhotoIds.isEmpty());
 	}
 
+	/**
+	 *
+	 */
+	@Test
+	public void testSerialization() throws Exception {
+		PhotoId.ensureCurrentIdIsAtLeast(30);
+		photoFilter.setUserName("test");
+		photoFilter.setTags(new Tags("first, second"));
+		photoFilter.addProcessedPhoto(new Photo(PhotoId.getIdFromInt(20)));
+		photoFilter.addProcessedPhoto(new Photo(PhotoId.getIdFromInt(10)));
+		photoFilter.addSkippedPhotoId(PhotoId.getIdFromInt(30));
+		photoFilter.displayablePhotoIds.add(PhotoId.getIdFromInt(3));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(photoFilter);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		PhotoFilter copy = (PhotoFilter) in.readObject();
+
+		assertEquals("test", copy.getUserName());
+		assertEquals(new Tags("first, second"), copy.getTags());
+		assertArrayEquals(new int[]{10, 20}, copy.getProcessedPhotoIds().toArray());
+		assertArrayEquals(new int[]{30}, copy.getSkippedPhotoIds().toArray());
+		assertTrue(copy.getDisplayablePhotoIds().isEmpty());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testPhotosOfClientAreExcluded() {
+		IntBitmap praisedPhotoIds = new IntBitmap();
+		praisedPhotoIds.add(1);
+		IntBitmap skippedPhotoIds = new IntBitmap();
+		skippedPhotoIds.add(2);
+		Client client = mock(Client.class);
+		when(client.getPraisedPhotoIds()).thenReturn(praisedPhotoIds);
+		when(client.getSkippedPhotoIds()).thenReturn(skippedPhotoIds);
+		photoFilter.addSkippedPhotoId(PhotoId.getIdFromInt(3));
+		photoFilter.addProcessedPhoto(new Photo(PhotoId.getIdFromInt(4)));
+
+		assertTrue(photoFilter.isProcessed(1, client));
+		assertFalse(photoFilter.isProcessed(1, null));
+		assertTrue(photoFilter.isProcessed(4, null));
+		assertTrue(photoFilter.isSkipped(2, client));
+		assertTrue(photoFilter.isSkipped(3, null));
+		assertFalse(photoFilter.isSkipped(4, client));
+	}
+
 }
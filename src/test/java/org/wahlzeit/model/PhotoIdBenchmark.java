@@ -0,0 +1,148 @@
+package org.wahlzeit.model;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares the lookup and string encoding of {@link PhotoId} with the former implementation, which used a
+ * double-checked lock over a plain array and a StringBuffer for the encoding. Not part of the test suites, run the
+ * main method manually, e.g. with "-Xmx256m" and the number of threads as argument.
+ */
+public class PhotoIdBenchmark {
+
+	protected static final int NO_IDS = 50000;
+	protected static final int NO_ROUNDS = 200;
+	protected static final int NO_WARMUP_ROUNDS = 50;
+
+	public static void main(String[] args) throws Exception {
+		int noThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		PhotoId.ensureCurrentIdIsAtLeast(NO_IDS);
+		LegacyPhotoIdRegistry.currentId = NO_IDS;
+
+		run("warmup lookup", noThreads, NO_WARMUP_ROUNDS, new LookupTask());
+		run("warmup legacy lookup", noThreads, NO_WARMUP_ROUNDS, new LegacyLookupTask());
+		run("lookup", noThreads, NO_ROUNDS, new LookupTask());
+		run("legacy lookup", noThreads, NO_ROUNDS, new LegacyLookupTask());
+
+		run("warmup encoding", noThreads, NO_WARMUP_ROUNDS, new EncodingTask());
+		run("warmup legacy encoding", noThreads, NO_WARMUP_ROUNDS, new LegacyEncodingTask());
+		run("encoding", noThreads, NO_ROUNDS, new EncodingTask());
+		run("legacy encoding", noThreads, NO_ROUNDS, new LegacyEncodingTask());
+	}
+
+	/**
+	 * Runs the task with all threads at once and prints the average time per operation
+	 */
+	protected static void run(String name, int noThreads, final int noRounds, final Task task) throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(noThreads);
+		final long[] checksums = new long[noThreads];
+		for (int i = 0; i < noThreads; i++) {
+			final int threadNo = i;
+			new Thread(new Runnable() {
+				public void run() {
+					try {
+						start.await();
+						long checksum = 0;
+						for (int round = 0; round < noRounds; round++) {
+							for (int id = 1; id <= NO_IDS; id++) {
+								checksum += task.run(id);
+							}
+						}
+						checksums[threadNo] = checksum;
+					} catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+
+		long startTime = System.nanoTime();
+		start.countDown();
+		done.await();
+		long duration = System.nanoTime() - startTime;
+
+		long checksum = 0;
+		for (long each : checksums) {
+			checksum += each;
+		}
+		double nanosPerOperation = (double) duration / ((long) noRounds * NO_IDS);
+		System.out.println(String.format("%-24s %8.2f ns/op per thread (%d threads, checksum %d)",
+				name, nanosPerOperation, noThreads, checksum));
+	}
+
+	protected interface Task {
+		int run(int id);
+	}
+
+	protected static class LookupTask implements Task {
+		public int run(int id) {
+			return PhotoId.getIdFromInt(id).asInt();
+		}
+	}
+
+	protected static class LegacyLookupTask implements Task {
+		public int run(int id) {
+			return LegacyPhotoIdRegistry.getIdFromInt(id);
+		}
+	}
+
+	protected static class EncodingTask implements Task {
+		public int run(int id) {
+			return PhotoId.getFromString(PhotoId.getFromInt(id + NO_IDS));
+		}
+	}
+
+	protected static class LegacyEncodingTask implements Task {
+		public int run(int id) {
+			return PhotoId.getFromString(LegacyPhotoIdRegistry.getFromInt(id + NO_IDS));
+		}
+	}
+
+	/**
+	 * The former implementation of the registry and the encoding, only the int values are kept
+	 */
+	protected static class LegacyPhotoIdRegistry {
+
+		protected static int currentId = 0;
+		protected static Integer[] ids = new Integer[NO_IDS + PhotoId.SEGMENT_SIZE];
+
+		public static int getIdFromInt(int id) {
+			if ((id < 0) || (id > currentId)) {
+				return 0;
+			}
+
+			Integer result = ids[id];
+			if (result == null) {
+				synchronized (ids) {
+					result = ids[id];
+					if (result == null) {
+						result = new Integer(id);
+						ids[id] = result;
+					}
+				}
+			}
+
+			return result;
+		}
+
+		public static String getFromInt(int id) {
+			StringBuffer result = new StringBuffer(10);
+
+			id += PhotoId.ID_START;
+			for (; id > 0; id = id / 36) {
+				char letterOrDigit;
+				int modulus = id % 36;
+				if (modulus < 10) {
+					letterOrDigit = (char) ((int) '0' + modulus);
+				} else {
+					letterOrDigit = (char) ((int) 'a' - 10 + modulus);
+				}
+				result.insert(0, letterOrDigit);
+			}
+
+			return "x" + result.toString();
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package org.wahlzeit.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the id registry and the string encoding of {@link PhotoId}.
+ */
+public class PhotoIdTest {
+
+	@Test
+	public void testStringEncoding() {
+		assertEquals("x", PhotoId.NULL_ID.asString());
+		assertEquals("x1abz", PhotoId.getFromInt(-1));
+		assertEquals("x1ac0", PhotoId.getFromInt(0));
+		assertEquals("x1ac1", PhotoId.getFromInt(1));
+
+		int[] values = {1, 35, 36, 1295, 1296, 46655, 123456789, Integer.MAX_VALUE - PhotoId.ID_START};
+		for (int value : values) {
+			assertEquals(value, PhotoId.getFromString(PhotoId.getFromInt(value)));
+		}
+	}
+
+	@Test
+	public void testNonPositiveIdsAreNullIds() {
+		assertSame(PhotoId.NULL_ID, PhotoId.getIdFromInt(0));
+		assertSame(PhotoId.NULL_ID, PhotoId.getIdFromInt(-5));
+	}
+
+	@Test
+	public void testUnknownIdsFromRequestsCreateNoObjects() {
+		int unknownId = PhotoId.getCurrentIdAsInt() + 5 * PhotoId.SEGMENT_SIZE;
+		assertSame(PhotoId.NULL_ID, PhotoId.getKnownIdFromString(PhotoId.getFromInt(unknownId)));
+		assertNull(PhotoId.segments.get(unknownId >>> PhotoId.SEGMENT_SHIFT));
+
+		PhotoId.ensureCurrentIdIsAtLeast(1);
+		PhotoId knownId = PhotoId.getIdFromInt(1);
+		assertSame(knownId, PhotoId.getKnownIdFromString(knownId.asString()));
+	}
+
+	@Test
+	public void testConcurrentLookupsShareOneObject() throws Exception {
+		final int firstId = PhotoId.getCurrentIdAsInt() + 1;
+		final int noIds = 3 * PhotoId.SEGMENT_SIZE;
+		PhotoId.ensureCurrentIdIsAtLeast(firstId + noIds);
+
+		int noThreads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(noThreads);
+		try {
+			List<Future<PhotoId[]>> results = new ArrayList<Future<PhotoId[]>>();
+			for (int i = 0; i < noThreads; i++) {
+				results.add(executor.submit(new Callable<PhotoId[]>() {
+					@Override
+					public PhotoId[] call() {
+						PhotoId[] result = new PhotoId[noIds];
+						for (int j = 0; j < noIds; j++) {
+							result[j] = PhotoId.getIdFromInt(firstId + j);
+						}
+						return result;
+					}
+				}));
+			}
+
+			PhotoId[] expected = results.get(0).get();
+			for (Future<PhotoId[]> result : results) {
+				PhotoId[] actual = result.get();
+				for (int j = 0; j < noIds; j++) {
+					assertSame(expected[j], actual[j]);
+					assertEquals(firstId + j, actual[j].asInt());
+				}
+			}
+			assertTrue(expected[0] == PhotoId.getIdFromString(expected[0].asString()));
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package org.wahlzeit.model;
+
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.Work;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.wahlzeit.model.mymodel.WatchPhoto;
+import org.wahlzeit.model.mymodel.WatchPhotoFactory;
+import org.wahlzeit.model.persistence.DatastoreAdapter;
+import org.wahlzeit.model.persistence.ImageStorage;
+import org.wahlzeit.services.OfyService;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link PhotoLruCache}, {@link PhotoIndex}, paging photos in {@link PhotoManager} and loading them
+ * in batches.
+ */
+public class PhotoPagingTest {
+
+	@ClassRule
+	public static RuleChain ruleChain = RuleChain.
+			outerRule(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider());
+
+	@Test
+	public void testLeastRecentlyUsedPhotoIsEvicted() {
+		PhotoLruCache cache = new PhotoLruCache(2 * PhotoLruCache.PHOTO_BASE_WEIGHT);
+		Photo first = new Photo(PhotoId.getNextId());
+		Photo second = new Photo(PhotoId.getNextId());
+		Photo third = new Photo(PhotoId.getNextId());
+
+		assertTrue(cache.put(first).isEmpty());
+		assertTrue(cache.put(second).isEmpty());
+		assertSame(first, cache.get(first.getId()));
+
+		List<Photo> evicted = cache.put(third);
+		assertEquals(1, evicted.size());
+		assertSame(second, evicted.get(0));
+		assertEquals(2, cache.size());
+		assertEquals(2 * PhotoLruCache.PHOTO_BASE_WEIGHT, cache.getWeight());
+	}
+
+	@Test
+	public void testIndexKeepsStatusAndPraise() {
+		PhotoIndex index = new PhotoIndex();
+		Photo photo = new Photo(PhotoId.getNextId());
+		photo.setOwnerId("owner");
+		photo.addToPraise(5);
+		index.update(photo);
+
+		assertTrue(index.contains(photo.getId()));
+		assertTrue(index.isVisible(photo.getId()));
+		assertTrue(index.hasNewPraise(photo.getId()));
+		assertEquals(photo.getPraise(), index.getPraise(photo.getId()), 0.001);
+		assertEquals("owner", index.getOwnerId(photo.getId()));
+
+		photo.setStatus(PhotoStatus.FLAGGED);
+		photo.setNoNewPraise();
+		index.update(photo);
+		assertFalse(index.isVisible(photo.getId()));
+		assertFalse(index.hasNewPraise(photo.getId()));
+		assertEquals(1, index.size());
+	}
+
+	@Test
+	public void testIndexReturnsMostPraisedVisiblePhotos() {
+		PhotoIndex index = new PhotoIndex();
+		Photo low = new Photo(PhotoId.getNextId());
+		low.addToPraise(0);
+		Photo high = new Photo(PhotoId.getNextId());
+		Photo flagged = new Photo(PhotoId.getNextId());
+		flagged.setStatus(PhotoStatus.FLAGGED);
+		Photo middle = new Photo(PhotoId.getNextId());
+		middle.addToPraise(6);
+		for (Photo photo : new Photo[]{low, high, flagged, middle}) {
+			index.update(photo);
+		}
+
+		assertEquals(Arrays.asList(high.getId(), middle.getId()), index.getTopPhotoIds(2));
+		assertEquals(Arrays.asList(high.getId(), middle.getId(), low.getId()), index.getTopPhotoIds(10));
+		assertTrue(index.getTopPhotoIds(0).isEmpty());
+	}
+
+	@Test
+	public void testEvictedPhotoIsPagedInAgain() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				PhotoManager photoManager = PhotoManager.getInstance();
+				PhotoLruCache oldCache = photoManager.pagedPhotoCache;
+				try {
+					WatchPhotoFactory.initialize();
+					ImageStorage.setInstance(new DatastoreAdapter());
+					photoManager.setPagedPhotoCache(new PhotoLruCache(PhotoLruCache.PHOTO_BASE_WEIGHT));
+					WatchPhoto photo = WatchPhotoFactory.getInstance().createPhoto();
+					photo.setOwnerId("pager");
+					OfyService.ofy().save().entity(photo).now();
+					photo.resetWriteCount();
+					photoManager.doAddPhoto(photo);
+
+					Photo otherPhoto = WatchPhotoFactory.getInstance().createPhoto();
+					otherPhoto.resetWriteCount();
+					photoManager.doAddPhoto(otherPhoto);
+					assertNull(photoManager.doGetPhotoFromId(photo.getId()));
+					assertTrue(photoManager.getPhotoIndex().contains(photo.getId()));
+
+					Photo pagedIn = photoManager.getPhoto(photo.getId());
+					assertNotNull(pagedIn);
+					assertTrue(pagedIn instanceof WatchPhoto);
+					assertEquals("pager", pagedIn.getOwnerId());
+					assertEquals(photo.getId(), pagedIn.getId());
+				} finally {
+					photoManager.setPagedPhotoCache(oldCache);
+				}
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testChangedPhotoIsKeptUntilSavedWhenPagedOut() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				PhotoManager photoManager = PhotoManager.getInstance();
+				PhotoLruCache oldCache = photoManager.pagedPhotoCache;
+				try {
+					WatchPhotoFactory.initialize();
+					ImageStorage.setInstance(new DatastoreAdapter());
+					photoManager.setPagedPhotoCache(new PhotoLruCache(PhotoLruCache.PHOTO_BASE_WEIGHT));
+					User owner = new User("pagedOwner", "pagedOwner", "paged@wahlzeit.org");
+					Photo photo = WatchPhotoFactory.getInstance().createPhoto();
+					photo.setOwnerId(owner.getId());
+					photo.resetWriteCount();
+					photoManager.doAddPhoto(photo);
+					photo.addToPraise(5);
+
+					Photo otherPhoto = WatchPhotoFactory.getInstance().createPhoto();
+					otherPhoto.resetWriteCount();
+					photoManager.doAddPhoto(otherPhoto);
+
+					// the evicting request does not write the photo, it is still served from memory instead
+					assertTrue(photo.isDirty());
+					assertSame(photo, photoManager.getPhoto(photo.getId()));
+
+					photoManager.savePhoto(photo);
+					assertFalse(photo.isDirty());
+					assertFalse(photoManager.unsavedPagedOutPhotos.containsKey(photo.getId()));
+				} finally {
+					photoManager.setPagedPhotoCache(oldCache);
+				}
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testOnlyIndexedPhotosAreLoaded() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				WatchPhotoFactory.initialize();
+				ImageStorage.setInstance(new DatastoreAdapter());
+				PhotoManager photoManager = PhotoManager.getInstance();
+				Photo photo = WatchPhotoFactory.getInstance().createPhoto();
+				OfyService.ofy().save().entity(photo).now();
+
+				assertNull(photoManager.getPhoto(photo.getId()));
+				photoManager.getPhotoIndex().update(photo);
+				assertNotNull(photoManager.getPhoto(photo.getId()));
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testMissingPhotosAreLoadedInOneBatch() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				WatchPhotoFactory.initialize();
+				ImageStorage.setInstance(new DatastoreAdapter());
+				WatchPhoto first = WatchPhotoFactory.getInstance().createPhoto();
+				WatchPhoto second = WatchPhotoFactory.getInstance().createPhoto();
+				OfyService.ofy().save().entities(first, second).now();
+				PhotoId unknownId = PhotoId.getNextId();
+
+				Map<PhotoId, Photo> loaded = WatchPhotoFactory.getInstance().
+						loadPhotos(Arrays.asList(second.getId(), unknownId, first.getId()));
+				assertEquals(Arrays.asList(second.getId(), first.getId()), new ArrayList<PhotoId>(loaded.keySet()));
+				assertFalse(loaded.get(first.getId()).isDirty());
+
+				PhotoManager photoManager = PhotoManager.getInstance();
+				photoManager.getPhotoIndex().update(first);
+				photoManager.getPhotoIndex().update(second);
+				Map<PhotoId, Photo> photos = photoManager.getPhotos(Arrays.asList(first.getId(), second.getId()));
+				assertEquals(2, photos.size());
+				assertSame(photos.get(first.getId()), photoManager.getPhoto(first.getId()));
+				return null;
+			}
+		});
+	}
+}
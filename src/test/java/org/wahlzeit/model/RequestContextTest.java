@@ -0,0 +1,97 @@
+package org.wahlzeit.model;
+
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.Work;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.junit.rules.TestRule;
+import org.wahlzeit.services.Language;
+import org.wahlzeit.services.SessionManager;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+import org.wahlzeit.testEnvironmentProvider.SysConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.UserSessionProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test class for {@link RequestContext}.
+ */
+public class RequestContextTest {
+
+	@ClassRule
+	public static SysConfigProvider sysConfigProvider = new SysConfigProvider();
+
+	@Rule
+	public TestRule chain = RuleChain.
+			outerRule(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider()).
+			around(new UserSessionProvider());
+
+	@Test
+	public void testClientIsRememberedUntilItChanges() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				UserSession us = (UserSession) SessionManager.getThreadLocalSession();
+				us.setRequestContext(new RequestContext(us));
+				Client client = us.getClient();
+				assertSame(client, us.getRequestContext().getClient());
+
+				Guest other = new Guest();
+				us.setAttribute(UserSession.CLIENT_ID, other.getId());
+				assertSame(client, us.getClient());
+
+				us.getRequestContext().resetClient();
+				assertSame(other, us.getClient());
+				assertNotSame(client, us.getClient());
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testModelConfigFollowsLanguage() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				UserSession us = (UserSession) SessionManager.getThreadLocalSession();
+				RequestContext context = new RequestContext(us);
+				us.setRequestContext(context);
+				us.getClient().setLanguage(Language.ENGLISH);
+				assertEquals("en", context.getModelConfig().getLanguageCode());
+
+				us.getClient().setLanguage(Language.GERMAN);
+				assertEquals("de", context.getModelConfig().getLanguageCode());
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testPhotoFollowsPhotoId() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				UserSession us = (UserSession) SessionManager.getThreadLocalSession();
+				RequestContext context = new RequestContext(us);
+				us.setRequestContext(context);
+				us.setPhotoId(null);
+				assertNull(context.getPhoto());
+
+				Photo photo = new Photo(PhotoId.getNextId());
+				PhotoManager.getInstance().doAddPhoto(photo);
+				us.setPhotoId(photo.getId());
+				assertSame(photo, context.getPhoto());
+				assertSame(photo, context.getPhoto());
+				return null;
+			}
+		});
+	}
+
+}
@@ -0,0 +1,90 @@
+package org.wahlzeit.model;
+
+import org.wahlzeit.utils.SortedIntSet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares the serialized size of the photo filter and the praised photos in the http session with the former
+ * representation, which kept lists of PhotoId objects, the displayable photo ids, and a set of praised Photo objects.
+ * Photo objects do not serialize at all, their location is not serializable, so the former praised photos are
+ * measured as a set of PhotoId objects, which is a lower bound. Not part of the test suites, run the main method
+ * manually.
+ */
+public class SessionSizeBenchmark {
+
+	protected static final int[] NO_RATED_PHOTOS = {0, 10, 100, 1000, 5000};
+
+	protected static final int NO_PHOTOS = 10000;
+
+	public static void main(String[] args) throws Exception {
+		PhotoId.ensureCurrentIdIsAtLeast(NO_PHOTOS);
+		Random random = new Random(42);
+
+		System.out.println(String.format("%8s %14s %14s %8s", "rated", "legacy bytes", "compact bytes", "ratio"));
+		for (int noRated : NO_RATED_PHOTOS) {
+			LegacyPhotoFilter legacyFilter = new LegacyPhotoFilter();
+			Set<PhotoId> legacyPraisedPhotos = new HashSet<PhotoId>();
+			PhotoFilter filter = new PhotoFilter();
+			SortedIntSet praisedPhotoIds = new SortedIntSet();
+
+			for (int i = 0; i < noRated; i++) {
+				PhotoId photoId = PhotoId.getIdFromInt(random.nextInt(NO_PHOTOS) + 1);
+				if (i % 4 == 0) {
+					legacyFilter.skippedPhotoIds.add(photoId);
+					filter.addSkippedPhotoId(photoId);
+				} else {
+					Photo photo = new Photo(photoId);
+					legacyFilter.processedPhotoIds.add(photoId);
+					legacyPraisedPhotos.add(photoId);
+					filter.addProcessedPhoto(photo);
+					praisedPhotoIds.add(photoId.asInt());
+				}
+			}
+			for (int id = 1; id <= NO_PHOTOS / 10; id++) {
+				legacyFilter.displayablePhotoIds.add(PhotoId.getIdFromInt(id));
+			}
+
+			int legacySize = getSerializedSize(legacyFilter, legacyPraisedPhotos);
+			int compactSize = getSerializedSize(filter, praisedPhotoIds);
+			System.out.println(String.format("%8d %14d %14d %8.1f",
+					noRated, legacySize, compactSize, (double) legacySize / compactSize));
+		}
+	}
+
+	/**
+	 * Returns the number of bytes of the objects when serialized into one stream, like the attributes of a session
+	 */
+	protected static int getSerializedSize(Object... objects) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		for (Object object : objects) {
+			out.writeObject(object);
+		}
+		out.close();
+		return bytes.size();
+	}
+
+	/**
+	 * The former state of the photo filter, serialized with the default mechanism
+	 */
+	protected static class LegacyPhotoFilter implements Serializable {
+
+		protected String userName = "";
+		protected Tags tags = Tags.EMPTY_TAGS;
+		protected List<PhotoId> displayablePhotoIds = new ArrayList<PhotoId>();
+		protected List<PhotoId> processedPhotoIds = new LinkedList<PhotoId>();
+		protected List<PhotoId> skippedPhotoIds = new LinkedList<PhotoId>();
+		protected Random randomNumber = new Random(System.currentTimeMillis());
+	}
+
+}
@@ -0,0 +1,105 @@
+package org.wahlzeit.model;
+
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.Work;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.wahlzeit.services.ObjectManager;
+import org.wahlzeit.services.OfyService;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the tag index of {@link Photo} and {@link TagIndexMigration}.
+ */
+public class TagIndexTest {
+
+	@ClassRule
+	public static RuleChain ruleChain = RuleChain.
+			outerRule(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider());
+
+	@Test
+	public void testTagIndexIsSortedAndOnlyDirtyIfChanged() {
+		Photo photo = new Photo(PhotoId.getNextId());
+		photo.setTagIndex(Arrays.asList("tg:b", "tg:a", "tg:b"));
+		assertEquals(Arrays.asList("tg:a", "tg:b"), photo.getTagIndex());
+		assertTrue(photo.isDirty());
+
+		photo.resetWriteCount();
+		photo.setTagIndex(Arrays.asList("tg:b", "tg:a"));
+		photo.addToTagIndex("tg:a");
+		assertFalse(photo.isDirty());
+	}
+
+	@Test
+	public void testMigrateTagsIntoTagIndex() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				PhotoManager photoManager = PhotoManager.getInstance();
+				TagStorageMode oldMode = photoManager.getTagStorageMode();
+				try {
+					photoManager.setTagStorageMode(TagStorageMode.PHOTO_PROPERTY);
+
+					Photo photo = new Photo(PhotoId.getNextId());
+					photoManager.doAddPhoto(photo);
+					String photoIdAsString = photo.getId().asString();
+					for (String text : Arrays.asList("tg:migrated", "tg:legacy", "tg:migrated")) {
+						OfyService.ofy().save().entity(new Tag(text, photoIdAsString)).now();
+					}
+
+					TagIndexMigration migration = new TagIndexMigration(2);
+					assertTrue(migration.hasTagsToMigrate());
+					assertEquals(3, migration.migrate(Long.MAX_VALUE));
+					assertFalse(migration.hasTagsToMigrate());
+					assertEquals(Arrays.asList("tg:legacy", "tg:migrated"), photo.getTagIndex());
+
+					Collection<PhotoId> photoIds = new ArrayList<PhotoId>();
+					photoManager.addPhotoIdsThatMatchCondition(photoIds, "tg:legacy");
+					assertEquals(Arrays.asList(photo.getId()), photoIds);
+				} finally {
+					photoManager.setTagStorageMode(oldMode);
+				}
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testPhotosNotInOwnEntityGroupAreFoundByTheirPhotoId() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				PhotoManager photoManager = PhotoManager.getInstance();
+				TagStorageMode oldMode = photoManager.getTagStorageMode();
+				try {
+					photoManager.setTagStorageMode(TagStorageMode.PHOTO_PROPERTY);
+
+					// as written before entity groups were introduced, with an auto-allocated key
+					Photo photo = new Photo(PhotoId.getNextId());
+					photo.parent = ObjectManager.applicationRootKey;
+					photo.idLong = null;
+					photo.addToTagIndex("tg:unmigrated");
+					OfyService.ofy().save().entity(photo).now();
+
+					Collection<PhotoId> photoIds = new ArrayList<PhotoId>();
+					photoManager.addPhotoIdsThatMatchCondition(photoIds, "tg:unmigrated");
+					assertEquals(Arrays.asList(photo.getId()), photoIds);
+				} finally {
+					photoManager.setTagStorageMode(oldMode);
+				}
+				return null;
+			}
+		});
+	}
+}
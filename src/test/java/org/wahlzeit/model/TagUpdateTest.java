@@ -0,0 +1,125 @@
+package org.wahlzeit.model;
+
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.Work;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.wahlzeit.services.OfyService;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for updating the Tag entities of a photo in {@link PhotoManager}.
+ */
+public class TagUpdateTest {
+
+	@ClassRule
+	public static RuleChain ruleChain = RuleChain.
+			outerRule(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider());
+
+	@Test
+	public void testOnlyChangedTagsAreWritten() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				PhotoManager photoManager = PhotoManager.getInstance();
+				Photo photo = new Photo(PhotoId.getNextId());
+				photo.setTags(new Tags("red, green"));
+				photoManager.updateTags(photo);
+				List<Tag> tags = loadTags(photo);
+				assertEquals(asSet("tg:red", "tg:green"), getTexts(tags));
+
+				// unchanged tags are not written again, so the entities keep their ids
+				photoManager.updateTags(photo);
+				assertEquals(tags, loadTags(photo));
+
+				photo.setTags(new Tags("red, blue"));
+				photoManager.updateTags(photo);
+				List<Tag> updatedTags = loadTags(photo);
+				assertEquals(asSet("tg:red", "tg:blue"), getTexts(updatedTags));
+				assertEquals(getKey(tags, "tg:red"), getKey(updatedTags, "tg:red"));
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testDuplicatesOfFormerSavesAreRemoved() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				Photo photo = new Photo(PhotoId.getNextId());
+				photo.setTags(new Tags("red"));
+				String photoIdAsString = photo.getId().asString();
+				OfyService.ofy().save().entity(new Tag("tg:red", photoIdAsString)).now();
+				OfyService.ofy().save().entity(new Tag("tg:red", photoIdAsString)).now();
+				// as after loading, the photo does not know its persisted tags
+				photo.setPersistedTags(null);
+
+				PhotoManager.getInstance().updateTags(photo);
+				assertEquals(1, loadTags(photo).size());
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testUnchangedTagsAreOnlyReadIfNotKnown() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				PhotoManager photoManager = PhotoManager.getInstance();
+				Photo photo = new Photo(PhotoId.getNextId());
+				photo.setTags(new Tags("red"));
+				photoManager.updateTags(photo);
+
+				// the photo knows its persisted tags, so the Datastore is not read
+				OfyService.ofy().delete().entities(loadTags(photo)).now();
+				photoManager.updateTags(photo);
+				assertEquals(0, loadTags(photo).size());
+
+				photo.setPersistedTags(null);
+				photoManager.updateTags(photo);
+				assertEquals(asSet("tg:red"), getTexts(loadTags(photo)));
+				return null;
+			}
+		});
+	}
+
+	protected List<Tag> loadTags(Photo photo) {
+		return OfyService.ofy().load().type(Tag.class).ancestor(EntityGroups.getPhotoKey(photo.getId())).list();
+	}
+
+	protected Set<String> getTexts(List<Tag> tags) {
+		Set<String> result = new HashSet<String>();
+		for (Tag tag : tags) {
+			result.add(tag.getText());
+		}
+		return result;
+	}
+
+	protected Object getKey(List<Tag> tags, String text) {
+		for (Tag tag : tags) {
+			if (tag.getText().equals(text)) {
+				return com.googlecode.objectify.Key.create(tag);
+			}
+		}
+		return null;
+	}
+
+	protected Set<String> asSet(String... texts) {
+		Set<String> result = new HashSet<String>();
+		for (String text : texts) {
+			result.add(text);
+		}
+		return result;
+	}
+}
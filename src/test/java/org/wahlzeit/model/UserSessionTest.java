@@ -0,0 +1,183 @@
+package org.wahlzeit.model;
+
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.Work;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.wahlzeit.handlers.PartUtil;
+import org.wahlzeit.handlers.ShowInfoPageHandler;
+import org.wahlzeit.handlers.WebPageHandler;
+import org.wahlzeit.services.Language;
+import org.wahlzeit.services.Session;
+import org.wahlzeit.utils.SortedIntSet;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+import org.wahlzeit.testEnvironmentProvider.SysConfigProvider;
+import org.wahlzeit.webparts.WebPart;
+
+import javax.servlet.http.HttpSession;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for buffering the attributes of the {@link HttpSession} in {@link UserSession}.
+ */
+public class UserSessionTest {
+
+	@ClassRule
+	public static RuleChain ruleChain = RuleChain.
+			outerRule(new SysConfigProvider()).
+			around(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider());
+
+	@BeforeClass
+	public static void setUpLanguageConfigs() {
+		LanguageConfigs.put(Language.ENGLISH, new EnglishModelConfig());
+	}
+
+	@Test
+	public void testChangedAttributesAreWrittenOnceOnFlush() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				HttpSession httpSession = mockInitializedSession("bufferedSession");
+				UserSession us = new UserSession("bufferedSession", "", httpSession, "en");
+				assertFalse(us.isDirty());
+
+				us.setSavedArg("first", "1");
+				us.setSavedArg("second", "2");
+				us.addProcessingTime(10);
+				us.addProcessingTime(20);
+				verify(httpSession, never()).setAttribute(anyString(), any());
+
+				us.flush();
+				verify(httpSession, times(1)).setAttribute(UserSession.SAVED_ARGS, us.getSavedArgs());
+				verify(httpSession, never()).setAttribute(Session.PROCESSING_TIME, 30L);
+				verify(httpSession, never()).setAttribute(Session.NAME, "bufferedSession");
+				assertFalse(us.isDirty());
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testUnchangedAttributesAreNotWritten() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				HttpSession httpSession = mockInitializedSession("unchangedSession");
+				UserSession us = new UserSession("unchangedSession", "", httpSession, "en");
+				us.clearSavedArgs();
+				us.clearPraisedPhotos();
+				us.setHeading("heading");
+				assertTrue(us.isDirty());
+
+				us.flush();
+				verify(httpSession, times(1)).setAttribute(UserSession.HEADING, "heading");
+				verify(httpSession, never()).setAttribute(UserSession.SAVED_ARGS, new HashMap<String, Object>());
+				verify(httpSession, never()).setAttribute(UserSession.PRAISED_PHOTOS, new SortedIntSet());
+				assertEquals("heading", us.getHeading());
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testAttributesSetBackToLoadedValueAreNotWritten() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				HttpSession httpSession = mockInitializedSession("revertedSession");
+				UserSession us = new UserSession("revertedSession", "", httpSession, "en");
+				us.setHeading("changed");
+				us.setHeading(null);
+				assertFalse(us.isDirty());
+
+				us.flush();
+				verify(httpSession, never()).setAttribute(anyString(), any());
+				verify(httpSession, never()).removeAttribute(anyString());
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testPageRenderLeavesSessionClean() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				HttpSession httpSession = mockInitializedSession("renderSession");
+				UserSession us = new UserSession("renderSession", "", httpSession, "en");
+				us.setRequestContext(new RequestContext(us));
+				WebPageHandler handler = new ShowInfoPageHandler(AccessRights.GUEST, PartUtil.ABOUT_INFO_FILE);
+
+				// the same steps as a get request in the main servlet
+				String link = handler.handleGet(us, PartUtil.ABOUT_PAGE_NAME, new HashMap<String, String>());
+				assertEquals(PartUtil.ABOUT_PAGE_NAME, link);
+				WebPart page = handler.makeWebPart(us);
+				us.addProcessingTime(10);
+				try {
+					page.writeOn(new ByteArrayOutputStream());
+				} catch (IOException ex) {
+					throw new IllegalStateException(ex);
+				}
+				us.clearSavedArgs();
+				us.resetProcessingTime();
+				assertFalse(us.isDirty());
+
+				us.flush();
+				verify(httpSession, never()).setAttribute(anyString(), any());
+				verify(httpSession, never()).removeAttribute(anyString());
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testPhotoFilterChangesAreWritten() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				HttpSession httpSession = mockInitializedSession("filterSession");
+				UserSession us = new UserSession("filterSession", "", httpSession, "en");
+				us.addSkippedPhotoId(PhotoId.getIdFromInt(1));
+				us.setPhotoFilterTags(new Tags("flower"));
+				assertTrue(us.isDirty());
+
+				us.flush();
+				verify(httpSession, times(1)).setAttribute(UserSession.PHOTO_FILTER, us.getPhotoFilter());
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * @methodtype helper
+	 */
+	protected HttpSession mockInitializedSession(String id) {
+		HttpSession httpSession = mock(HttpSession.class);
+		when(httpSession.getId()).thenReturn(id);
+		when(httpSession.getAttribute(UserSession.INITIALIZED)).thenReturn(UserSession.INITIALIZED);
+		when(httpSession.getAttribute(Session.NAME)).thenReturn(id);
+		when(httpSession.getAttribute(UserSession.CLIENT_ID)).thenReturn(new Guest().getId());
+		when(httpSession.getAttribute(UserSession.SAVED_ARGS)).thenReturn(new HashMap<String, Object>());
+		when(httpSession.getAttribute(UserSession.PRAISED_PHOTOS)).thenReturn(new SortedIntSet());
+		when(httpSession.getAttribute(UserSession.PHOTO_FILTER)).thenReturn(new PhotoFilter());
+		return httpSession;
+	}
+
+}
@@ -20,7 +20,11 @@
 
 package org.wahlzeit.model;
 
+import org.junit.ClassRule;
 import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
 
 import static org.junit.Assert.assertTrue;
 
@@ -29,6 +33,14 @@ import static org.junit.Assert.assertTrue;
  */
 public class ValueTest {
 
+	/**
+	 * New photo ids are leased from the datastore
+	 */
+	@ClassRule
+	public static RuleChain ruleChain = RuleChain.
+			outerRule(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider());
+
 	/**
 	 *
 	 */
@@ -0,0 +1,84 @@
+package org.wahlzeit.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link IntBitmap}.
+ */
+public class IntBitmapTest {
+
+	@Test
+	public void testBitmapBehavesLikeASet() {
+		IntBitmap bitmap = new IntBitmap();
+		TreeSet<Integer> expected = new TreeSet<Integer>();
+		Random random = new Random(42);
+		for (int i = 0; i < 20000; i++) {
+			// mostly dense values in the first container, some in others
+			int value = (i % 10 == 0) ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(30000);
+			assertEquals(expected.add(value), bitmap.add(value));
+		}
+		for (int i = 0; i < 5000; i++) {
+			int value = random.nextInt(30000);
+			assertEquals(expected.remove(value), bitmap.remove(value));
+		}
+
+		assertEquals(expected.size(), bitmap.size());
+		assertArrayEquals(asArray(expected), bitmap.toArray());
+		for (int value = 0; value < 30000; value++) {
+			assertEquals(expected.contains(value), bitmap.contains(value));
+		}
+	}
+
+	@Test
+	public void testBytesRoundTrip() {
+		IntBitmap sparse = new IntBitmap();
+		sparse.add(7);
+		sparse.add(70000);
+		IntBitmap dense = new IntBitmap();
+		for (int value = 0; value < 10000; value++) {
+			dense.add(value);
+		}
+
+		assertEquals(sparse, IntBitmap.fromBytes(sparse.toBytes()));
+		assertEquals(dense, IntBitmap.fromBytes(dense.toBytes()));
+		assertTrue(sparse.toBytes().length < 16);
+		assertTrue(IntBitmap.fromBytes(null).isEmpty());
+		assertTrue(IntBitmap.fromBytes(new IntBitmap().toBytes()).isEmpty());
+	}
+
+	@Test
+	public void testUnion() {
+		IntBitmap first = new IntBitmap();
+		IntBitmap second = new IntBitmap();
+		for (int value = 0; value < 6000; value += 2) {
+			first.add(value);
+			second.add(value + 1);
+		}
+		second.add(100000);
+
+		first.or(second);
+		assertEquals(6001, first.size());
+		assertTrue(first.contains(5999));
+		assertTrue(first.contains(100000));
+		assertFalse(first.contains(6000));
+		assertEquals(3001, second.size());
+	}
+
+	protected int[] asArray(TreeSet<Integer> values) {
+		int[] result = new int[values.size()];
+		int i = 0;
+		for (int value : values) {
+			result[i++] = value;
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,76 @@
+package org.wahlzeit.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link SortedIntSet} and {@link VarIntCodec}.
+ */
+public class SortedIntSetTest {
+
+	@Test
+	public void testValuesAreKeptSortedAndUnique() {
+		SortedIntSet set = new SortedIntSet();
+		for (int value : new int[]{42, 7, 1000, 7, 0, 12, 3, 99, 5, 64}) {
+			set.add(value);
+		}
+
+		assertEquals(9, set.size());
+		assertArrayEquals(new int[]{0, 3, 5, 7, 12, 42, 64, 99, 1000}, set.toArray());
+		assertTrue(set.contains(42));
+		assertFalse(set.contains(43));
+
+		assertTrue(set.remove(42));
+		assertFalse(set.remove(42));
+		assertFalse(set.contains(42));
+		assertEquals(8, set.size());
+	}
+
+	@Test
+	public void testVarIntsRoundTrip() throws Exception {
+		int[] values = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE};
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		for (int value : values) {
+			VarIntCodec.writeVarInt(out, value);
+		}
+		assertEquals(1 + 1 + 1 + 2 + 2 + 3 + 5, bytes.size());
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		for (int value : values) {
+			assertEquals(value, VarIntCodec.readVarInt(in));
+		}
+	}
+
+	@Test
+	public void testDenseSetIsSerializedWithOneBytePerValue() throws Exception {
+		SortedIntSet set = new SortedIntSet();
+		for (int value = 100000; value < 101000; value++) {
+			set.add(value);
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(set);
+		out.close();
+		assertTrue(bytes.size() < 1200);
+
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		SortedIntSet copy = (SortedIntSet) in.readObject();
+		assertEquals(set, copy);
+		copy.add(5);
+		assertTrue(copy.contains(5));
+	}
+
+}
@@ -0,0 +1,75 @@
+package org.wahlzeit.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link TimerWheel}.
+ */
+public class TimerWheelTest {
+
+	protected static final long START = 1000000;
+
+	@Test
+	public void testUntouchedKeyExpiresAfterTimeToLive() {
+		TimerWheel<String> wheel = new TimerWheel<String>(10, 1);
+		wheel.touch("a", START);
+
+		assertTrue(wheel.advance(START + 9).isEmpty());
+		assertEquals(Collections.singletonList("a"), wheel.advance(START + 10));
+		assertFalse(wheel.contains("a"));
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void testTouchedKeyExpiresLater() {
+		TimerWheel<String> wheel = new TimerWheel<String>(10, 1);
+		wheel.touch("a", START);
+		wheel.touch("b", START);
+		wheel.touch("a", START + 8);
+
+		assertEquals(Collections.singletonList("b"), wheel.advance(START + 12));
+		assertTrue(wheel.advance(START + 17).isEmpty());
+		assertEquals(Collections.singletonList("a"), wheel.advance(START + 18));
+	}
+
+	@Test
+	public void testRemovedKeyDoesNotExpire() {
+		TimerWheel<String> wheel = new TimerWheel<String>(10, 1);
+		wheel.touch("a", START);
+		wheel.remove("a");
+
+		assertTrue(wheel.advance(START + 100).isEmpty());
+	}
+
+	@Test
+	public void testKeysCascadeThroughLevels() {
+		long timeToLive = 3 * TimerWheel.NO_SLOTS * TimerWheel.NO_SLOTS + 5;
+		TimerWheel<Integer> wheel = new TimerWheel<Integer>(timeToLive, 1);
+		for (int i = 0; i < 100; i++) {
+			wheel.touch(i, START + i * 7);
+		}
+
+		assertTrue(wheel.advance(START + timeToLive - 1).isEmpty());
+		List<Integer> expired = wheel.advance(START + timeToLive + 7 * 99);
+		assertEquals(100, expired.size());
+		assertEquals(Arrays.asList(0, 1, 2), expired.subList(0, 3));
+	}
+
+	@Test
+	public void testTicksAreCoarserThanTime() {
+		TimerWheel<String> wheel = new TimerWheel<String>(60000, 60000);
+		wheel.touch("a", START);
+
+		assertTrue(wheel.advance(START + 59999).isEmpty());
+		assertEquals(Collections.singletonList("a"), wheel.advance(START + 120000));
+	}
+
+}
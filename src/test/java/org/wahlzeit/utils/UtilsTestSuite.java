@@ -26,7 +26,10 @@ import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+        IntBitmapTest.class,
+        SortedIntSetTest.class,
         StringUtilTest.class,
+        TimerWheelTest.class,
         VersionTest.class
 })
 
@@ -0,0 +1,100 @@
+package org.wahlzeit.webparts;
+
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.wahlzeit.testEnvironmentProvider.SysConfigProvider;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test cases for {@link WebPartFragmentCache} and {@link WebPartFragment}.
+ */
+public class WebPartFragmentCacheTest {
+
+	@ClassRule
+	public static SysConfigProvider sysConfigProvider = new SysConfigProvider();
+
+	private WebPartFragmentCache cache;
+
+	@Before
+	public void setUp() {
+		cache = WebPartFragmentCache.getInstance();
+		cache.clear();
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testFragmentIsRenderedOncePerTemplate() throws IOException {
+		WebPartTemplate template = new WebPartTemplate("en/infos/TestInfo");
+		template.initialize("<p>Über {$name}</p>");
+
+		WebPartFragment fragment = cache.getFragment(template);
+		assertSame(fragment, cache.getFragment(template));
+		assertEquals("<p>Über </p>", fragment.asString());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		fragment.writeOn(out);
+		assertArrayEquals("<p>Über </p>".getBytes(WebPartTemplate.CHARSET), out.toByteArray());
+		StringWriter writer = new StringWriter();
+		fragment.writeOn(writer);
+		assertEquals("<p>Über </p>", writer.toString());
+
+		WebPart part = new WebPart(template);
+		part.addString("name", "Wahlzeit");
+		assertNull(cache.getFragment(template, "Wahlzeit"));
+		WebPartFragment withInputs = cache.putFragment(template, "Wahlzeit", part);
+		assertSame(withInputs, cache.getFragment(template, "Wahlzeit"));
+		assertEquals("<p>Über Wahlzeit</p>", withInputs.asString());
+
+		WebPartTemplate reloaded = new WebPartTemplate("en/infos/TestInfo");
+		reloaded.initialize("<p>About</p>");
+		assertNull(cache.getFragment(reloaded, "Wahlzeit"));
+		assertEquals("<p>About</p>", cache.getFragment(reloaded).asString());
+
+		cache.invalidate("en/infos/TestInfo");
+		assertEquals(0, cache.size());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testTextFragmentFollowsText() {
+		WebPartFragment menu = cache.getTextFragment("en/guestMenu", "Home");
+		assertSame(menu, cache.getTextFragment("en/guestMenu", "Home"));
+		assertSame(menu, cache.getTextFragment("en/guestMenu", new String("Home")));
+
+		WebPartFragment changed = cache.getTextFragment("en/guestMenu", "Start");
+		assertNotSame(menu, changed);
+		assertEquals("Start", changed.asString());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testLoadingTemplateDropsItsFragments() throws IOException {
+		WebPartTemplateService service = WebPartTemplateService.getInstance();
+		WebPartTemplate template = service.getTemplate("en", "infos/AboutInfo");
+		WebPartFragment fragment = cache.getFragment(template);
+		assertEquals(1, cache.size());
+
+		service.loadTemplate(template.getName());
+		assertEquals(0, cache.size());
+		WebPartTemplate reloaded = service.getTemplate("en", "infos/AboutInfo");
+		assertNotSame(template, reloaded);
+		assertEquals(fragment.asString(), cache.getFragment(reloaded).asString());
+	}
+
+}
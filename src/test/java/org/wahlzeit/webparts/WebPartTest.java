@@ -0,0 +1,84 @@
+package org.wahlzeit.webparts;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test cases for the compiled templates of {@link WebPartTemplate} and the render paths of {@link WebPart}.
+ */
+public class WebPartTest {
+
+	/**
+	 *
+	 */
+	@Test
+	public void testTemplateIsCompiledIntoSegmentsAndSlots() {
+		WebPartTemplate template = new WebPartTemplate("test");
+		template.initialize("<a href=\"mailto:info@{$domain}\">info@{$domain}</a>{$a}{$b} {$open");
+
+		assertArrayEquals(new String[]{"domain", "domain", "a", "b"}, template.getKeys());
+		assertArrayEquals(new int[]{21, 28, 32, 32}, template.getSlots());
+		assertEquals("<a href=\"mailto:info@\">info@</a> {$open", template.asString());
+		assertEquals("\">info@", new String(template.getSegment(1), WebPartTemplate.CHARSET));
+		assertEquals(" {$open", new String(template.getSegment(4), WebPartTemplate.CHARSET));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testStreamAndWriterRenderTheSameText() throws IOException {
+		WebPartTemplate outerTemplate = new WebPartTemplate("outer");
+		outerTemplate.initialize("<h1>{$heading}</h1>\n<p>Grüße, {$inner}</p>{$missing}");
+		WebPartTemplate innerTemplate = new WebPartTemplate("inner");
+		innerTemplate.initialize("<b>{$name}</b>");
+
+		WebPart inner = new WebPart(innerTemplate);
+		inner.addString("name", "Jürgen €");
+		WritableList list = new WritableList().append(inner).append(inner);
+		WebPart outer = new WebPart(outerTemplate);
+		outer.addString("heading", "Wahlzeit");
+		outer.addWritable("inner", list);
+
+		StringWriter writer = new StringWriter();
+		outer.writeOn(writer);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		outer.writeOn(out);
+
+		String expected = "<h1>Wahlzeit</h1>\n<p>Grüße, <b>Jürgen €</b><b>Jürgen €</b></p>";
+		assertEquals(expected, writer.toString());
+		assertArrayEquals(expected.getBytes(WebPartTemplate.CHARSET), out.toByteArray());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testValuesAreKeptByKeyIndex() throws IOException {
+		WebPartTemplate template = new WebPartTemplate("test");
+		template.initialize("{$a}-{$b}-{$a}");
+		assertEquals(3, template.getNoOfSlots());
+		assertEquals(2, template.getNoOfKeys());
+		assertEquals(template.getKeyIndexOfSlot(0), template.getKeyIndexOfSlot(2));
+		assertEquals(-1, template.getKeyIndex("unknown"));
+
+		WebPart part = new WebPart(template);
+		part.addString("unknown", "dropped");
+		part.addString("a", "x");
+		part.addString("b", "y");
+		assertNull(part.getValue("unknown"));
+		assertEquals("x", part.getValue("a"));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		part.writeOn(out);
+		assertEquals("x-y-x", new String(out.toByteArray(), WebPartTemplate.CHARSET));
+	}
+
+}
@@ -0,0 +1,15 @@
+package org.wahlzeit.webparts;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+
+@RunWith(Suite.class)
+@Suite.SuiteClasses({
+        WebPartFragmentCacheTest.class,
+        WebPartTest.class
+})
+
+
+public class WebPartsTestSuite {
+}